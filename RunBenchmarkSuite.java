@@ -15,36 +15,330 @@
  */
 
 import java.lang.System;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 /**
  * Script to run the benchmark on multiple git versions of the project.
- * With Java >= 10 do {@code java RunBenchmarkSuite.java commit1 commit2 ...},
- * e.g. {@code java RunBenchmarkSuite.java master henri}.
+ * With Java >= 10 do {@code java RunBenchmarkSuite.java [options] commit1 commit2 ...},
+ * e.g. {@code java RunBenchmarkSuite.java --threshold 5 master henri}.
+ *
+ * The options are
+ * <ul>
+ * <li>{@code --benchmark name} the simple name of the benchmark class,
+ * {@code ReportingServiceBenchmark} by default,</li>
+ * <li>{@code --threshold percent} the maximum slowdown compared to the first commit
+ * before a result is flagged as a regression, 5% by default,</li>
+ * <li>{@code --output directory} the directory of the results, {@code benchmark-results} by default,</li>
+ * <li>{@code --jmh "options"} more options for JMH, e.g. {@code --jmh "-p arithmetic=FIXED_POINT"}.</li>
+ * </ul>
+ *
+ * For each commit, the JMH results are written in JSON in {@code output/commit.json},
+ * then a table comparing the score, the error and the allocation rate per operation
+ * of each benchmark is printed and written in {@code output/comparison.txt}.
+ * The exit code is 1 if there is an error: a commit doesn't build, JMH fails, the first commit
+ * has no result or another commit misses a result of the first commit; otherwise the exit code
+ * is 2 if at least one benchmark is slower than the first commit by more than the threshold.
+ * Once done, the branch (or the commit) checked out before the script was run is restored.
  */
 public class RunBenchmarkSuite {
+  private static final String USAGE = "Usage: RunBenchmarkSuite.java [--benchmark name] [--threshold percent] [--output directory] [--jmh options] commit1 commit2 ...";
+
   public static void main(String[] args) throws Exception {
-    if (args.length == 0) {
-      System.out.println("Usage: RunBenchmarkSuite.java commit1 commit2 ...");
+    var benchmark = "ReportingServiceBenchmark";
+    var threshold = 5.0;
+    var output = Path.of("benchmark-results");
+    var jmhOptions = new ArrayList<String>();
+    var commits = new ArrayList<String>();
+    try {
+      for(var i = 0; i < args.length; i++) {
+        switch(args[i]) {
+        case "--benchmark" -> benchmark = args[++i];
+        case "--threshold" -> threshold = Double.parseDouble(args[++i]);
+        case "--output" -> output = Path.of(args[++i]);
+        case "--jmh" -> jmhOptions.addAll(List.of(args[++i].trim().split("\\s+")));
+        default -> commits.add(args[i]);
+        }
+      }
+    } catch(ArrayIndexOutOfBoundsException | NumberFormatException e) {
+      commits.clear();
+    }
+    if (commits.isEmpty()) {
+      System.out.println(USAGE);
+      System.exit(1);
+    }
+
+    if (!commandOutput("git", "status", "--porcelain", "--untracked-files=no").isBlank()) {
+      System.err.println("the working tree has local modifications, commit or stash them first");
+      System.exit(1);
+    }
+    var original = commandOutput("git", "rev-parse", "--abbrev-ref", "HEAD").trim();
+    if (original.equals("HEAD")) {  // detached HEAD
+      original = commandOutput("git", "rev-parse", "HEAD").trim();
+    }
+
+    Files.createDirectories(output);
+    var results = new LinkedHashMap<String, Map<String, Result>>();
+    var errors = new ArrayList<String>();
+    try {
+      for (var commit : commits) {
+        System.out.println("################# " + commit + " #################");
+        var json = output.resolve(commit.replaceAll("[^A-Za-z0-9._-]", "_") + ".json");
+        Files.deleteIfExists(json);
+        if (command("git", "checkout", commit) != 0) {
+          throw new IllegalStateException("can not checkout " + commit);
+        }
+        if (command("java", "pro_wrapper.java") != 0) {
+          errors.add("build of " + commit + " failed");
+          results.put(commit, Map.of());
+          continue;
+        }
+        var command = new ArrayList<>(List.of("./pro/bin/java",
+            "--enable-preview",
+            "--module-path", "deps:target/test/artifact/",
+            "-m", "pro.tremblay.core/pro.tremblay.core.benchmark." + benchmark,
+            "-rf", "json", "-rff", json.toString(), "-prof", "gc"));
+        command.addAll(jmhOptions);
+        var exitCode = command(command.toArray(String[]::new));
+        if (exitCode != 0) {
+          errors.add("benchmark of " + commit + " failed with exit code " + exitCode);
+        }
+        if (!Files.exists(json)) {
+          errors.add("no result file for " + commit);
+        }
+        results.put(commit, Files.exists(json)? parseResults(Files.readString(json)): Map.of());
+      }
+    } finally {
+      command("git", "checkout", original);
+    }
+
+    var report = new StringBuilder();
+    var regressions = compare(commits, results, threshold, report, errors);
+    System.out.print(report);
+    Files.writeString(output.resolve("comparison.txt"), report);
+    if (!errors.isEmpty()) {
+      errors.forEach(System.err::println);
       System.exit(1);
     }
-    for (var commit : args) {
-      System.out.println("################# " + commit + " #################");
-      command("git", "checkout", commit);
-      command("java", "pro_wrapper.java");
-      command("./pro/bin/java",
-          "--enable-preview",
-          "--module-path", "deps:target/test/artifact/",
-          "-m", "pro.tremblay.core/pro.tremblay.core.benchmark.ReportingServiceBenchmark");
+    if (regressions != 0) {
+      System.err.println(regressions + " regression(s) above " + threshold + "%");
+      System.exit(2);
+    }
+  }
+
+  /** The result of one benchmark for one set of parameters */
+  private static final class Result {
+    private final String mode;
+    private final double score;
+    private final double error;
+    private final String unit;
+    private final double allocation;
+
+    private Result(String mode, double score, double error, String unit, double allocation) {
+      this.mode = mode;
+      this.score = score;
+      this.error = error;
+      this.unit = unit;
+      this.allocation = allocation;
     }
 
-    command("git", "checkout", "master");
+    boolean higherIsBetter() {
+      return mode.equals("thrpt");
+    }
   }
 
-  private static void command(String... args) throws Exception {
+  private static Map<String, Result> parseResults(String text) {
+    var results = new TreeMap<String, Result>();
+    for(var element: (List<?>) new JSONParser(text).parse()) {
+      var benchmark = (Map<?, ?>) element;
+      var name = (String) benchmark.get("benchmark");
+      var mode = (String) benchmark.get("mode");
+      var params = (Map<?, ?>) benchmark.get("params");
+      var primary = (Map<?, ?>) benchmark.get("primaryMetric");
+      var allocation = Double.NaN;
+      var secondaries = (Map<?, ?>) benchmark.get("secondaryMetrics");
+      if (secondaries != null) {
+        for(var entry: secondaries.entrySet()) {
+          if (((String) entry.getKey()).endsWith("gc.alloc.rate.norm")) {
+            allocation = number(((Map<?, ?>) entry.getValue()).get("score"));
+          }
+        }
+      }
+      var key = name.substring(name.lastIndexOf('.', name.lastIndexOf('.') - 1) + 1)
+          + (params == null? "": params.toString()) + " " + mode;
+      results.put(key, new Result(mode, number(primary.get("score")), number(primary.get("scoreError")),
+          (String) primary.get("scoreUnit"), allocation));
+    }
+    return results;
+  }
+
+  private static double number(Object value) {
+    // JMH writes "NaN" as a string
+    return (value instanceof Double)? (Double) value: Double.NaN;
+  }
+
+  /**
+   * Appends the comparison table to the report and returns the number of regressions
+   * compared to the first commit, the missing results are added to the errors.
+   */
+  private static int compare(List<String> commits, Map<String, Map<String, Result>> results, double threshold, StringBuilder report, List<String> errors) {
+    var keys = new TreeSet<String>();
+    results.values().forEach(map -> keys.addAll(map.keySet()));
+    var baseline = results.get(commits.get(0));
+    if (baseline.isEmpty()) {
+      errors.add("no result for the first commit " + commits.get(0) + ", nothing to compare to");
+    }
+    var regressions = 0;
+    var width = keys.stream().mapToInt(String::length).max().orElse(0);
+    var commitWidth = commits.stream().mapToInt(String::length).max().orElse(0);
+    var format = "%-" + width + "s  %-" + commitWidth + "s  %28s  %14s  %s%n";
+    report.append(String.format(format, "benchmark", "commit", "score", "alloc (B/op)", "change"));
+    for(var key: keys) {
+      var reference = baseline.get(key);
+      for(var commit: commits) {
+        var result = results.get(commit).get(key);
+        if (result == null) {
+          report.append(String.format(format, key, commit, "no result", "", ""));
+          if (reference != null) {
+            errors.add("no result for " + key + " of " + commit);
+          }
+          continue;
+        }
+        var change = "";
+        if (reference != null && result != reference) {
+          var percent = (result.score - reference.score) * 100 / reference.score;
+          var slowdown = result.higherIsBetter()? -percent: percent;
+          change = String.format("%+.1f%%", percent);
+          if (slowdown > threshold) {
+            change += " REGRESSION";
+            regressions++;
+          }
+        }
+        report.append(String.format(format, key, commit,
+            String.format("%.3f +- %.3f %s", result.score, result.error, result.unit), String.format("%.1f", result.allocation), change));
+      }
+    }
+    return regressions;
+  }
+
+  /** A minimal JSON parser, objects are maps, arrays are lists and numbers are doubles */
+  private static final class JSONParser {
+    private final String text;
+    private int index;
+
+    private JSONParser(String text) {
+      this.text = text;
+    }
+
+    Object parse() {
+      skipSpaces();
+      var c = text.charAt(index);
+      switch(c) {
+      case '{': {
+        index++;
+        var map = new LinkedHashMap<String, Object>();
+        skipSpaces();
+        if (text.charAt(index) == '}') {
+          index++;
+          return map;
+        }
+        for(;;) {
+          skipSpaces();
+          var key = (String) parse();
+          skipSpaces();
+          expect(':');
+          map.put(key, parse());
+          skipSpaces();
+          if (text.charAt(index++) == '}') {
+            return map;
+          }
+        }
+      }
+      case '[': {
+        index++;
+        var list = new ArrayList<Object>();
+        skipSpaces();
+        if (text.charAt(index) == ']') {
+          index++;
+          return list;
+        }
+        for(;;) {
+          list.add(parse());
+          skipSpaces();
+          if (text.charAt(index++) == ']') {
+            return list;
+          }
+        }
+      }
+      case '"': {
+        var builder = new StringBuilder();
+        for(index++; (c = text.charAt(index++)) != '"';) {
+          if (c == '\\') {
+            c = text.charAt(index++);
+            switch(c) {
+            case 'n' -> c = '\n';
+            case 't' -> c = '\t';
+            case 'r' -> c = '\r';
+            case 'b' -> c = '\b';
+            case 'f' -> c = '\f';
+            case 'u' -> {
+              c = (char) Integer.parseInt(text.substring(index, index + 4), 16);
+              index += 4;
+            }
+            default -> { /* '"', '\\' or '/' */ }
+            }
+          }
+          builder.append(c);
+        }
+        return builder.toString();
+      }
+      default: {
+        var start = index;
+        while(index < text.length() && ",]} \t\r\n".indexOf(text.charAt(index)) == -1) {
+          index++;
+        }
+        var token = text.substring(start, index);
+        return switch(token) {
+          case "true" -> true;
+          case "false" -> false;
+          case "null" -> null;
+          default -> Double.parseDouble(token);
+        };
+      }
+      }
+    }
+
+    private void skipSpaces() {
+      while(Character.isWhitespace(text.charAt(index))) {
+        index++;
+      }
+    }
+
+    private void expect(char c) {
+      if (text.charAt(index++) != c) {
+        throw new IllegalStateException("invalid JSON, expect " + c + " at " + (index - 1));
+      }
+    }
+  }
+
+  private static int command(String... args) throws Exception {
     var builder = new ProcessBuilder(args).redirectErrorStream(true)
         .redirectOutput(ProcessBuilder.Redirect.INHERIT);
     var process = builder.start();
 
+    return process.waitFor();
+  }
+
+  private static String commandOutput(String... args) throws Exception {
+    var process = new ProcessBuilder(args).redirectErrorStream(true).start();
+    var output = new String(process.getInputStream().readAllBytes());
     process.waitFor();
+    return output;
   }
 }
@@ -1,3 +1,10 @@
 module pro.tremblay.core {
-  requires com.google.code.findbugs;
+  exports pro.tremblay.core;
+
+  requires static transitive com.google.code.findbugs;  // annotations only needed at compile time
+  requires jdk.jfr;
+  requires jdk.httpserver;
+
+  uses pro.tremblay.core.PriceSource.Provider;
+  provides pro.tremblay.core.PriceSource.Provider with pro.tremblay.core.RandomPrices.Provider;
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Arithmetic used to compute the return on investment.
+ *
+ * @see Preferences#ARITHMETIC
+ */
+@ThreadSafe
+public enum Arithmetic {
+  /** All the computations are done using {@code BigDecimal} */
+  BIG_DECIMAL,
+  /**
+   * The cash, the quantities and the prices are converted to {@code long}s scaled
+   * by a power of ten, the value of the securities is the dot product of the quantities
+   * and the prices, the computations fall back to {@link #BIG_DECIMAL}
+   * if a value doesn't fit in a {@code long}.
+   * The result is exactly the same as with {@link #BIG_DECIMAL}.
+   */
+  FIXED_POINT
+}
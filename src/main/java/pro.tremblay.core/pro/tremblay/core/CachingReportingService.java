@@ -0,0 +1,206 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import static java.util.Objects.requireNonNull;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A cache in front of {@link ReportingService#calculateReturnOnInvestmentYTD(Position, Collection)}.
+ *
+ * There is at most one result per account. A result is reused only if the version of
+ * the position, the version of the transactions, the version of the prices and the current
+ * date are the same as when it was computed. The caller is responsible to change the version
+ * of the position or of the transactions each time they are modified, e.g. when
+ * a transaction is appended. The version of the prices is changed by {@link #invalidateAll()},
+ * that should be called when the prices or the preferences change.
+ *
+ * The results are evicted in least recently used order when the cache is full
+ * and after a fixed time to live.
+ */
+@ThreadSafe
+public final class CachingReportingService {
+  /**
+   * Statistics of the cache.
+   */
+  public record Statistics(
+      /** Number of results found in the cache */
+      long hits,
+      /** Number of results computed */
+      long misses,
+      /** Number of results evicted because the cache was full or the result was too old */
+      long evictions) {
+    /**
+     * Returns the ratio of the results found in the cache.
+     * @return the ratio of the results found in the cache, between 0 and 1, 0 if no result was requested.
+     */
+    public double hitRate() {
+      var requests = hits + misses;
+      return (requests == 0)? 0: (double) hits / requests;
+    }
+  }
+
+  private record Entry(long positionVersion, long transactionsVersion, long priceVersion, LocalDate date, BigDecimal roi, long expiration) {
+    boolean matches(long positionVersion, long transactionsVersion, long priceVersion, LocalDate date) {
+      return this.positionVersion == positionVersion
+          && this.transactionsVersion == transactionsVersion
+          && this.priceVersion == priceVersion
+          && this.date.equals(date);
+    }
+  }
+
+  private final ReportingService reportingService;
+  private final long timeToLive;
+  private final LongSupplier ticker;
+  private final LinkedHashMap<String, Entry> entries;  // guarded by entries
+  private long priceVersion;                           // guarded by entries
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * Creates a cache in front of a reporting service.
+   * @param reportingService the reporting service computing the results.
+   * @param maximumSize the maximum number of results.
+   * @param timeToLive the duration after which a result is evicted.
+   */
+  public CachingReportingService(@Nonnull ReportingService reportingService, int maximumSize, @Nonnull Duration timeToLive) {
+    this(reportingService, maximumSize, timeToLive, System::nanoTime);
+  }
+
+  CachingReportingService(ReportingService reportingService, int maximumSize, Duration timeToLive, LongSupplier ticker) {
+    this.reportingService = requireNonNull(reportingService);
+    this.timeToLive = timeToLive.toNanos();
+    this.ticker = requireNonNull(ticker);
+    if (maximumSize <= 0) {
+      throw new IllegalArgumentException("invalid maximum size " + maximumSize);
+    }
+    if (this.timeToLive <= 0) {
+      throw new IllegalArgumentException("invalid time to live " + timeToLive);
+    }
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        if (size() > maximumSize) {
+          evictions.increment();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Calculate the annualized return on investment since the beginning of the year
+   * of an account or returns the result of a previous computation.
+   *
+   * @param accountId           the identifier of the account
+   * @param positionVersion     the version of the current position
+   * @param transactionsVersion the version of the transactions
+   * @param current             the current position of today, won't be modified by this
+   *                            call
+   * @param transactions        all transactions on this position, they are not sorted
+   *                            and might be before the beginning of the year
+   * @return annualized return on investment since beginning of the year
+   * @see ReportingService#calculateReturnOnInvestmentYTD(Position, Collection)
+   */
+  @Nonnull
+  public BigDecimal calculateReturnOnInvestmentYTD(@Nonnull String accountId, long positionVersion, long transactionsVersion,
+                                                   @Nonnull Position current, @Nonnull Collection<Transaction> transactions) {
+    requireNonNull(accountId);
+    requireNonNull(current);
+    requireNonNull(transactions);
+    var date = reportingService.currentDate();
+    long priceVersion;
+    synchronized(entries) {
+      priceVersion = this.priceVersion;
+      var entry = entries.get(accountId);
+      if (entry != null) {
+        if (ticker.getAsLong() - entry.expiration >= 0) {
+          entries.remove(accountId);
+          evictions.increment();
+        } else if (entry.matches(positionVersion, transactionsVersion, priceVersion, date)) {
+          hits.increment();
+          return entry.roi;
+        }
+      }
+    }
+
+    misses.increment();
+    var roi = reportingService.calculateReturnOnInvestmentYTD(current, transactions);
+    synchronized(entries) {
+      // the prices may have changed during the computation
+      if (priceVersion == this.priceVersion) {
+        entries.put(accountId, new Entry(positionVersion, transactionsVersion, priceVersion, date, roi, ticker.getAsLong() + timeToLive));
+      }
+    }
+    return roi;
+  }
+
+  /**
+   * Removes the result of an account.
+   * @param accountId the identifier of the account.
+   */
+  public void invalidate(@Nonnull String accountId) {
+    requireNonNull(accountId);
+    synchronized(entries) {
+      entries.remove(accountId);
+    }
+  }
+
+  /**
+   * Removes all the results and changes the version of the prices, so the results
+   * being computed are not stored.
+   */
+  public void invalidateAll() {
+    synchronized(entries) {
+      entries.clear();
+      priceVersion++;
+    }
+  }
+
+  /**
+   * Returns the number of results in the cache.
+   * @return the number of results in the cache.
+   */
+  public int size() {
+    synchronized(entries) {
+      return entries.size();
+    }
+  }
+
+  /**
+   * Returns the statistics of the cache.
+   * @return the statistics of the cache.
+   */
+  @Nonnull
+  public Statistics statistics() {
+    return new Statistics(hits.sum(), misses.sum(), evictions.sum());
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Optional;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * An immutable snapshot of the values of some keys of a set of preferences.
+ *
+ * Each compiled key is given a dense index when the snapshot is created, so getting its value
+ * is an identity lookup followed by an array access that doesn't allocate. The values of the keys that are not compiled
+ * are looked up in the source preferences.
+ *
+ * The values are read and decoded from the source preferences when the snapshot is created
+ * and each time {@link #refresh()} is called.
+ *
+ * @see Preferences#compile(pro.tremblay.core.Preferences.Key...)
+ */
+@ThreadSafe
+public final class CompiledPreferences implements Preferences {
+  private final Preferences source;
+  // the keys are compared by identity, like in Preferences.of()
+  private final IdentityHashMap<Key<?>, Integer> indexes;
+  private final Key<?>[] keys;
+  private volatile Optional<?>[] values;
+
+  CompiledPreferences(Preferences source, List<Key<?>> keys) {
+    this.source = requireNonNull(source);
+    var indexes = new IdentityHashMap<Key<?>, Integer>();
+    for(var key: keys) {
+      indexes.putIfAbsent(requireNonNull(key), indexes.size());
+    }
+    var array = new Key<?>[indexes.size()];
+    indexes.forEach((key, index) -> array[index] = key);
+    this.indexes = indexes;
+    this.keys = array;
+    refresh();
+  }
+
+  /**
+   * Reads and decodes again the values of the compiled keys from the source preferences.
+   * If a decoder throws an exception, the exception is propagated and the current values
+   * are kept.
+   */
+  public void refresh() {
+    var values = new Optional<?>[keys.length];
+    for(var i = 0; i < keys.length; i++) {
+      values[i] = source.get(keys[i]);
+    }
+    this.values = values;
+  }
+
+  @Override
+  public <T> Optional<T> get(Key<T> key) {
+    var index = indexes.get(key);
+    if (index != null) {
+      @SuppressWarnings("unchecked")
+      var value = (Optional<T>) values[index];
+      return value;
+    }
+    return source.get(key);
+  }
+}
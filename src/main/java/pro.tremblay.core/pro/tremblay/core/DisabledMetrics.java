@@ -0,0 +1,82 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Metrics that record nothing, the counters and the histograms are this instance.
+ */
+enum DisabledMetrics implements Metrics, Metrics.Counter, Metrics.Histogram {
+  INSTANCE;
+
+  @Override
+  public Counter counter(String name) {
+    requireNonNull(name);
+    return this;
+  }
+
+  @Override
+  public Histogram histogram(String name) {
+    requireNonNull(name);
+    return this;
+  }
+
+  @Override
+  public boolean enabled() {
+    return false;
+  }
+
+  @Override
+  public String snapshot() {
+    return "";
+  }
+
+  @Override
+  public void increment() {
+    // empty
+  }
+
+  @Override
+  public void add(long value) {
+    // empty
+  }
+
+  @Override
+  public long sum() {
+    return 0;
+  }
+
+  @Override
+  public void record(long value) {
+    // empty
+  }
+
+  @Override
+  public long count() {
+    return 0;
+  }
+
+  @Override
+  public long max() {
+    return 0;
+  }
+
+  @Override
+  public long valueAtPercentile(double percentile) {
+    return 0;
+  }
+}
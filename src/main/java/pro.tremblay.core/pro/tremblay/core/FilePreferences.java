@@ -0,0 +1,237 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A set of preferences backed by a properties file that is reloaded each time the file changes.
+ *
+ * Each time the file is loaded, the values of the registered keys are decoded into
+ * an immutable snapshot that replaces the current one, so {@link #get(Key)} never locks
+ * and returns a pre-allocated value for the registered keys. The values of the other keys
+ * are decoded at each call.
+ *
+ * If the file can not be read or if a value can not be decoded, the current snapshot is kept
+ * and the listeners are notified with {@link Listener#rejected(Exception)}.
+ *
+ * When the file is watched, the file is reloaded once the file has not changed for
+ * 50 milliseconds, but a file that is truncated and then written
+ * more slowly may still be seen partially written, so it's better to write a temporary file
+ * and to move it in place.
+ */
+@ThreadSafe
+public final class FilePreferences implements Preferences, Closeable {
+  /**
+   * A listener notified each time the file is reloaded.
+   */
+  public interface Listener {
+    /**
+     * Called when a new snapshot of the preferences is available.
+     * @param preferences the new snapshot of the preferences.
+     */
+    void changed(Preferences preferences);
+
+    /**
+     * Called when the file can not be reloaded, the current snapshot is kept.
+     * @param exception the exception that occurs when the file was loaded.
+     */
+    default void rejected(Exception exception) {
+      // empty
+    }
+  }
+
+  private static final long SETTLE_DELAY = 50;
+
+  private final Path file;
+  private final List<Key<?>> keys;
+  private final WatchService watchService;  // null if the file is not watched
+  private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+  private volatile CompiledPreferences snapshot;
+
+  private FilePreferences(Path file, List<Key<?>> keys, WatchService watchService) throws IOException {
+    this.file = file;
+    this.keys = keys;
+    this.watchService = watchService;
+    this.snapshot = load(file, keys);
+  }
+
+  /**
+   * Loads the properties file without watching it, the file is only reloaded by {@link #reload()}.
+   *
+   * @param file a properties file encoded in UTF-8.
+   * @param keys the keys decoded each time the file is loaded.
+   * @return newly created preferences backed by the file.
+   * @throws IOException if the file can not be read.
+   * @throws RuntimeException if one of the values can not be decoded.
+   */
+  public static FilePreferences of(@Nonnull Path file, @Nonnull Key<?>... keys) throws IOException {
+    return new FilePreferences(file.toAbsolutePath(), List.of(keys), null);
+  }
+
+  /**
+   * Loads the properties file and watches it for changes.
+   * The file is watched by a daemon thread until the preferences are {@link #close() closed}.
+   *
+   * @param file a properties file encoded in UTF-8.
+   * @param keys the keys decoded each time the file is loaded.
+   * @return newly created preferences backed by the file.
+   * @throws IOException if the file can not be read or watched.
+   * @throws RuntimeException if one of the values can not be decoded.
+   */
+  public static FilePreferences watch(@Nonnull Path file, @Nonnull Key<?>... keys) throws IOException {
+    var path = file.toAbsolutePath();
+    var watchService = path.getFileSystem().newWatchService();
+    FilePreferences preferences;
+    try {
+      preferences = new FilePreferences(path, List.of(keys), watchService);
+      path.getParent().register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+    } catch(IOException | RuntimeException e) {
+      watchService.close();
+      throw e;
+    }
+    var thread = new Thread(preferences::watchLoop, "preferences-watcher-" + path.getFileName());
+    thread.setDaemon(true);
+    thread.start();
+    return preferences;
+  }
+
+  private static CompiledPreferences load(Path file, List<Key<?>> keys) throws IOException {
+    var properties = new Properties();
+    try(var reader = Files.newBufferedReader(file, UTF_8)) {
+      properties.load(reader);
+    }
+    var values = new HashMap<String, String>();
+    for(var name: properties.stringPropertyNames()) {
+      values.put(name, properties.getProperty(name));
+    }
+    return new CompiledPreferences(new MapPreferences(Map.copyOf(values)), keys);
+  }
+
+  private record MapPreferences(Map<String, String> values) implements Preferences {
+    @Override
+    public <T> Optional<T> get(Key<T> key) {
+      return Optional.ofNullable(values.get(key.name())).map(key.decoder());
+    }
+  }
+
+  private void watchLoop() {
+    var fileName = file.getFileName();
+    try {
+      for(;;) {
+        var changed = false;
+        for(var watchKey = watchService.take(); watchKey != null; watchKey = watchService.poll(SETTLE_DELAY, MILLISECONDS)) {
+          for(var event: watchKey.pollEvents()) {
+            changed |= event.kind() == OVERFLOW || fileName.equals(event.context());
+          }
+          watchKey.reset();
+        }
+        if (changed) {
+          try {
+            reload();
+          } catch(RuntimeException e) {
+            // a listener has failed, continue to watch the file
+          }
+        }
+      }
+    } catch(InterruptedException | ClosedWatchServiceException e) {
+      // the preferences are closed
+    }
+  }
+
+  /**
+   * Adds a listener notified each time the file is reloaded.
+   * The listeners are called by the thread that reloads the file, if a listener
+   * throws an exception, the next listeners are not called.
+   * @param listener the listener.
+   */
+  public void addListener(@Nonnull Listener listener) {
+    listeners.add(requireNonNull(listener));
+  }
+
+  /**
+   * Removes a listener.
+   * @param listener the listener.
+   */
+  public void removeListener(@Nonnull Listener listener) {
+    listeners.remove(requireNonNull(listener));
+  }
+
+  /**
+   * Reloads the file now. This method is called automatically when the file changes.
+   * @return true if the file was reloaded, false if the current snapshot was kept.
+   */
+  public synchronized boolean reload() {
+    CompiledPreferences snapshot;
+    try {
+      snapshot = load(file, keys);
+    } catch(IOException | RuntimeException e) {
+      for(var listener: listeners) {
+        listener.rejected(e);
+      }
+      return false;
+    }
+    this.snapshot = snapshot;
+    for(var listener: listeners) {
+      listener.changed(snapshot);
+    }
+    return true;
+  }
+
+  /**
+   * Returns the current snapshot of the preferences.
+   * @return the current snapshot of the preferences.
+   */
+  public Preferences snapshot() {
+    return snapshot;
+  }
+
+  @Override
+  public <T> Optional<T> get(Key<T> key) {
+    return snapshot.get(key);
+  }
+
+  /**
+   * Stops watching the file, the current snapshot is still available.
+   */
+  @Override
+  public void close() throws IOException {
+    if (watchService != null) {
+      watchService.close();
+    }
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import static java.lang.Math.addExact;
+import static java.lang.Math.max;
+import static java.lang.Math.multiplyExact;
+import static java.lang.Math.subtractExact;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Computes the value of a position using {@code long}s scaled by a power of ten
+ * instead of {@code BigDecimal}s.
+ *
+ * All the values are first converted to a common scale, so reverting the transactions
+ * and valuing the securities is done without allocating intermediary objects.
+ * If a value has too many digits or if an operation overflows, the methods return
+ * {@code null} and the caller is expected to do the computation using {@code BigDecimal}s.
+ */
+@ThreadSafe
+final class FixedPoint {
+  /** Maximum scale so all powers of ten fit in a long */
+  static final int MAX_SCALE = 18;
+
+  private static final long[] POWERS_OF_TEN = new long[MAX_SCALE + 1];
+  static {
+    var power = 1L;
+    for(var i = 0; i < POWERS_OF_TEN.length; i++) {
+      POWERS_OF_TEN[i] = power;
+      power *= 10;
+    }
+  }
+
+  /**
+   * Prices of all securities at the beginning of the year and today as returned by
+   * {@link PriceService#getScaledPrices(LocalDate, long[])}, indexed by {@link Security#id()}
+   * and scaled by {@code 10^scale}, {@link PriceService#NO_PRICE} if there is no price.
+   */
+  record Prices(long[] initial, long[] current, int scale) { }
+
+  /**
+   * Initial value and current value of a position and the number of transactions reverted.
+   */
+  record Values(BigDecimal initial, BigDecimal current, int reverted) { }
+
+  private FixedPoint() {
+    throw new AssertionError();
+  }
+
+  /**
+   * Computes the initial value (once the transactions are reverted) and the current value
+   * of a position. The transactions reverted are the same as
+   * {@link ReportingService#revert(Position, Collection, LocalDate, LocalDate)}.
+   *
+   * @param current the current position, won't be modified.
+   * @param transactions all the transactions on the position, not sorted.
+   * @param beginningOfYear the beginning of the year.
+   * @param now the current date.
+   * @param prices the scaled prices of the securities.
+   * @return the initial value and the current value or {@code null} if a value doesn't
+   *         fit in a long.
+   */
+  static Values values(Position current, Collection<Transaction> transactions, LocalDate beginningOfYear, LocalDate now, Prices prices) {
+    var ids = new int[current.size()];
+    var quantities = new BigDecimal[ids.length];
+    var length = Valuation.holdings(current, ids, quantities);
+    return values(current, ids, quantities, length, transactions, beginningOfYear, now, prices);
+  }
+
+  private static Values values(Position current, int[] ids, BigDecimal[] quantities, int length,
+                               Collection<Transaction> transactions, LocalDate beginningOfYear, LocalDate now, Prices prices) {
+    var cashScale = scale(current.cash());
+    var quantityScale = Valuation.quantityScale(quantities, length);
+    var revert = true;
+    var reverted = 0;
+    for(var transaction: transactions) {
+      var date = transaction.date();
+      if (date.isAfter(now)) {
+        revert = false;
+        break;
+      }
+      if (date.isBefore(beginningOfYear)) {
+        continue;
+      }
+      reverted++;
+      cashScale = max(cashScale, scale(transaction.cash()));
+      if (transaction.type().hasQuantity()) {
+        quantityScale = max(quantityScale, scale(transaction.quantity()));
+      }
+    }
+    if (!revert) {
+      // recompute the scales without the transactions
+      return values(current, ids, quantities, length, List.of(), beginningOfYear, now, prices);
+    }
+    var productScale = quantityScale + prices.scale;
+    var valueScale = max(cashScale, productScale);
+    if (valueScale > MAX_SCALE) {
+      return null;
+    }
+
+    // the value is linear in the quantities, so the value of the securities at the beginning
+    // of the year is the value of the securities held today plus the value of the quantities reverted
+    try {
+      var currentCash = scaled(current.cash(), cashScale);
+      var scaledQuantities = Valuation.scaled(quantities, length, quantityScale);
+      var currentSecurities = Valuation.dotProduct(scaledQuantities, Valuation.gather(prices.current, ids, length), length);
+      var initialSecurities = Valuation.dotProduct(scaledQuantities, Valuation.gather(prices.initial, ids, length), length);
+
+      var initialCash = currentCash;
+      for(var transaction: transactions) {
+        if (transaction.date().isBefore(beginningOfYear)) {
+          continue;
+        }
+        var cash = scaled(transaction.cash(), cashScale);
+        switch (transaction.type()) {
+        case BUY -> {
+          var price = price(prices.initial, transaction.security().id());
+          initialCash = addExact(initialCash, cash);
+          initialSecurities = subtractExact(initialSecurities, multiplyExact(scaled(transaction.quantity(), quantityScale), price));
+        }
+        case SELL -> {
+          var price = price(prices.initial, transaction.security().id());
+          initialCash = subtractExact(initialCash, cash);
+          initialSecurities = addExact(initialSecurities, multiplyExact(scaled(transaction.quantity(), quantityScale), price));
+        }
+        case DEPOSIT -> initialCash = subtractExact(initialCash, cash);
+        case WITHDRAWAL -> initialCash = addExact(initialCash, cash);
+        }
+      }
+
+      var initialValue = addExact(rescale(initialCash, cashScale, valueScale), rescale(initialSecurities, productScale, valueScale));
+      var currentValue = addExact(rescale(currentCash, cashScale, valueScale), rescale(currentSecurities, productScale, valueScale));
+      return new Values(BigDecimal.valueOf(initialValue, valueScale), BigDecimal.valueOf(currentValue, valueScale), reverted);
+    } catch(ArithmeticException e) {
+      return null;
+    }
+  }
+
+  private static long price(long[] prices, int id) {
+    var price = (id < prices.length)? prices[id]: PriceService.NO_PRICE;
+    if (price == PriceService.NO_PRICE) {
+      throw new IllegalArgumentException("No price for " + Security.byId(id));
+    }
+    return price;
+  }
+
+  /**
+   * Returns the scale of a value, a negative scale is considered as zero.
+   * @param value a value.
+   * @return the scale of the value or zero.
+   */
+  static int scale(BigDecimal value) {
+    return max(0, value.scale());
+  }
+
+  /**
+   * Converts a value to a long scaled by {@code 10^scale}.
+   * @param value a value with a scale less or equals than {@code scale}.
+   * @param scale the scale, between 0 and {@link #MAX_SCALE}.
+   * @return the value multiplied by {@code 10^scale}.
+   * @throws ArithmeticException if the scaled value doesn't fit in a long.
+   */
+  static long scaled(BigDecimal value, int scale) {
+    if (value.scale() == 0) {
+      // an integer, the unscaled value is read without creating a new BigDecimal
+      return rescale(value.longValueExact(), 0, scale);
+    }
+    return value.movePointRight(scale).longValueExact();
+  }
+
+  /**
+   * Changes the scale of a scaled long to a greater scale.
+   * @param value a scaled long.
+   * @param from the scale of the value.
+   * @param to the new scale, greater or equals than {@code from}.
+   * @return the value with the new scale.
+   * @throws ArithmeticException if the result doesn't fit in a long.
+   */
+  static long rescale(long value, int from, int to) {
+    return (from == to)? value: multiplyExact(value, POWERS_OF_TEN[to - from]);
+  }
+}
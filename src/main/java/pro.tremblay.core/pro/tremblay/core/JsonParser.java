@@ -0,0 +1,202 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**
+ * A minimal JSON parser.
+ *
+ * The objects are parsed as {@link LinkedHashMap}s, the arrays as {@link ArrayList}s,
+ * the numbers as {@link BigDecimal}s (so no digit is lost), the strings as {@link String}s,
+ * {@code true} and {@code false} as {@link Boolean}s and {@code null} as {@code null}.
+ */
+final class JsonParser {
+  private static final int MAX_DEPTH = 64;
+
+  private final String text;
+  private int index;
+
+  private JsonParser(String text) {
+    this.text = text;
+  }
+
+  /**
+   * Parses a JSON text.
+   * @param text the JSON text.
+   * @return the value of the text.
+   * @throws IOException if the text is not a valid JSON text or is nested too deeply.
+   */
+  static Object parse(String text) throws IOException {
+    var parser = new JsonParser(text);
+    var value = parser.value(0);
+    parser.skipWhitespaces();
+    if (parser.index != text.length()) {
+      throw parser.error("unexpected characters");
+    }
+    return value;
+  }
+
+  private IOException error(String message) {
+    return new IOException("malformed JSON, " + message + " at " + index);
+  }
+
+  private void skipWhitespaces() {
+    while(index < text.length()) {
+      var c = text.charAt(index);
+      if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+        return;
+      }
+      index++;
+    }
+  }
+
+  private char next() throws IOException {
+    skipWhitespaces();
+    if (index == text.length()) {
+      throw error("unexpected end");
+    }
+    return text.charAt(index);
+  }
+
+  private void expect(char c) throws IOException {
+    if (next() != c) {
+      throw error("'" + c + "' expected");
+    }
+    index++;
+  }
+
+  private Object value(int depth) throws IOException {
+    if (depth == MAX_DEPTH) {
+      throw error("too deep");
+    }
+    var c = next();
+    return switch (c) {
+    case '{' -> object(depth);
+    case '[' -> array(depth);
+    case '"' -> string();
+    case 't' -> literal("true", true);
+    case 'f' -> literal("false", false);
+    case 'n' -> literal("null", null);
+    default -> number();
+    };
+  }
+
+  private Object object(int depth) throws IOException {
+    index++;
+    var map = new LinkedHashMap<String, Object>();
+    if (next() == '}') {
+      index++;
+      return map;
+    }
+    for(;;) {
+      if (next() != '"') {
+        throw error("key expected");
+      }
+      var key = string();
+      expect(':');
+      map.put(key, value(depth + 1));
+      if (next() == '}') {
+        index++;
+        return map;
+      }
+      expect(',');
+    }
+  }
+
+  private Object array(int depth) throws IOException {
+    index++;
+    var list = new ArrayList<Object>();
+    if (next() == ']') {
+      index++;
+      return list;
+    }
+    for(;;) {
+      list.add(value(depth + 1));
+      if (next() == ']') {
+        index++;
+        return list;
+      }
+      expect(',');
+    }
+  }
+
+  private Object literal(String literal, Object value) throws IOException {
+    if (!text.startsWith(literal, index)) {
+      throw error("invalid literal");
+    }
+    index += literal.length();
+    return value;
+  }
+
+  private BigDecimal number() throws IOException {
+    var start = index;
+    while(index < text.length() && "+-0123456789.eE".indexOf(text.charAt(index)) != -1) {
+      index++;
+    }
+    try {
+      return new BigDecimal(text.substring(start, index));
+    } catch(NumberFormatException e) {
+      index = start;
+      throw error("invalid number");
+    }
+  }
+
+  private String string() throws IOException {
+    index++;
+    var builder = new StringBuilder();
+    for(;;) {
+      if (index == text.length()) {
+        throw error("unterminated string");
+      }
+      var c = text.charAt(index++);
+      if (c == '"') {
+        return builder.toString();
+      }
+      if (c != '\\') {
+        builder.append(c);
+        continue;
+      }
+      if (index == text.length()) {
+        throw error("unterminated string");
+      }
+      var escape = text.charAt(index++);
+      switch (escape) {
+      case '"', '\\', '/' -> builder.append(escape);
+      case 'b' -> builder.append('\b');
+      case 'f' -> builder.append('\f');
+      case 'n' -> builder.append('\n');
+      case 'r' -> builder.append('\r');
+      case 't' -> builder.append('\t');
+      case 'u' -> {
+        if (index + 4 > text.length()) {
+          throw error("invalid escape");
+        }
+        try {
+          builder.append((char) Integer.parseInt(text, index, index + 4, 16));
+        } catch(NumberFormatException e) {
+          throw error("invalid escape");
+        }
+        index += 4;
+      }
+      default -> throw error("invalid escape");
+      }
+    }
+  }
+}
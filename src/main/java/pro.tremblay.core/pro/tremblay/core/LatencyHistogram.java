@@ -0,0 +1,121 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A histogram of positive longs with a fixed memory footprint, using the bucket layout
+ * of HdrHistogram.
+ *
+ * The values below {@code 2 * SUB_BUCKET_HALF} are counted exactly, above, the values are
+ * counted in buckets of {@code SUB_BUCKET_HALF} counts each, each bucket covering a range
+ * of values twice as large as the previous one, so a count covers a range of values
+ * less than {@code 1 / SUB_BUCKET_HALF} of its lowest value wide.
+ * Recording a value is one atomic increment, there is no lock and no allocation.
+ */
+@ThreadSafe
+final class LatencyHistogram implements Metrics.Histogram {
+  private static final int SUB_BUCKET_BITS = 6;
+  private static final int SUB_BUCKET_HALF = 1 << SUB_BUCKET_BITS;  // relative error < 1.6%
+  private static final int LENGTH = index(Long.MAX_VALUE) + 1;
+
+  private final AtomicLongArray counts = new AtomicLongArray(LENGTH);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  static int index(long value) {
+    if (value < 2 * SUB_BUCKET_HALF) {
+      return (int) value;
+    }
+    var shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+  }
+
+  static long highestValue(int index) {
+    if (index < 2 * SUB_BUCKET_HALF) {
+      return index;
+    }
+    var shift = (index >>> SUB_BUCKET_BITS) - 1;
+    var subBucket = index - (shift << SUB_BUCKET_BITS);
+    return ((subBucket + 1L) << shift) - 1;
+  }
+
+  @Override
+  public void record(long value) {
+    if (value < 0) {
+      throw new IllegalArgumentException("negative value " + value);
+    }
+    // update the maximum first, so a value counted is never above the maximum
+    var max = this.max;
+    for(var current = max.get(); value > current; current = max.get()) {
+      if (max.compareAndSet(current, value)) {
+        break;
+      }
+    }
+    counts.incrementAndGet(index(value));
+    count.increment();
+    sum.add(value);
+  }
+
+  @Override
+  public long count() {
+    return count.sum();
+  }
+
+  /**
+   * Returns the sum of the values recorded.
+   * @return the sum of the values recorded.
+   */
+  long sum() {
+    return sum.sum();
+  }
+
+  @Override
+  public long max() {
+    return max.get();
+  }
+
+  @Override
+  public long valueAtPercentile(double percentile) {
+    if (!(percentile >= 0 && percentile <= 100)) {
+      throw new IllegalArgumentException("invalid percentile " + percentile);
+    }
+    // read the counts once, the total is consistent with the counts even if values are recorded
+    var snapshot = new long[LENGTH];
+    var total = 0L;
+    for(var i = 0; i < LENGTH; i++) {
+      total += snapshot[i] = counts.get(i);
+    }
+    if (total == 0) {
+      return 0;
+    }
+    var rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+    var cumulative = 0L;
+    for(var i = 0; i < LENGTH; i++) {
+      cumulative += snapshot[i];
+      if (cumulative >= rank) {
+        return Math.min(highestValue(i), max.get());
+      }
+    }
+    throw new AssertionError();
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Metrics recorded in memory.
+ * The counters are {@link LongAdder}s, so the threads updating the same counter
+ * update different cells, the histograms are {@link LatencyHistogram}s.
+ *
+ * @see Metrics#create()
+ */
+@ThreadSafe
+final class MetricRegistry implements Metrics {
+  private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+  private final ConcurrentHashMap<String, StripedCounter> counters = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+  private static final class StripedCounter implements Counter {
+    private final LongAdder adder = new LongAdder();
+
+    @Override
+    public void increment() {
+      adder.increment();
+    }
+
+    @Override
+    public void add(long value) {
+      adder.add(value);
+    }
+
+    @Override
+    public long sum() {
+      return adder.sum();
+    }
+  }
+
+  @Override
+  public Counter counter(String name) {
+    requireNonNull(name);
+    checkName(name, histograms);
+    return counters.computeIfAbsent(name, __ -> new StripedCounter());
+  }
+
+  @Override
+  public Histogram histogram(String name) {
+    requireNonNull(name);
+    checkName(name, counters);
+    return histograms.computeIfAbsent(name, __ -> new LatencyHistogram());
+  }
+
+  private static void checkName(String name, Map<String, ?> others) {
+    if (others.containsKey(name)) {
+      throw new IllegalArgumentException("name " + name + " already used by another kind of metric");
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The lines are sorted by name, a histogram {@code name} is exported as the values
+   * {@code name.count}, {@code name.sum}, {@code name.max}, {@code name.p50},
+   * {@code name.p90}, {@code name.p99} and {@code name.p99.9}.
+   * The values of a histogram are read one after the other while other threads may record
+   * new values, so they may not be exactly consistent.
+   */
+  @Override
+  public String snapshot() {
+    var lines = new TreeMap<String, Long>();
+    counters.forEach((name, counter) -> lines.put(name, counter.sum()));
+    histograms.forEach((name, histogram) -> {
+      lines.put(name + ".count", histogram.count());
+      lines.put(name + ".sum", histogram.sum());
+      lines.put(name + ".max", histogram.max());
+      for(var percentile: PERCENTILES) {
+        var suffix = (percentile == (long) percentile)? "" + (long) percentile: "" + percentile;
+        lines.put(name + ".p" + suffix, histogram.valueAtPercentile(percentile));
+      }
+    });
+    var builder = new StringBuilder();
+    lines.forEach((name, value) -> builder.append(name).append(' ').append(value).append('\n'));
+    return builder.toString();
+  }
+}
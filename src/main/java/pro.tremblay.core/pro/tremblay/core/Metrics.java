@@ -0,0 +1,144 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Metrics recorded by the services, counters and histograms identified by a name.
+ *
+ * Use {@link #create()} to record the metrics in memory and {@link #snapshot()} to export them,
+ * or {@link #disabled()} to record nothing, implement this interface to send the metrics
+ * to another monitoring system.
+ *
+ * The services ask for their counters and histograms once when they are created,
+ * so the implementations don't have to be fast to find a metric by its name
+ * but the counters and the histograms have to be cheap to update from several threads.
+ */
+@ThreadSafe
+public interface Metrics {
+  /**
+   * A counter, a sum of values.
+   */
+  @ThreadSafe
+  interface Counter {
+    /**
+     * Adds one to the counter.
+     */
+    default void increment() {
+      add(1);
+    }
+
+    /**
+     * Adds a value to the counter.
+     * @param value the value to add.
+     */
+    void add(long value);
+
+    /**
+     * Returns the sum of the values added to the counter.
+     * @return the sum of the values added to the counter.
+     */
+    long sum();
+  }
+
+  /**
+   * A histogram, a distribution of positive values like latencies in nanoseconds.
+   */
+  @ThreadSafe
+  interface Histogram {
+    /**
+     * Records a value.
+     * @param value the value to record.
+     * @throws IllegalArgumentException if the value is negative.
+     */
+    void record(long value);
+
+    /**
+     * Returns the number of values recorded.
+     * @return the number of values recorded.
+     */
+    long count();
+
+    /**
+     * Returns the maximum of the values recorded.
+     * @return the maximum of the values recorded, 0 if no value was recorded.
+     */
+    long max();
+
+    /**
+     * Returns the value at a percentile, the values recorded may be rounded so the value
+     * returned is an upper bound of the real value.
+     * @param percentile a percentile between 0 and 100.
+     * @return the value at the percentile, 0 if no value was recorded.
+     * @throws IllegalArgumentException if the percentile is not between 0 and 100.
+     */
+    long valueAtPercentile(double percentile);
+  }
+
+  /**
+   * Returns the counter of a name, creating it if necessary.
+   * @param name the name of the counter.
+   * @return the counter of the name.
+   */
+  @Nonnull
+  Counter counter(@Nonnull String name);
+
+  /**
+   * Returns the histogram of a name, creating it if necessary.
+   * @param name the name of the histogram.
+   * @return the histogram of the name.
+   */
+  @Nonnull
+  Histogram histogram(@Nonnull String name);
+
+  /**
+   * Returns true if the metrics are recorded, so a caller can avoid to compute
+   * a value (like the current time) that will not be recorded.
+   * @return true if the metrics are recorded.
+   */
+  default boolean enabled() {
+    return true;
+  }
+
+  /**
+   * Returns a text snapshot of the metrics, one value per line with
+   * the name of the value followed by a space and the value.
+   * @return a text snapshot of the metrics.
+   */
+  @Nonnull
+  String snapshot();
+
+  /**
+   * Creates metrics recorded in memory, the counters are striped to avoid contention
+   * and the histograms have a relative error of less than 1.6%.
+   * @return newly created metrics.
+   */
+  @Nonnull
+  static Metrics create() {
+    return new MetricRegistry();
+  }
+
+  /**
+   * Returns metrics that record nothing.
+   * @return metrics that record nothing.
+   */
+  @Nonnull
+  static Metrics disabled() {
+    return DisabledMetrics.INSTANCE;
+  }
+}
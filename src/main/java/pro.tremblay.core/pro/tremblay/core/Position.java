@@ -16,42 +16,89 @@
 package pro.tremblay.core;
 
 import static java.math.BigDecimal.ZERO;
-import static java.util.Arrays.copyOf;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.joining;
-import static java.util.stream.IntStream.range;
-import static pro.tremblay.core.Security.securities;
 
 import java.math.BigDecimal;
 import java.util.Arrays;
+import java.util.stream.IntStream;
 
 import javax.annotation.concurrent.NotThreadSafe;
 
 /**
  * All positions (cash and security) of a user. There is only one cash position
  * since we are trading in only one currency.
+ *
+ * A user only holds a few securities among all the registered securities,
+ * so the quantities are stored in an open addressing hash table indexed by
+ * {@link Security#id()}, a security without quantity has a quantity of zero.
+ *
+ * The table is split in chunks that are shared between a position and its duplicates,
+ * a chunk is copied only when one of the positions sharing it is modified,
+ * so {@link #duplicate()} is a constant time operation and keeping a lot of
+ * snapshots of a position that changes a little costs only the chunks that have changed.
  */
 @NotThreadSafe
 public final class Position {
-  private static final int SECURITY_COUNT = securities().size();
+  private static final int CHUNK_SHIFT = 3;
+  private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
 
   private BigDecimal cash;
-  private final BigDecimal[] quantities;
+  private int[][] ids;                 // chunks of id + 1 of the security, 0 means empty slot
+  private BigDecimal[][] quantities;   // chunks of quantities
+  private Object[] owners;             // owner token of each chunk
+  private Object tableOwner;           // owner token of the arrays of chunks
+  private Token token;                 // the chunks owned by this position have this token
+  private int size;
+
+  /**
+   * Owner token of chunks, a token is shared once the position that has it is duplicated,
+   * the chunks it owns are then copied before being modified.
+   */
+  private static final class Token {
+    private volatile boolean shared;
+  }
 
-  private Position(BigDecimal cash, BigDecimal[] quantities) {
+  private Position(BigDecimal cash, int[][] ids, BigDecimal[][] quantities, Object[] owners, Object tableOwner, Token token, int size) {
     this.cash = cash;
+    this.ids = ids;
     this.quantities = quantities;
+    this.owners = owners;
+    this.tableOwner = tableOwner;
+    this.token = token;
+    this.size = size;
   }
 
   public Position(BigDecimal cash) {
     this.cash = requireNonNull(cash);
-    BigDecimal[] quantities = new BigDecimal[SECURITY_COUNT];
-    Arrays.fill(quantities, ZERO);
-    this.quantities = quantities;
+    this.token = new Token();
+    table(CHUNK_SIZE);
   }
-  
+
+  private void table(int capacity) {
+    var chunkCount = capacity >> CHUNK_SHIFT;
+    ids = new int[chunkCount][CHUNK_SIZE];
+    quantities = new BigDecimal[chunkCount][CHUNK_SIZE];
+    owners = new Object[chunkCount];
+    Arrays.fill(owners, token);
+    tableOwner = token;
+  }
+
+  /**
+   * Returns a copy of the position in constant time, the position and the copy share
+   * the table of quantities until one of them is modified.
+   * This method doesn't modify the fields of the position, so a position can be duplicated
+   * by several threads concurrently as long as it is not modified.
+   *
+   * @return a copy of the position.
+   */
   public Position duplicate() {
-    return new Position(cash, copyOf(quantities, quantities.length));
+    if (!token.shared) {
+      // the chunks of this position are now shared, the next write copies them
+      token.shared = true;
+    }
+    return new Position(cash, ids, quantities, owners, tableOwner, new Token(), size);
   }
 
   public BigDecimal cash() {
@@ -65,21 +112,123 @@ public final class Position {
 
   public BigDecimal quantity(Security security) {
     requireNonNull(security);
-    return quantities[security.ordinal()];
+    var slot = slot(security.id());
+    return (slot < 0)? ZERO: quantities[slot >> CHUNK_SHIFT][slot & CHUNK_MASK];
   }
 
   public Position quantity(Security security, BigDecimal quantity) {
     requireNonNull(security);
     requireNonNull(quantity);
-    quantities[security.ordinal()] = quantity;
+    var id = security.id();
+    var slot = slot(id);
+    if (slot >= 0) {
+      own(slot >> CHUNK_SHIFT);
+      quantities[slot >> CHUNK_SHIFT][slot & CHUNK_MASK] = quantity;
+      return this;
+    }
+    slot = ~slot;
+    own(slot >> CHUNK_SHIFT);
+    ids[slot >> CHUNK_SHIFT][slot & CHUNK_MASK] = id + 1;
+    quantities[slot >> CHUNK_SHIFT][slot & CHUNK_MASK] = quantity;
+    if (++size == slotCount() >> 1) {
+      rehash();
+    }
     return this;
   }
+
+  /**
+   * Copies a chunk and the arrays of chunks if they are shared with another position.
+   */
+  private void own(int chunk) {
+    if (token.shared) {
+      token = new Token();
+    }
+    if (tableOwner != token) {
+      ids = ids.clone();
+      quantities = quantities.clone();
+      owners = owners.clone();
+      tableOwner = token;
+    }
+    if (owners[chunk] != token) {
+      ids[chunk] = ids[chunk].clone();
+      quantities[chunk] = quantities[chunk].clone();
+      owners[chunk] = token;
+    }
+  }
+
+  /**
+   * Returns the slot of a security id or {@code ~slot} of the empty slot where it should be inserted.
+   */
+  private int slot(int id) {
+    var mask = slotCount() - 1;
+    for(var slot = hash(id) & mask;; slot = (slot + 1) & mask) {
+      var value = ids[slot >> CHUNK_SHIFT][slot & CHUNK_MASK];
+      if (value == id + 1) {
+        return slot;
+      }
+      if (value == 0) {
+        return ~slot;
+      }
+    }
+  }
+
+  private static int hash(int id) {
+    return id * 0x9E3779B9;
+  }
+
+  private void rehash() {
+    var oldIds = ids;
+    var oldQuantities = quantities;
+    table(slotCount() << 1);
+    for(var chunk = 0; chunk < oldIds.length; chunk++) {
+      for(var i = 0; i < CHUNK_SIZE; i++) {
+        var value = oldIds[chunk][i];
+        if (value != 0) {
+          var slot = ~slot(value - 1);
+          ids[slot >> CHUNK_SHIFT][slot & CHUNK_MASK] = value;
+          quantities[slot >> CHUNK_SHIFT][slot & CHUNK_MASK] = oldQuantities[chunk][i];
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the number of slots of the table of the quantities,
+   * used with {@link #slotId(int)} and {@link #slotQuantity(int)} to iterate over
+   * the securities held without allocating.
+   */
+  int slotCount() {
+    return ids.length << CHUNK_SHIFT;
+  }
+
+  /**
+   * Returns the number of securities held, the number of non empty slots.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns the id of the security of a slot or -1 if the slot is empty.
+   */
+  int slotId(int slot) {
+    return ids[slot >> CHUNK_SHIFT][slot & CHUNK_MASK] - 1;
+  }
+
+  /**
+   * Returns the quantity of a non empty slot.
+   */
+  BigDecimal slotQuantity(int slot) {
+    return quantities[slot >> CHUNK_SHIFT][slot & CHUNK_MASK];
+  }
   
   @Override
   public String toString() {
       return "Position{" +
           "cash=" + cash +
-          ", quantities=" + range(0, quantities.length).mapToObj(i -> securities().get(i) + ": " + quantities[i]).collect(joining(", ", "[", "]")) + 
+          ", quantities=" + IntStream.range(0, slotCount()).filter(slot -> slotId(slot) != -1).boxed()
+              .sorted((slot1, slot2) -> Integer.compare(slotId(slot1), slotId(slot2)))
+              .map(slot -> Security.byId(slotId(slot)) + ": " + slotQuantity(slot)).collect(joining(", ", "[", "]")) +
           '}';
   }
 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Collection;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * A position with all the transactions that happened on it.
+ * It's not thread safe because a {@link Position} is mutable.
+ */
+@NotThreadSafe
+public record PositionHistory(
+    /** Current position */
+    Position position,
+    /**
+     * All transactions on the position,
+     * they are not sorted and might be before the beginning of the year
+     */
+    Collection<Transaction> transactions
+    ) {
+  public PositionHistory {
+    requireNonNull(position);
+    requireNonNull(transactions);
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import static java.util.Objects.requireNonNull;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * An index of the positions of an account for each day of a range of dates.
+ *
+ * For each day of the range, the index stores the cumulative cash and quantities
+ * exchanged by the transactions from that day up to today, so the position
+ * at the beginning of any day is the current position plus one delta per security exchanged,
+ * without replaying the transactions.
+ *
+ * The transactions are reverted using the same rules as
+ * {@link ReportingService#calculateReturnOnInvestmentYTD(Position, Collection)},
+ * if one transaction is after today, no transaction is reverted at all.
+ *
+ * @see ReportingService#positionIndex(Position, Collection)
+ */
+@ThreadSafe
+public final class PositionIndex {
+  private final Position current;
+  private final LocalDate from;
+  private final LocalDate now;
+  private final int dayCount;
+  private final BigDecimal[] cashes;        // null means no cash exchanged
+  private final Security[] securities;      // securities exchanged by the transactions
+  private final BigDecimal[][] quantities;  // one row per security, null means no quantity exchanged
+
+  private PositionIndex(Position current, LocalDate from, LocalDate now, int dayCount, BigDecimal[] cashes, Security[] securities, BigDecimal[][] quantities) {
+    this.current = current;
+    this.from = from;
+    this.now = now;
+    this.dayCount = dayCount;
+    this.cashes = cashes;
+    this.securities = securities;
+    this.quantities = quantities;
+  }
+
+  /**
+   * Creates an index of the positions for each day between two dates.
+   *
+   * @param current      the current position of today, won't be modified
+   * @param transactions all transactions on this position, they are not sorted
+   *                     and might be before {@code from}
+   * @param from         the first day of the index
+   * @param now          the current date, the last day of the index
+   * @return a newly created index
+   */
+  @Nonnull
+  public static PositionIndex of(@Nonnull Position current, @Nonnull Collection<Transaction> transactions, @Nonnull LocalDate from, @Nonnull LocalDate now) {
+    requireNonNull(current);
+    requireNonNull(transactions);
+    requireNonNull(from);
+    requireNonNull(now);
+    if (from.isAfter(now)) {
+      throw new IllegalArgumentException("from " + from + " is after now " + now);
+    }
+    var start = from.toEpochDay();
+    var end = now.toEpochDay();
+    var dayCount = Math.toIntExact(end - start + 1);
+    // one more day, the day after today, where nothing is reverted
+    var cashes = new BigDecimal[dayCount + 1];
+    var rows = new LinkedHashMap<Security, BigDecimal[]>();  // only the securities exchanged have a row
+
+    for(var transaction: transactions) {
+      var day = transaction.date().toEpochDay();
+      if (day > end) {
+        // no transaction is reverted
+        return new PositionIndex(current.duplicate(), from, now, dayCount, new BigDecimal[dayCount + 1], new Security[0], new BigDecimal[0][]);
+      }
+      if (day < start) {
+        continue;
+      }
+      var index = (int) (day - start);
+      switch (transaction.type()) {
+      case BUY -> {
+        cashes[index] = sum(cashes[index], transaction.cash());
+        var quantities = rows.computeIfAbsent(transaction.security(), security -> new BigDecimal[dayCount + 1]);
+        quantities[index] = sum(quantities[index], transaction.quantity().negate());
+      }
+      case SELL -> {
+        cashes[index] = sum(cashes[index], transaction.cash().negate());
+        var quantities = rows.computeIfAbsent(transaction.security(), security -> new BigDecimal[dayCount + 1]);
+        quantities[index] = sum(quantities[index], transaction.quantity());
+      }
+      case DEPOSIT -> cashes[index] = sum(cashes[index], transaction.cash().negate());
+      case WITHDRAWAL -> cashes[index] = sum(cashes[index], transaction.cash());
+      }
+    }
+
+    // cumulate backward from today
+    for(var day = dayCount - 1; day >= 0; day--) {
+      cashes[day] = sum(cashes[day], cashes[day + 1]);
+    }
+    for(var quantities: rows.values()) {
+      for(var day = dayCount - 1; day >= 0; day--) {
+        quantities[day] = sum(quantities[day], quantities[day + 1]);
+      }
+    }
+    return new PositionIndex(current.duplicate(), from, now, dayCount, cashes,
+        rows.keySet().toArray(new Security[0]), rows.values().toArray(new BigDecimal[0][]));
+  }
+
+  private static BigDecimal sum(BigDecimal value1, BigDecimal value2) {
+    if (value1 == null) {
+      return value2;
+    }
+    if (value2 == null) {
+      return value1;
+    }
+    return value1.add(value2);
+  }
+
+  /**
+   * Returns the first day of the index.
+   * @return the first day of the index.
+   */
+  @Nonnull
+  public LocalDate from() {
+    return from;
+  }
+
+  /**
+   * Returns the current date, the last day of the index.
+   * @return the current date.
+   */
+  @Nonnull
+  public LocalDate now() {
+    return now;
+  }
+
+  /**
+   * Returns a copy of the current position.
+   * @return a copy of the current position.
+   */
+  @Nonnull
+  public Position position() {
+    return current.duplicate();
+  }
+
+  /**
+   * Returns the position at the beginning of a day, before the transactions of that day.
+   * @param date a date between {@link #from()} and {@link #now()}.
+   * @return a new position, the position at the beginning of the day.
+   * @throws IllegalArgumentException if the date is not in the range of the index.
+   */
+  @Nonnull
+  public Position positionAt(@Nonnull LocalDate date) {
+    requireNonNull(date);
+    var day = date.toEpochDay() - from.toEpochDay();
+    if (day < 0 || day >= dayCount) {
+      throw new IllegalArgumentException("no position for " + date + " in [" + from + ", " + now + "]");
+    }
+    var index = (int) day;
+    var position = current.duplicate();
+    var cash = cashes[index];
+    if (cash != null) {
+      position.cash(position.cash().add(cash));
+    }
+    for(var row = 0; row < securities.length; row++) {
+      var security = securities[row];
+      var quantity = quantities[row][index];
+      if (quantity != null) {
+        position.quantity(security, position.quantity(security).add(quantity));
+      }
+    }
+    return position;
+  }
+}
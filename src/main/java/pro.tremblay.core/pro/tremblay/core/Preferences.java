@@ -17,6 +17,7 @@ package pro.tremblay.core;
 
 import static java.util.Objects.requireNonNull;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.function.Function;
 
@@ -28,6 +29,7 @@ import javax.annotation.concurrent.ThreadSafe;
 @ThreadSafe
 public interface Preferences {
   public static final Key<Integer> LENGTH_OF_YEAR = new Key<>("LENGTH_OF_YEAR", Integer.class, Integer::parseInt);
+  public static final Key<Arithmetic> ARITHMETIC = new Key<>("ARITHMETIC", Arithmetic.class, Arithmetic::valueOf);
   
   /**
    * A preference key. 
@@ -72,6 +74,20 @@ public interface Preferences {
     };
   }
   
+  /**
+   * Compiles the current preferences into an immutable snapshot of the values of some keys.
+   * The values of the keys are looked up and decoded once, so getting the value of one of
+   * these keys is an array access. The values of the other keys are looked up
+   * in the current preferences.
+   *
+   * @param keys the keys to compile.
+   * @return newly compiled preferences.
+   * @see CompiledPreferences#refresh()
+   */
+  default CompiledPreferences compile(Key<?>... keys) {
+    return new CompiledPreferences(this, List.of(keys));
+  }
+
   /**
    * Creates a set of preferences with only one key/value.
    * @param <T> the type of the key
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Prices of a {@link PriceSource} kept in a bounded cache.
+ *
+ * The prices of a security are loaded by windows of {@link #WINDOW_DAYS} consecutive days,
+ * so the neighbour days of a requested day are prefetched.
+ * The windows are stored in a set associative table: a window can only be stored in one of
+ * the {@link #WAYS} slots of the bucket given by the hash of its security and its index.
+ * Reading a window found in the cache doesn't take a lock and doesn't allocate, it's a few volatile reads.
+ *
+ * A missing window is loaded without holding a lock and published with a compare and set.
+ * If its bucket is full, it replaces the window of the bucket requested the least often
+ * only if it has been requested at least as often (TinyLFU), so a scan of windows requested once
+ * doesn't evict the windows frequently used. The frequencies are estimated with a count-min sketch
+ * of 4 bits counters, updated without lock so a concurrent increment may be lost,
+ * the counters are halved each time the number of loads reaches the capacity so old frequencies fade out.
+ * Two threads may load the same window, only the first one is kept.
+ */
+@ThreadSafe
+final class PriceCache implements PriceColumns {
+  /** Number of consecutive days loaded at once */
+  static final int WINDOW_DAYS = 32;
+  private static final int WINDOW_SHIFT = 5;
+  /** Number of slots of a bucket */
+  static final int WAYS = 4;
+
+  private final PriceSource source;
+  private final long firstDay;
+  private final AtomicReferenceArray<Entry> entries;
+  private final int bucketMask;
+  private final int ways;
+  private final FrequencySketch sketch;
+  private final AtomicInteger loads = new AtomicInteger();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * Creates a cache of the prices of a source.
+   * @param source the source of the prices.
+   * @param maximumSize the maximum number of prices in the cache, at least {@link #WINDOW_DAYS}.
+   */
+  PriceCache(PriceSource source, int maximumSize) {
+    if (maximumSize < WINDOW_DAYS) {
+      throw new IllegalArgumentException("maximum size too small " + maximumSize);
+    }
+    this.source = source;
+    this.firstDay = source.firstDate().toEpochDay();
+    var capacity = Integer.highestOneBit(maximumSize / WINDOW_DAYS);
+    entries = new AtomicReferenceArray<>(capacity);
+    ways = Math.min(WAYS, capacity);
+    bucketMask = capacity / ways - 1;
+    sketch = new FrequencySketch(capacity);
+  }
+
+  @Override
+  public boolean hasColumn(int id) {
+    // an id not yet registered has no price
+    return id < Security.securities().size() && source.hasPrices(Security.byId(id));
+  }
+
+  @Override
+  public long price(int id, int day) {
+    return window(id, day >>> WINDOW_SHIFT)[day & (WINDOW_DAYS - 1)];
+  }
+
+  @Override
+  public void prices(int id, int day, long[] prices, int offset, int length) {
+    while (length > 0) {
+      var index = day & (WINDOW_DAYS - 1);
+      var count = Math.min(length, WINDOW_DAYS - index);
+      System.arraycopy(window(id, day >>> WINDOW_SHIFT), index, prices, offset, count);
+      day += count;
+      offset += count;
+      length -= count;
+    }
+  }
+
+  /**
+   * A window of prices and its key, immutable so it can be published by a compare and set.
+   */
+  private record Entry(long key, long[] window) { }
+
+  private long[] window(int id, int index) {
+    var key = ((long) id << 32) | index;
+    var hash = hash(key);
+    var bucket = (hash & bucketMask) * ways;
+    sketch.increment(hash);
+    for(var i = bucket; i < bucket + ways; i++) {
+      var entry = entries.get(i);
+      if (entry != null && entry.key == key) {
+        hits.increment();
+        return entry.window;
+      }
+    }
+    misses.increment();
+    var window = new long[WINDOW_DAYS];
+    var from = LocalDate.ofEpochDay(firstDay + ((long) index << WINDOW_SHIFT));
+    source.load(Security.byId(id), from, window);
+    if (loads.incrementAndGet() % entries.length() == 0) {
+      sketch.age();
+    }
+    return admit(bucket, hash, new Entry(key, window));
+  }
+
+  /**
+   * Stores an entry in an empty slot of its bucket or in place of the entry requested the least often
+   * if the new entry has been requested at least as often, retries if another thread modifies the bucket.
+   * @return the window of the entry or the window loaded by another thread.
+   */
+  private long[] admit(int bucket, int hash, Entry candidate) {
+    for(;;) {
+      var victimSlot = -1;
+      Entry victim = null;
+      var victimFrequency = Integer.MAX_VALUE;
+      for(var i = bucket; i < bucket + ways; i++) {
+        var entry = entries.get(i);
+        if (entry == null) {
+          victimSlot = i;
+          victim = null;
+          victimFrequency = -1;
+          break;
+        }
+        if (entry.key == candidate.key) {  // loaded by another thread
+          return entry.window;
+        }
+        var frequency = sketch.frequency(hash(entry.key));
+        if (frequency < victimFrequency) {
+          victimSlot = i;
+          victim = entry;
+          victimFrequency = frequency;
+        }
+      }
+      if (victim != null && sketch.frequency(hash) < victimFrequency) {  // not admitted
+        evictions.increment();
+        return candidate.window;
+      }
+      if (entries.compareAndSet(victimSlot, victim, candidate)) {
+        if (victim != null) {
+          evictions.increment();
+        }
+        return candidate.window;
+      }
+    }
+  }
+
+  private static int hash(long key) {
+    var hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32));
+  }
+
+  /**
+   * Returns the number of windows found in the cache.
+   * @return the number of windows found in the cache.
+   */
+  long hits() {
+    return hits.sum();
+  }
+
+  /**
+   * Returns the number of windows loaded from the source.
+   * @return the number of windows loaded from the source.
+   */
+  long misses() {
+    return misses.sum();
+  }
+
+  /**
+   * Returns the number of windows evicted or not admitted in the cache.
+   * @return the number of windows evicted or not admitted in the cache.
+   */
+  long evictions() {
+    return evictions.sum();
+  }
+
+  /**
+   * Returns the number of windows in the cache.
+   * @return the number of windows in the cache.
+   */
+  int size() {
+    var size = 0;
+    for(var i = 0; i < entries.length(); i++) {
+      if (entries.get(i) != null) {
+        size++;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * A count-min sketch of 4 bits counters, 16 counters per long, each key increments 4 counters.
+   * The counters are read and written with opaque accesses, a concurrent increment may be lost
+   * but a counter is never torn.
+   */
+  private static final class FrequencySketch {
+    private static final long[] SEEDS = {
+        0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L };
+    private static final long RESET_MASK = 0x7777_7777_7777_7777L;
+
+    private final AtomicLongArray table;
+
+    private FrequencySketch(int capacity) {
+      table = new AtomicLongArray(Integer.highestOneBit(Math.max(1, capacity)) << 1);
+    }
+
+    private int counter(int hash, int i) {
+      var value = (hash + SEEDS[i]) * SEEDS[i];
+      value ^= value >>> 29;
+      var index = (int) (value >>> 32) & (table.length() - 1);
+      var shift = ((int) value & 15) << 2;
+      return (index << 6) | shift;
+    }
+
+    int frequency(int hash) {
+      var frequency = 15;
+      for(var i = 0; i < SEEDS.length; i++) {
+        var counter = counter(hash, i);
+        frequency = Math.min(frequency, (int) (table.getOpaque(counter >>> 6) >>> (counter & 63)) & 15);
+      }
+      return frequency;
+    }
+
+    void increment(int hash) {
+      for(var i = 0; i < SEEDS.length; i++) {
+        var counter = counter(hash, i);
+        var index = counter >>> 6;
+        var shift = counter & 63;
+        var value = table.getOpaque(index);
+        if (((value >>> shift) & 15) != 15) {  // a saturated counter is not written
+          table.setOpaque(index, value + (1L << shift));
+        }
+      }
+    }
+
+    void age() {
+      for(var i = 0; i < table.length(); i++) {
+        table.setOpaque(i, (table.getOpaque(i) >>> 1) & RESET_MASK);
+      }
+    }
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+/**
+ * Storage of the prices of a {@link PriceService}, one column of prices scaled by a power of ten
+ * per security, indexed by the number of days since the first day with a price.
+ * The price service checks that the day is in the range of the columns before calling
+ * {@link #price(int, int)} or {@link #prices(int, int, long[], int, int)}.
+ */
+interface PriceColumns {
+  /**
+   * Returns true if there is a column of prices for a security.
+   * @param id the {@link Security#id() id} of the security.
+   * @return true if there is a column of prices for the security.
+   */
+  boolean hasColumn(int id);
+
+  /**
+   * Returns the scaled price of a security at a given day.
+   * @param id the id of a security that {@link #hasColumn(int) has a column}.
+   * @param day the day in the range of the column.
+   * @return the scaled price or {@link PriceService#NO_PRICE} if there is no price.
+   */
+  long price(int id, int day);
+
+  /**
+   * Copies the scaled prices of a security for consecutive days into an array.
+   * @param id the id of a security that {@link #hasColumn(int) has a column}.
+   * @param day the first day, the days up to {@code day + length} are in the range of the column.
+   * @param prices the array that receives the prices.
+   * @param offset index in the array of the first price.
+   * @param length number of prices to copy.
+   */
+  void prices(int id, int day, long[] prices, int offset, int length);
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Binary file format storing the prices of securities.
+ *
+ * All values are big endian.
+ * <pre>
+ * header
+ *   int     magic number, {@code 'PRIC'}
+ *   int     version of the format
+ *   long    epoch day of the first price of each column
+ *   int     number of days (dayCount)
+ *   int     scale of the prices
+ *   int     number of securities (securityCount)
+ *   int     offset in bytes of the first column, a multiple of 8
+ * security index, securityCount times
+ *   short   length of the name of the security in bytes
+ *   byte[]  name of the security encoded in UTF-8
+ * columns, securityCount times
+ *   long[dayCount]  prices of the security multiplied by {@code 10^scale},
+ *                   {@code Long.MIN_VALUE} if there is no price
+ * </pre>
+ *
+ * The columns have a fixed stride, so a price file can be mapped in memory and
+ * a price is found without any decoding.
+ * The file is mapped in one piece, so its size is limited to {@code Integer.MAX_VALUE} bytes (2 GB)
+ * even if the format could describe a larger file, and the name of a security is limited
+ * to {@code Short.MAX_VALUE} bytes.
+ *
+ * @see PriceService#createAMappedPriceService(Path)
+ */
+@ThreadSafe
+public final class PriceFile {
+  private static final int MAGIC = 0x50524943;  // 'PRIC'
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 32;
+
+  private PriceFile() {
+    throw new AssertionError();
+  }
+
+  /**
+   * Writes the prices of all the securities between two dates into a price file.
+   * Missing prices are stored as missing in the file.
+   *
+   * @param priceService the service providing the prices.
+   * @param from the first date (inclusive).
+   * @param to the last date (inclusive).
+   * @param path path of the price file, replaced if it already exists.
+   * @throws IOException if an I/O error occurs.
+   * @throws IllegalArgumentException if {@code from} is after {@code to}, if the name of a security is longer
+   *         than {@code Short.MAX_VALUE} bytes or if the file would be larger than {@code Integer.MAX_VALUE} bytes.
+   */
+  public static void write(@Nonnull PriceService priceService, @Nonnull LocalDate from, @Nonnull LocalDate to, @Nonnull Path path) throws IOException {
+    requireNonNull(priceService);
+    requireNonNull(from);
+    requireNonNull(to);
+    requireNonNull(path);
+    var dayCount = Math.toIntExact(to.toEpochDay() - from.toEpochDay() + 1);
+    if (dayCount < 0) {
+      throw new IllegalArgumentException("from " + from + " is after to " + to);
+    }
+    var securities = Security.securities();
+    var names = securities.stream().map(security -> security.name().getBytes(UTF_8)).toArray(byte[][]::new);
+    for(var name: names) {
+      if (name.length > Short.MAX_VALUE) {
+        throw new IllegalArgumentException("security name longer than " + Short.MAX_VALUE + " bytes");
+      }
+    }
+    var indexSize = Arrays.stream(names).mapToLong(name -> Short.BYTES + name.length).sum();
+    var columnSize = Math.multiplyExact((long) dayCount, Long.BYTES);
+    var columnsOffset = align(HEADER_SIZE + indexSize);
+    var fileSize = Math.addExact(columnsOffset, Math.multiplyExact(columnSize, names.length));
+    if (Math.max(fileSize, columnSize) > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("price file larger than " + Integer.MAX_VALUE + " bytes");
+    }
+
+    try(var channel = FileChannel.open(path, CREATE, TRUNCATE_EXISTING, WRITE)) {
+      var header = ByteBuffer.allocate((int) columnsOffset);
+      header.putInt(MAGIC)
+          .putInt(VERSION)
+          .putLong(from.toEpochDay())
+          .putInt(dayCount)
+          .putInt(priceService.priceScale())
+          .putInt(securities.size())
+          .putInt((int) columnsOffset);
+      for(var name: names) {
+        header.putShort((short) name.length).put(name);
+      }
+      writeFully(channel, header.clear());
+
+      var column = ByteBuffer.allocate((int) columnSize);
+      var prices = new long[dayCount];
+      for(var security: securities) {
+        priceService.getScaledPrices(security, from, prices);
+        column.clear();
+        column.asLongBuffer().put(prices);
+        writeFully(channel, column);
+      }
+    }
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while(buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  private static long align(long offset) {
+    return (offset + Long.BYTES - 1) & -Long.BYTES;
+  }
+
+  /**
+   * Maps a price file in memory.
+   * The securities of the file that are not known are registered with {@link Security#of(String)},
+   * so loading a price file modifies the global registry of securities.
+   * The known securities that are not in the file have no price.
+   *
+   * @param path path of the price file.
+   * @return a price service reading the prices from the mapped file.
+   * @throws IOException if an I/O error occurs or if the file is not a valid price file.
+   */
+  static PriceService map(Path path) throws IOException {
+    try(var channel = FileChannel.open(path, READ)) {
+      var size = channel.size();
+      if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+        throw new IOException("invalid price file size " + size + " for " + path);
+      }
+      // the mapping stays valid once the channel is closed
+      var buffer = channel.map(MapMode.READ_ONLY, 0, size);
+      if (buffer.getInt(0) != MAGIC) {
+        throw new IOException("not a price file " + path);
+      }
+      var version = buffer.getInt(4);
+      if (version != VERSION) {
+        throw new IOException("unsupported price file version " + version + " for " + path);
+      }
+      var firstDay = buffer.getLong(8);
+      var dayCount = buffer.getInt(16);
+      var scale = buffer.getInt(20);
+      var securityCount = buffer.getInt(24);
+      var columnsOffset = buffer.getInt(28);
+      if (dayCount < 0 || securityCount < 0 || columnsOffset % Long.BYTES != 0
+          || columnsOffset + (long) securityCount * dayCount * Long.BYTES != size) {
+        throw new IOException("corrupted price file " + path);
+      }
+
+      var columns = new HashMap<String, Integer>();
+      buffer.position(HEADER_SIZE);
+      for(var i = 0; i < securityCount; i++) {
+        var length = buffer.getShort();
+        if (length <= 0) {
+          throw new IOException("corrupted price file " + path);
+        }
+        var name = new byte[length];
+        buffer.get(name);
+        columns.put(new String(name, UTF_8), i);
+      }
+
+      // the securities of the file are registered if necessary
+      var offsets = new int[Security.securities().size()];
+      Arrays.fill(offsets, -1);
+      for(var entry: columns.entrySet()) {
+        var id = Security.of(entry.getKey()).id();
+        if (id >= offsets.length) {
+          var length = offsets.length;
+          offsets = Arrays.copyOf(offsets, Math.max(id + 1, length << 1));
+          Arrays.fill(offsets, length, offsets.length, -1);
+        }
+        offsets[id] = entry.getValue() * dayCount;
+      }
+      var prices = buffer.position(columnsOffset).asLongBuffer();
+      return new PriceService(firstDay, dayCount, scale, prices, offsets);
+    }
+  }
+}
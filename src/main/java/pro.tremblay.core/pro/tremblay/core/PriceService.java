@@ -15,12 +15,14 @@
  */
 package pro.tremblay.core;
 
+import java.io.IOException;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.nio.LongBuffer;
+import java.nio.file.Path;
 import java.time.LocalDate;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
-import java.util.Random;
 
 import javax.annotation.Nonnull;
 import javax.annotation.concurrent.ThreadSafe;
@@ -28,40 +30,182 @@ import javax.annotation.concurrent.ThreadSafe;
 /**
  * Service returning security prices. This is actually a fake implementation
  * using randomly generated prices.
+ *
+ * The prices are {@code long}s scaled by {@code 10^scale}, stored in one column
+ * of {@code dayCount} prices per security, indexed by the number of days
+ * since the first day with a price. The columns are either the windows of prices
+ * of a {@link PriceSource} kept in a bounded cache, see {@link #create(PriceSource, int)},
+ * or stored in a memory mapped {@link PriceFile price file}.
+ *
+ * The prices can be requested one by one or in bulk, all the securities at a date
+ * ({@link #getScaledPrices(LocalDate, long[])}), a security for consecutive days
+ * ({@link #getScaledPrices(Security, LocalDate, long[])}) or several securities at several dates
+ * ({@link #getScaledPrices(List, List, long[])}), the bulk methods store the prices in an array
+ * provided by the caller and don't throw an exception if a price is missing.
+ *
+ * The number of prices requested and the number of prices not found are counted
+ * by the counters {@code price.lookups} and {@code price.misses} of the metrics
+ * set by {@link #withMetrics(Metrics)}.
  */
 @ThreadSafe
 public class PriceService {
-  private final HashMap<String, BigDecimal> prices;
-  
-  private PriceService(HashMap<String, BigDecimal> prices) {
-    this.prices = prices;
+  /** Scaled price used to represent a missing price */
+  public static final long NO_PRICE = Long.MIN_VALUE;
+
+  /** Default maximum number of prices kept in the cache of a price service */
+  public static final int DEFAULT_CACHE_SIZE = 1 << 20;
+
+  private final long firstDay;
+  private final int dayCount;
+  private final int scale;
+  private final PriceColumns columns;
+  private final Metrics.Counter lookups;
+  private final Metrics.Counter misses;
+
+  /**
+   * Creates a price service from a buffer of scaled prices.
+   * @param firstDay epoch day of the first price of each column.
+   * @param dayCount number of prices in a column.
+   * @param scale scale of the prices.
+   * @param prices buffer of the prices, only accessed using absolute gets.
+   * @param offsets index in the buffer of the column of each security indexed
+   *                by {@link Security#id()}, -1 if there is no column, the securities
+   *                with an id greater than the length of the array have no column.
+   */
+  PriceService(long firstDay, int dayCount, int scale, LongBuffer prices, int[] offsets) {
+    this(firstDay, dayCount, scale, new BufferColumns(prices, offsets), Metrics.disabled());
+  }
+
+  private PriceService(long firstDay, int dayCount, int scale, PriceColumns columns, Metrics metrics) {
+    this.firstDay = firstDay;
+    this.dayCount = dayCount;
+    this.scale = scale;
+    this.columns = columns;
+    this.lookups = metrics.counter("price.lookups");
+    this.misses = metrics.counter("price.misses");
+  }
+
+  /**
+   * Returns a price service that serves the same prices and records its metrics.
+   * @param metrics the metrics used to count the prices requested and the prices not found.
+   * @return a new price service sharing the prices of this service.
+   */
+  @Nonnull
+  public PriceService withMetrics(@Nonnull Metrics metrics) {
+    Objects.requireNonNull(metrics);
+    return new PriceService(firstDay, dayCount, scale, columns, metrics);
   }
 
   /**
-   * Create a price service that serves random prices.
+   * Create a price service that serves random prices since the beginning of the year
+   * for the securities existing when the service is created.
+   * The prices are only generated when requested, see {@link #create(PriceSource, int)}.
+   *
    * @param dateService service that provides the current date.
    * @return a newly created price service.
    */
   public static PriceService createARandomPriceService(@Nonnull DateService dateService) {
     Objects.requireNonNull(dateService);
-    // Randomly generated price since the beginning of the year
-    var random = new Random(0);
-    var now = dateService.currentDate();
-    var prices = new HashMap<String, BigDecimal>();
-    for (var security : Security.values()) {
-      var start = now.withDayOfYear(1);
-      var price = BigDecimal.valueOf(100 + random.nextInt(200));
-      while (!start.isAfter(now)) {
-        var tick = BigDecimal.valueOf(random.nextGaussian()).setScale(2, RoundingMode.HALF_UP);
-        prices.put(getKey(security, start), price.add(tick));
-        start = start.plusDays(1);
-      }
+    return create(new RandomPrices(dateService.currentDate(), Security.securities().size()), DEFAULT_CACHE_SIZE);
+  }
+
+  /**
+   * Create a price service that serves the prices of a price source.
+   * The prices are loaded from the source by windows of consecutive days of a security,
+   * when a price of the window is requested, then kept in a cache of at most {@code cacheSize} prices.
+   * The cache favors the windows requested frequently, see {@link #cacheStats()}.
+   *
+   * @param source the source of the prices.
+   * @param cacheSize the maximum number of prices kept in the cache.
+   * @return a newly created price service.
+   * @throws IllegalArgumentException if the cache size is less than 32 prices
+   *         or if the last date of the source is before its first date.
+   * @see PriceSource#provider(String)
+   */
+  public static PriceService create(@Nonnull PriceSource source, int cacheSize) {
+    Objects.requireNonNull(source);
+    var firstDay = source.firstDate().toEpochDay();
+    var dayCount = source.lastDate().toEpochDay() - firstDay + 1;
+    if (dayCount < 0 || dayCount > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("invalid date range " + source.firstDate() + " " + source.lastDate());
     }
-    return new PriceService(prices);
+    var cache = new PriceCache(source, cacheSize);
+    return new PriceService(firstDay, (int) dayCount, source.priceScale(), cache, Metrics.disabled());
   }
 
-  private static String getKey(Security security, LocalDate date) {
-    return date + "#" + security;
+  /**
+   * Create a price service that serves the prices of a price file.
+   * The file is memory mapped, so the prices are read lazily by the OS and
+   * the pages are shared by all the processes that map the same file.
+   *
+   * @param path path of a file written by {@link PriceFile#write(PriceService, LocalDate, LocalDate, Path)}.
+   * @return a newly created price service.
+   * @throws IOException if the file can not be read or is not a price file.
+   */
+  public static PriceService createAMappedPriceService(@Nonnull Path path) throws IOException {
+    Objects.requireNonNull(path);
+    return PriceFile.map(path);
+  }
+
+  /**
+   * Statistics of the cache of a price service, counted in windows of consecutive days.
+   * @param hits the number of windows found in the cache.
+   * @param misses the number of windows loaded from the price source.
+   * @param evictions the number of windows evicted from the cache or not admitted in the cache.
+   */
+  public record CacheStats(long hits, long misses, long evictions) {
+    /**
+     * Returns the ratio of the windows found in the cache.
+     * @return the ratio of the windows found in the cache, 0 if no window was requested
+     *         like {@link CachingReportingService.Statistics#hitRate()}.
+     */
+    public double hitRate() {
+      var requests = hits + misses;
+      return (requests == 0)? 0: (double) hits / requests;
+    }
+  }
+
+  /**
+   * Returns the statistics of the cache shared by this price service and the services
+   * created by {@link #withMetrics(Metrics)}.
+   * @return the statistics of the cache, all zeros if the service has no cache.
+   */
+  @Nonnull
+  public CacheStats cacheStats() {
+    if (!(columns instanceof PriceCache)) {
+      return new CacheStats(0, 0, 0);
+    }
+    var cache = (PriceCache) columns;
+    return new CacheStats(cache.hits(), cache.misses(), cache.evictions());
+  }
+
+  /**
+   * Returns the scale of the prices returned by {@link #getScaledPrice(LocalDate, Security)}.
+   * @return the scale of the prices.
+   */
+  public int priceScale() {
+    return scale;
+  }
+
+  /**
+   * Returns the price at a given date for a security as a long scaled by {@code 10^priceScale()}.
+   * This method doesn't allocate and doesn't take a lock, unless the service has a cache
+   * and the price is not in the cache.
+   *
+   * @param date     date on which we want the price
+   * @param security security for which we want a price
+   * @throws IllegalArgumentException if no price is found at this date
+   * @return the price of the security at a given date multiplied by {@code 10^priceScale()}
+   * @see #getPrice(LocalDate, Security)
+   */
+  public long getScaledPrice(@Nonnull LocalDate date, @Nonnull Security security) {
+    lookups.increment();
+    var price = scaledPrice(date.toEpochDay() - firstDay, security.id());
+    if (price == NO_PRICE) {
+      misses.increment();
+      throw new IllegalArgumentException("No price for " + security + " on " + date);
+    }
+    return price;
   }
 
   /**
@@ -76,10 +220,184 @@ public class PriceService {
    */
   @Nonnull
   public BigDecimal getPrice(@Nonnull LocalDate date, @Nonnull Security security) {
-    var price = prices.get(getKey(security, date));
-    if (price == null) {
-      throw new IllegalArgumentException("No price for " + security + " on " + date);
+    return BigDecimal.valueOf(getScaledPrice(date, security), scale);
+  }
+
+  private long scaledPrice(long day, int id) {
+    return (day < 0 || day >= dayCount || !columns.hasColumn(id))? NO_PRICE: columns.price(id, (int) day);
+  }
+
+  private int count(long[] prices, int from, int to) {
+    var found = 0;
+    for(var i = from; i < to; i++) {
+      if (prices[i] != NO_PRICE) {
+        found++;
+      }
+    }
+    lookups.add(to - from);
+    misses.add(to - from - found);
+    return found;
+  }
+
+  private void toPrices(long[] scaledPrices, BigDecimal[] prices) {
+    for(var i = 0; i < scaledPrices.length; i++) {
+      var price = scaledPrices[i];
+      prices[i] = (price == NO_PRICE)? null: BigDecimal.valueOf(price, scale);
+    }
+  }
+
+  /**
+   * Returns the prices of all the securities at a given date as longs scaled by {@code 10^priceScale()}.
+   * The price of the security of id {@code i} is stored in {@code prices[i]} for all the ids
+   * less than the length of the array, {@link #NO_PRICE} if there is no price.
+   *
+   * @param date   date on which we want the prices
+   * @param prices array indexed by {@link Security#id()} that receives the prices
+   * @return the number of prices found
+   * @see #getPrices(LocalDate, BigDecimal[])
+   */
+  public int getScaledPrices(@Nonnull LocalDate date, @Nonnull long[] prices) {
+    var day = date.toEpochDay() - firstDay;
+    for(var id = 0; id < prices.length; id++) {
+      prices[id] = scaledPrice(day, id);
+    }
+    return count(prices, 0, prices.length);
+  }
+
+  /**
+   * Returns the prices of all the securities at a given date.
+   * The price of the security of id {@code i} is stored in {@code prices[i]} for all the ids
+   * less than the length of the array, {@code null} if there is no price.
+   *
+   * @param date   date on which we want the prices
+   * @param prices array indexed by {@link Security#id()} that receives the prices
+   * @return the number of prices found
+   * @see #getScaledPrices(LocalDate, long[])
+   */
+  public int getPrices(@Nonnull LocalDate date, @Nonnull BigDecimal[] prices) {
+    var scaledPrices = new long[prices.length];
+    var found = getScaledPrices(date, scaledPrices);
+    toPrices(scaledPrices, prices);
+    return found;
+  }
+
+  /**
+   * Returns the prices of a security for consecutive days as longs scaled by {@code 10^priceScale()}.
+   * The price at the date {@code from.plusDays(i)} is stored in {@code prices[i]},
+   * {@link #NO_PRICE} if there is no price.
+   *
+   * @param security security for which we want the prices
+   * @param from     date of the first price
+   * @param prices   array that receives the prices, one per day
+   * @return the number of prices found
+   * @see #getPrices(Security, LocalDate, BigDecimal[])
+   */
+  public int getScaledPrices(@Nonnull Security security, @Nonnull LocalDate from, @Nonnull long[] prices) {
+    var id = security.id();
+    var hasColumn = columns.hasColumn(id);
+    var first = from.toEpochDay() - firstDay;
+    // the days stored in the column are copied in one call
+    var start = hasColumn? (int) Math.min(Math.max(-first, 0), prices.length): 0;
+    var end = hasColumn? (int) Math.max(Math.min(dayCount - first, prices.length), start): 0;
+    Arrays.fill(prices, 0, start, NO_PRICE);
+    if (start < end) {
+      columns.prices(id, (int) (first + start), prices, start, end - start);
+    }
+    Arrays.fill(prices, end, prices.length, NO_PRICE);
+    return count(prices, 0, prices.length);
+  }
+
+  /**
+   * Returns the prices of a security for consecutive days.
+   * The price at the date {@code from.plusDays(i)} is stored in {@code prices[i]},
+   * {@code null} if there is no price.
+   *
+   * @param security security for which we want the prices
+   * @param from     date of the first price
+   * @param prices   array that receives the prices, one per day
+   * @return the number of prices found
+   * @see #getScaledPrices(Security, LocalDate, long[])
+   */
+  public int getPrices(@Nonnull Security security, @Nonnull LocalDate from, @Nonnull BigDecimal[] prices) {
+    var scaledPrices = new long[prices.length];
+    var found = getScaledPrices(security, from, scaledPrices);
+    toPrices(scaledPrices, prices);
+    return found;
+  }
+
+  /**
+   * Returns the prices of several securities at several dates as longs scaled by {@code 10^priceScale()}.
+   * The price of {@code securities.get(i)} at {@code dates.get(j)} is stored in
+   * {@code prices[i * dates.size() + j]}, {@link #NO_PRICE} if there is no price.
+   *
+   * @param securities securities for which we want the prices
+   * @param dates      dates on which we want the prices
+   * @param prices     array that receives the prices, one row of {@code dates.size()} prices per security
+   * @return the number of prices found
+   * @throws IllegalArgumentException if the array is smaller than {@code securities.size() * dates.size()}
+   * @see #getPrices(List, List, BigDecimal[])
+   */
+  public int getScaledPrices(@Nonnull List<Security> securities, @Nonnull List<LocalDate> dates, @Nonnull long[] prices) {
+    var size = (long) securities.size() * dates.size();
+    if (prices.length < size) {
+      throw new IllegalArgumentException("array too small, " + prices.length + " < " + size);
+    }
+    var days = new long[dates.size()];
+    for(var j = 0; j < days.length; j++) {
+      days[j] = dates.get(j).toEpochDay() - firstDay;
+    }
+    var index = 0;
+    for(var security: securities) {
+      var id = security.id();
+      for(var day: days) {
+        prices[index++] = scaledPrice(day, id);
+      }
+    }
+    return count(prices, 0, index);
+  }
+
+  /**
+   * Returns the prices of several securities at several dates.
+   * The price of {@code securities.get(i)} at {@code dates.get(j)} is stored in
+   * {@code prices[i * dates.size() + j]}, {@code null} if there is no price.
+   *
+   * @param securities securities for which we want the prices
+   * @param dates      dates on which we want the prices
+   * @param prices     array that receives the prices, one row of {@code dates.size()} prices per security
+   * @return the number of prices found
+   * @throws IllegalArgumentException if the array is smaller than {@code securities.size() * dates.size()}
+   * @see #getScaledPrices(List, List, long[])
+   */
+  public int getPrices(@Nonnull List<Security> securities, @Nonnull List<LocalDate> dates, @Nonnull BigDecimal[] prices) {
+    var size = (long) securities.size() * dates.size();
+    if (prices.length < size) {
+      throw new IllegalArgumentException("array too small, " + prices.length + " < " + size);
+    }
+    var scaledPrices = new long[(int) size];
+    var found = getScaledPrices(securities, dates, scaledPrices);
+    toPrices(scaledPrices, prices);
+    return found;
+  }
+
+  /**
+   * Columns stored in a buffer, on the heap or memory mapped.
+   * @param prices buffer of the prices, only accessed using absolute gets.
+   * @param offsets index in the buffer of the column of each security, -1 if there is no column.
+   */
+  private record BufferColumns(LongBuffer prices, int[] offsets) implements PriceColumns {
+    @Override
+    public boolean hasColumn(int id) {
+      return id < offsets.length && offsets[id] != -1;
+    }
+
+    @Override
+    public long price(int id, int day) {
+      return prices.get(offsets[id] + day);
+    }
+
+    @Override
+    public void prices(int id, int day, long[] prices, int offset, int length) {
+      this.prices.get(offsets[id] + day, prices, offset, length);
     }
-    return price;
   }
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import java.time.LocalDate;
+import java.util.ServiceLoader;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A source of security prices, the backend of a {@link PriceService}.
+ *
+ * A price source is usually slow, so the price service asks for the prices
+ * of a security for several consecutive days at once and keeps them in a cache,
+ * see {@link PriceService#create(PriceSource, int)}.
+ *
+ * The price sources are plugged using a {@link Provider} declared in the module-info
+ * of the module of the implementation
+ * <pre>
+ *   provides pro.tremblay.core.PriceSource.Provider with com.acme.AcmePriceSourceProvider;
+ * </pre>
+ * and are found by name with {@link #provider(String)}.
+ * This module provides the source {@code "random"} that generates random prices since
+ * the beginning of the year.
+ */
+@ThreadSafe
+public interface PriceSource {
+  /**
+   * Returns the scale of the prices, the prices are longs multiplied by {@code 10^priceScale()}.
+   * @return the scale of the prices.
+   */
+  int priceScale();
+
+  /**
+   * Returns the first date with a price.
+   * @return the first date with a price.
+   */
+  @Nonnull
+  LocalDate firstDate();
+
+  /**
+   * Returns the last date with a price.
+   * @return the last date with a price, not before {@link #firstDate()}.
+   */
+  @Nonnull
+  LocalDate lastDate();
+
+  /**
+   * Returns true if the source knows the prices of a security.
+   * @param security a security.
+   * @return true if the source knows the prices of the security.
+   */
+  boolean hasPrices(@Nonnull Security security);
+
+  /**
+   * Loads the prices of a security for consecutive days.
+   * The price at the date {@code from.plusDays(i)} is stored in {@code prices[i]},
+   * {@link PriceService#NO_PRICE} if there is no price.
+   *
+   * @param security a security for which {@link #hasPrices(Security)} is true.
+   * @param from the date of the first price, the dates may be outside the range
+   *             of the dates with a price.
+   * @param prices the array that receives the prices multiplied by {@code 10^priceScale()}.
+   */
+  void load(@Nonnull Security security, @Nonnull LocalDate from, @Nonnull long[] prices);
+
+  /**
+   * Creates price sources, the implementations are found using a {@link ServiceLoader}.
+   */
+  interface Provider {
+    /**
+     * Returns the name of the price source.
+     * @return the name of the price source.
+     */
+    @Nonnull
+    String name();
+
+    /**
+     * Creates a price source.
+     * @param dateService service that provides the current date.
+     * @return a new price source.
+     */
+    @Nonnull
+    PriceSource create(@Nonnull DateService dateService);
+  }
+
+  /**
+   * Finds the provider of a price source by its name among the providers
+   * visible from this module.
+   * @param name the name of the price source.
+   * @return the provider of that name.
+   * @throws IllegalArgumentException if there is no provider of that name.
+   */
+  @Nonnull
+  static Provider provider(@Nonnull String name) {
+    for(var provider: ServiceLoader.load(Provider.class)) {
+      if (provider.name().equals(name)) {
+        return provider;
+      }
+    }
+    throw new IllegalArgumentException("no price source named " + name);
+  }
+}
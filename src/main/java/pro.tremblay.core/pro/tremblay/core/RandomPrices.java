@@ -0,0 +1,218 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A price source of random prices since the beginning of the year, provided as the
+ * price source {@code "random"}.
+ *
+ * The prices are exactly the ones of the historical eager implementation: the columns are
+ * generated in {@link Security#id() id} order by a single {@code java.util.Random(0)}, the first
+ * price of a column is {@code 100 + random.nextInt(200)}, then each day adds a tick,
+ * {@code random.nextGaussian()} rounded to 2 decimals.
+ * Because the state of {@code java.util.Random} can not be captured, the generator is
+ * re-implemented here and its state at the start of each column is recorded,
+ * so loading some prices of a column only requires to skip the random numbers before them
+ * without computing their prices. The prices are not kept, {@link PriceService} caches them.
+ */
+@ThreadSafe
+final class RandomPrices implements PriceSource {
+  /** Scale of the generated prices */
+  static final int SCALE = 2;
+
+  private final LocalDate firstDate;
+  private final int dayCount;
+  private final int securityCount;
+
+  private final Generator[] starts;  // state of the generator at the start of each column, guarded by this
+  private int startCount = 1;        // guarded by this
+
+  /**
+   * Creates random prices from the beginning of the year to a date.
+   * @param now the last date with a price.
+   * @param securityCount number of securities with prices, the ids greater or equals have no price.
+   */
+  RandomPrices(LocalDate now, int securityCount) {
+    if (securityCount < 0) {
+      throw new IllegalArgumentException("invalid security count " + securityCount);
+    }
+    this.firstDate = now.withDayOfYear(1);
+    this.dayCount = now.getDayOfYear();
+    this.securityCount = securityCount;
+    this.starts = new Generator[Math.max(1, securityCount)];
+    starts[0] = new Generator(0);
+  }
+
+  /**
+   * Provides the price source {@code "random"} for the securities existing when the source is created.
+   */
+  public static final class Provider implements PriceSource.Provider {
+    @Override
+    public String name() {
+      return "random";
+    }
+
+    @Override
+    public PriceSource create(DateService dateService) {
+      return new RandomPrices(dateService.currentDate(), Security.securities().size());
+    }
+  }
+
+  @Override
+  public int priceScale() {
+    return SCALE;
+  }
+
+  @Override
+  public LocalDate firstDate() {
+    return firstDate;
+  }
+
+  @Override
+  public LocalDate lastDate() {
+    return firstDate.plusDays(dayCount - 1);
+  }
+
+  @Override
+  public boolean hasPrices(Security security) {
+    return security.id() < securityCount;
+  }
+
+  @Override
+  public void load(Security security, LocalDate from, long[] prices) {
+    var first = from.toEpochDay() - firstDate.toEpochDay();
+    var start = (int) Math.min(Math.max(-first, 0), prices.length);
+    var end = (int) Math.max(Math.min(dayCount - first, prices.length), start);
+    Arrays.fill(prices, 0, start, PriceService.NO_PRICE);
+    Arrays.fill(prices, end, prices.length, PriceService.NO_PRICE);
+    if (start == end) {
+      return;
+    }
+    var generator = start(security.id());
+    var price = (100 + generator.nextInt(200)) * 100L;
+    generator.skipGaussians((int) (first + start));
+    for(var i = start; i < end; i++) {
+      var tick = BigDecimal.valueOf(generator.nextGaussian()).setScale(SCALE, RoundingMode.HALF_UP);
+      prices[i] = price + tick.unscaledValue().longValueExact();
+    }
+  }
+
+  private synchronized Generator start(int id) {
+    // the random numbers of the columns before are skipped
+    for(; startCount <= id; startCount++) {
+      var generator = new Generator(starts[startCount - 1]);
+      generator.nextInt(200);
+      generator.skipGaussians(dayCount);
+      starts[startCount] = generator;
+    }
+    return new Generator(starts[id]);
+  }
+
+  /**
+   * The algorithms of {@code java.util.Random}, a linear congruential generator
+   * and the polar method for the gaussians.
+   */
+  static final class Generator {
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    private long seed;
+    private double nextNextGaussian;
+    private boolean haveNextNextGaussian;
+
+    Generator(long seed) {
+      this.seed = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    Generator(Generator generator) {
+      this.seed = generator.seed;
+      this.nextNextGaussian = generator.nextNextGaussian;
+      this.haveNextNextGaussian = generator.haveNextNextGaussian;
+    }
+
+    private int next(int bits) {
+      seed = (seed * MULTIPLIER + ADDEND) & MASK;
+      return (int) (seed >>> (48 - bits));
+    }
+
+    int nextInt(int bound) {
+      if (bound <= 0) {
+        throw new IllegalArgumentException("bound must be positive");
+      }
+      var r = next(31);
+      var m = bound - 1;
+      if ((bound & m) == 0) {
+        return (int) ((bound * (long) r) >> 31);
+      }
+      for(var u = r; u - (r = u % bound) + m < 0; u = next(31)) {
+        // rejected
+      }
+      return r;
+    }
+
+    double nextDouble() {
+      return (((long) next(26) << 27) + next(27)) * DOUBLE_UNIT;
+    }
+
+    double nextGaussian() {
+      if (haveNextNextGaussian) {
+        haveNextNextGaussian = false;
+        return nextNextGaussian;
+      }
+      double v1, v2, s;
+      do {
+        v1 = 2 * nextDouble() - 1;
+        v2 = 2 * nextDouble() - 1;
+        s = v1 * v1 + v2 * v2;
+      } while (s >= 1 || s == 0);
+      var multiplier = StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+      nextNextGaussian = v2 * multiplier;
+      haveNextNextGaussian = true;
+      return v1 * multiplier;
+    }
+
+    /**
+     * Same state as calling {@link #nextGaussian()} {@code count} times, but the gaussians
+     * of the complete pairs are not computed, only the points rejected or not.
+     */
+    void skipGaussians(int count) {
+      if (count > 0 && haveNextNextGaussian) {
+        haveNextNextGaussian = false;
+        count--;
+      }
+      for(; count >= 2; count -= 2) {
+        double v1, v2, s;
+        do {
+          v1 = 2 * nextDouble() - 1;
+          v2 = 2 * nextDouble() - 1;
+          s = v1 * v1 + v2 * v2;
+        } while (s >= 1 || s == 0);
+      }
+      if (count == 1) {
+        nextGaussian();
+      }
+    }
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight recorder events emitted by {@link ReportingService} for each phase
+ * of the computation of a return on investment.
+ *
+ * An event is allocated, timed and committed in the same method so when the recording
+ * is off, the JIT removes the allocation and {@link Event#commit()} does nothing.
+ * By default, only the phases longer than 1 ms are recorded, the settings file
+ * {@code reporting.jfc} records all of them.
+ */
+final class ReportingEvents {
+  private ReportingEvents() {
+    throw new AssertionError();
+  }
+
+  @Name("pro.tremblay.core.Prices")
+  @Label("Prices")
+  @Description("Fetch the prices of the securities held at some dates")
+  @Category({ "Reporting", "Return On Investment" })
+  @StackTrace(false)
+  @Threshold("1 ms")
+  static final class PricesEvent extends Event {
+    @Label("Dates")
+    @Description("Dates of the prices separated by a comma")
+    String dates;
+
+    @Label("Securities")
+    int securities;
+
+    @Label("Missing Prices")
+    @Description("Number of missing prices at all the dates")
+    int missing;
+
+    void report(List<LocalDate> dates, int securities, int missing) {
+      end();
+      if (shouldCommit()) {
+        this.dates = dates.stream().map(LocalDate::toString).collect(Collectors.joining(","));
+        this.securities = securities;
+        this.missing = missing;
+        commit();
+      }
+    }
+  }
+
+  @Name("pro.tremblay.core.Revert")
+  @Label("Revert")
+  @Description("Revert the transactions of the year, with the fixed point arithmetic the position is also valued")
+  @Category({ "Reporting", "Return On Investment" })
+  @StackTrace(false)
+  @Threshold("1 ms")
+  static final class RevertEvent extends Event {
+    @Label("Transactions")
+    @Description("Number of transactions scanned")
+    int transactions;
+
+    @Label("Reverted")
+    @Description("Number of transactions reverted, 0 if one transaction is after today")
+    int reverted;
+
+    @Label("Period Days")
+    @Description("Number of days from the beginning of the year to today, the transactions are reverted in one pass")
+    int periodDays;
+
+    @Label("Arithmetic")
+    String arithmetic;
+
+    void report(int transactions, int reverted, int periodDays, Arithmetic arithmetic) {
+      end();
+      if (shouldCommit()) {
+        this.transactions = transactions;
+        this.reverted = reverted;
+        this.periodDays = periodDays;
+        this.arithmetic = arithmetic.name();
+        commit();
+      }
+    }
+  }
+
+  @Name("pro.tremblay.core.Valuation")
+  @Label("Valuation")
+  @Description("Value the securities held by a position")
+  @Category({ "Reporting", "Return On Investment" })
+  @StackTrace(false)
+  @Threshold("1 ms")
+  static final class ValuationEvent extends Event {
+    @Label("Phase")
+    @Description("initial for the position at the start of the period, current for the position of today")
+    String phase;
+
+    @Label("Securities")
+    @Description("Number of securities held")
+    int securities;
+
+    void report(String phase, int securities) {
+      end();
+      if (shouldCommit()) {
+        this.phase = phase;
+        this.securities = securities;
+        commit();
+      }
+    }
+  }
+
+  @Name("pro.tremblay.core.Annualization")
+  @Label("Annualization")
+  @Description("Divide the values and annualize the return on investment")
+  @Category({ "Reporting", "Return On Investment" })
+  @StackTrace(false)
+  @Threshold("1 ms")
+  static final class AnnualizationEvent extends Event {
+    @Label("Days")
+    int days;
+
+    @Label("Year Length")
+    int yearLength;
+
+    void report(int days, int yearLength) {
+      end();
+      if (shouldCommit()) {
+        this.days = days;
+        this.yearLength = yearLength;
+        commit();
+      }
+    }
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import java.time.LocalDate;
+import java.time.temporal.IsoFields;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A period of time ending today used to calculate a return on investment.
+ *
+ * @see ReportingService#calculateReturnOnInvestments(Position, java.util.Collection, java.util.List)
+ */
+@ThreadSafe
+@FunctionalInterface
+public interface ReportingPeriod {
+  /** From the beginning of the month (Month To Date) */
+  ReportingPeriod MONTH_TO_DATE = Standard.MONTH_TO_DATE;
+  /** From the beginning of the quarter (Quarter To Date) */
+  ReportingPeriod QUARTER_TO_DATE = Standard.QUARTER_TO_DATE;
+  /** From the beginning of the year (Year To Date) */
+  ReportingPeriod YEAR_TO_DATE = Standard.YEAR_TO_DATE;
+
+  /**
+   * Returns the first day of the period.
+   * @param now the current date, the last day of the period.
+   * @return the first day of the period.
+   */
+  @Nonnull
+  LocalDate start(@Nonnull LocalDate now);
+
+  /**
+   * Returns a period of a number of days ending today.
+   * @param days the number of days of the period, today included.
+   * @return a period of {@code days} days.
+   */
+  static ReportingPeriod trailingDays(int days) {
+    return new TrailingDays(days);
+  }
+
+  /*private*/ enum Standard implements ReportingPeriod {
+    MONTH_TO_DATE {
+      @Override
+      public LocalDate start(LocalDate now) {
+        return now.withDayOfMonth(1);
+      }
+    },
+    QUARTER_TO_DATE {
+      @Override
+      public LocalDate start(LocalDate now) {
+        return now.with(IsoFields.DAY_OF_QUARTER, 1);
+      }
+    },
+    YEAR_TO_DATE {
+      @Override
+      public LocalDate start(LocalDate now) {
+        return now.withDayOfYear(1);
+      }
+    }
+  }
+
+  /*private*/ record TrailingDays(int days) implements ReportingPeriod {
+    public TrailingDays {
+      if (days <= 0) {
+        throw new IllegalArgumentException("days must be positive " + days);
+      }
+    }
+
+    @Override
+    public LocalDate start(LocalDate now) {
+      return now.minusDays(days - 1);
+    }
+  }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An HTTP server that calculates the return on investment of positions.
+ *
+ * The return on investment since the beginning of the year is calculated by a {@code POST} on {@code /roi}
+ * with a body either
+ * <ul>
+ * <li>in JSON ({@code Content-Type: application/json}), e.g.
+ * <pre>
+ * {
+ *   "cash": 200,
+ *   "securities": { "GOOGL": 50 },
+ *   "transactions": [
+ *     { "type": "BUY", "date": "2020-03-01", "cash": 1234.50, "security": "GOOGL", "quantity": 10 },
+ *     { "type": "DEPOSIT", "date": "2020-03-02", "cash": 100 }
+ *   ]
+ * }
+ * </pre>
+ * the answer is {@code {"roi":12.34}},</li>
+ * <li>or in the CSV format of {@link TransactionLoader} ({@code Content-Type: text/csv}),
+ * with at most {@value #COMPACT_SCALE} decimals, and the current position in the query,
+ * e.g. {@code /roi?cash=200&security=GOOGL:50}, the answer is the return on investment as text.</li>
+ * </ul>
+ * The securities must be registered, an unknown security is an error.
+ * The errors are reported with the status code 400 and the error message as text.
+ *
+ * The connections are kept alive between requests, the requests sent on a connection
+ * without waiting for the responses (pipelining) are processed one after the other.
+ * The requests are processed by an executor provided when the server is started,
+ * e.g. a fixed thread pool or on a JDK that has them, a virtual thread per task executor.
+ *
+ * The errors that are not caused by the request are reported with the status code 500
+ * and logged with the {@link System.Logger} of this class.
+ *
+ * The server is based on the JDK HTTP server that writes the headers and the body of a response
+ * in two packets and by default doesn't set TCP_NODELAY, so the body waits for the acknowledgment
+ * of the headers, up to 40 ms if the client delays its acknowledgments.
+ * The JVM running the server should be started with {@code -Dsun.net.httpserver.nodelay=true},
+ * this property applies to all the JDK HTTP servers of the JVM.
+ */
+@ThreadSafe
+public final class ReportingServer implements Closeable {
+  /** Number of decimals of the cash and the quantities of the compact format */
+  static final int COMPACT_SCALE = 6;
+
+  private static final int MAX_BODY_SIZE = 16 * 1024 * 1024;
+  private static final int BACKLOG = 4_096;  // a load test opens thousands of connections at once
+  private static final System.Logger LOGGER = System.getLogger(ReportingServer.class.getName());
+
+  private final ReportingService reportingService;
+  private final TransactionLoader loader = new TransactionLoader(COMPACT_SCALE, COMPACT_SCALE);
+  private final HttpServer server;
+
+  private ReportingServer(ReportingService reportingService, HttpServer server) {
+    this.reportingService = reportingService;
+    this.server = server;
+  }
+
+  /**
+   * Starts a server.
+   * @param reportingService the service used to calculate the return on investment.
+   * @param address the address of the server, a port 0 means any free port.
+   * @param executor the executor that processes the requests, it is not shut down
+   *                 when the server is closed.
+   * @return a newly started server.
+   * @throws IOException if the server can not be bound to the address.
+   */
+  @Nonnull
+  public static ReportingServer start(@Nonnull ReportingService reportingService, @Nonnull InetSocketAddress address,
+                                      @Nonnull Executor executor) throws IOException {
+    requireNonNull(reportingService);
+    requireNonNull(address);
+    requireNonNull(executor);
+    var httpServer = HttpServer.create(address, BACKLOG);
+    var server = new ReportingServer(reportingService, httpServer);
+    httpServer.createContext("/roi", server::handle);
+    httpServer.setExecutor(executor);
+    httpServer.start();
+    return server;
+  }
+
+  /**
+   * Returns the address of the server.
+   * @return the address of the server.
+   */
+  @Nonnull
+  public InetSocketAddress address() {
+    return server.getAddress();
+  }
+
+  /**
+   * Stops the server, the requests being processed are not waited for.
+   */
+  @Override
+  public void close() {
+    server.stop(0);
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try(exchange) {
+      if (!exchange.getRequestMethod().equals("POST")) {
+        exchange.getResponseHeaders().add("Allow", "POST");
+        send(exchange, 405, "text/plain", "only POST is supported\n");
+        return;
+      }
+      if (!exchange.getRequestURI().getPath().equals("/roi")) {
+        send(exchange, 404, "text/plain", "not found\n");
+        return;
+      }
+      var contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+      var json = contentType != null && contentType.startsWith("application/json");
+      var csv = contentType != null && contentType.startsWith("text/csv");
+      if (!json && !csv) {
+        send(exchange, 415, "text/plain", "only application/json and text/csv are supported\n");
+        return;
+      }
+      var body = exchange.getRequestBody().readNBytes(MAX_BODY_SIZE + 1);
+      if (body.length > MAX_BODY_SIZE) {
+        send(exchange, 413, "text/plain", "body larger than " + MAX_BODY_SIZE + " bytes\n");
+        return;
+      }
+      try {
+        if (json) {
+          var roi = jsonROI(new String(body, UTF_8));
+          send(exchange, 200, "application/json", "{\"roi\":" + roi.toPlainString() + "}");
+        } else {
+          var roi = compactROI(exchange.getRequestURI().getRawQuery(), body);
+          send(exchange, 200, "text/plain", roi.toPlainString() + "\n");
+        }
+      } catch(IOException | IllegalArgumentException e) {
+        send(exchange, 400, "text/plain", e.getMessage() + "\n");
+      } catch(RuntimeException e) {
+        LOGGER.log(System.Logger.Level.ERROR, "error while processing " + exchange.getRequestMethod() + " " + exchange.getRequestURI(), e);
+        send(exchange, 500, "text/plain", "internal error\n");
+      }
+    }
+  }
+
+  private static void send(HttpExchange exchange, int status, String contentType, String text) throws IOException {
+    var bytes = text.getBytes(UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+    exchange.sendResponseHeaders(status, bytes.length);
+    exchange.getResponseBody().write(bytes);
+  }
+
+  private BigDecimal jsonROI(String text) throws IOException {
+    var request = map(JsonParser.parse(text), "request");
+    var current = new Position(decimal(request.get("cash"), "cash"));
+    var securities = request.get("securities");
+    if (securities != null) {
+      for(var entry: map(securities, "securities").entrySet()) {
+        current.quantity(security(string(entry.getKey(), "security")), decimal(entry.getValue(), "quantity"));
+      }
+    }
+    var transactions = new ArrayList<Transaction>();
+    var list = request.get("transactions");
+    if (list != null) {
+      if (!(list instanceof List<?>)) {
+        throw new IOException("transactions must be an array");
+      }
+      for(var element: (List<?>) list) {
+        transactions.add(transaction(map(element, "transaction")));
+      }
+    }
+    return reportingService.calculateReturnOnInvestmentYTD(current, transactions);
+  }
+
+  private static Transaction transaction(Map<?, ?> map) throws IOException {
+    var type = TransactionType.valueOf(string(map.get("type"), "type"));
+    LocalDate date;
+    try {
+      date = LocalDate.parse(string(map.get("date"), "date"));
+    } catch(DateTimeException e) {
+      throw new IOException("invalid date " + map.get("date"));
+    }
+    var cash = decimal(map.get("cash"), "cash");
+    var name = map.get("security");
+    var security = (name == null)? null: security(string(name, "security"));
+    var quantity = map.containsKey("quantity")? decimal(map.get("quantity"), "quantity"): BigDecimal.ZERO;
+    if (type.hasQuantity() && security == null) {
+      throw new IOException("no security for " + type);
+    }
+    return new Transaction(type, date, cash, security, quantity);
+  }
+
+  private static Map<?, ?> map(Object value, String name) throws IOException {
+    if (!(value instanceof Map<?, ?>)) {
+      throw new IOException(name + " must be an object");
+    }
+    return (Map<?, ?>) value;
+  }
+
+  private static String string(Object value, String name) throws IOException {
+    if (!(value instanceof String)) {
+      throw new IOException(name + " must be a string");
+    }
+    return (String) value;
+  }
+
+  private static BigDecimal decimal(Object value, String name) throws IOException {
+    if (!(value instanceof BigDecimal)) {
+      throw new IOException(name + " must be a number");
+    }
+    var decimal = (BigDecimal) value;
+    if (Math.abs(decimal.scale()) > FixedPoint.MAX_SCALE) {
+      throw new IOException(name + " has too many decimals " + decimal);
+    }
+    return decimal;
+  }
+
+  private static Security security(String name) throws IOException {
+    return Security.lookup(name).orElseThrow(() -> new IOException("unknown security " + name));
+  }
+
+  private BigDecimal compactROI(String query, byte[] body) throws IOException {
+    var current = new Position(BigDecimal.ZERO);
+    if (query != null) {
+      for(var parameter: query.split("&")) {
+        var equals = parameter.indexOf('=');
+        var key = (equals == -1)? parameter: parameter.substring(0, equals);
+        var value = (equals == -1)? "": URLDecoder.decode(parameter.substring(equals + 1), UTF_8);
+        switch (key) {
+        case "cash" -> current.cash(compactDecimal(value));
+        case "security" -> {
+          var colon = value.indexOf(':');
+          if (colon == -1) {
+            throw new IOException("invalid security " + value);
+          }
+          current.quantity(security(value.substring(0, colon)), compactDecimal(value.substring(colon + 1)));
+        }
+        default -> throw new IOException("unknown parameter " + key);
+        }
+      }
+    }
+    var transactions = new TransactionColumns(COMPACT_SCALE, COMPACT_SCALE);
+    loader.parseCSV(ByteBuffer.wrap(body),
+        (type, epochDay, cash, security, quantity) -> transactions.add(type, LocalDate.ofEpochDay(epochDay), cash, security, quantity));
+    return reportingService.calculateReturnOnInvestmentYTD(current, transactions);
+  }
+
+  private static BigDecimal compactDecimal(String value) throws IOException {
+    try {
+      var decimal = new BigDecimal(value);
+      if (decimal.scale() > COMPACT_SCALE || decimal.scale() < -FixedPoint.MAX_SCALE) {
+        throw new IOException("too many decimals " + value);
+      }
+      return decimal;
+    } catch(NumberFormatException e) {
+      throw new IOException("invalid number " + value);
+    }
+  }
+}
@@ -19,37 +19,100 @@ import static java.math.BigDecimal.ZERO;
 import static java.math.RoundingMode.HALF_UP;
 import static java.math.RoundingMode.UNNECESSARY;
 import static java.util.Objects.requireNonNull;
-import static java.util.stream.Collectors.toList;
 import static pro.tremblay.core.BigDecimalUtil.bd;
+import static pro.tremblay.core.Preferences.ARITHMETIC;
 import static pro.tremblay.core.Preferences.LENGTH_OF_YEAR;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import javax.annotation.Nonnull;
 import javax.annotation.concurrent.ThreadSafe;
 
 /**
  * Service reporting useful information on a position.
+ *
+ * The service records the following metrics
+ * <ul>
+ * <li>{@code reporting.roi.latency.ns}: histogram of the time in nanoseconds
+ * to calculate the return on investment of one position</li>
+ * <li>{@code reporting.roi.batch.latency.ns}: histogram of the time in nanoseconds
+ * to calculate the return on investment of a batch of positions</li>
+ * <li>{@code reporting.roi.reverted}: histogram of the number of transactions
+ * reverted to calculate the return on investment of a position</li>
+ * <li>{@code reporting.load.bytes}, {@code reporting.load.transactions} and {@code reporting.load.ns}:
+ * counters of the bytes, the transactions and the nanoseconds spent to load the transactions
+ * of a file, so {@code bytes / ns * 1000} is the loading throughput in megabytes per second</li>
+ * </ul>
  */
 @ThreadSafe
 public class ReportingService {
   private final Preferences preferences;
   private final PriceService priceService;
   private final DateService dateService;
+  private final boolean timed;
+  private final Metrics.Histogram latencyHistogram;
+  private final Metrics.Histogram batchLatencyHistogram;
+  private final Metrics.Histogram revertedHistogram;
+  private final Metrics.Counter loadedBytes;
+  private final Metrics.Counter loadedTransactions;
+  private final Metrics.Counter loadNanos;
 
   /**
    * Create the reporting service from preferences, a price service and a date service.
-   * @param preferences the preferences used to get the {@code LENGTH_OF_YEAR}
+   * The preferences are read at each call, use {@link Preferences#compile(Preferences.Key...)}
+   * to avoid decoding the values again and again.
+   * @param preferences the preferences used to get the {@code LENGTH_OF_YEAR} and the {@code ARITHMETIC}
    * @param priceService the price service to get the price of the security
    * @param dateService the date service to get the current time
    */
   public ReportingService(@Nonnull Preferences preferences, @Nonnull PriceService priceService, @Nonnull DateService dateService) {
+    this(preferences, priceService, dateService, Metrics.disabled());
+  }
+
+  /**
+   * Create the reporting service from preferences, a price service, a date service
+   * and the metrics recorded by the service.
+   * @param preferences the preferences used to get the {@code LENGTH_OF_YEAR} and the {@code ARITHMETIC}
+   * @param priceService the price service to get the price of the security
+   * @param dateService the date service to get the current time
+   * @param metrics the metrics recorded by the service
+   */
+  public ReportingService(@Nonnull Preferences preferences, @Nonnull PriceService priceService, @Nonnull DateService dateService,
+                          @Nonnull Metrics metrics) {
     this.preferences = requireNonNull(preferences);
     this.priceService = requireNonNull(priceService);
     this.dateService = requireNonNull(dateService);
+    this.timed = metrics.enabled();
+    this.latencyHistogram = metrics.histogram("reporting.roi.latency.ns");
+    this.batchLatencyHistogram = metrics.histogram("reporting.roi.batch.latency.ns");
+    this.revertedHistogram = metrics.histogram("reporting.roi.reverted");
+    this.loadedBytes = metrics.counter("reporting.load.bytes");
+    this.loadedTransactions = metrics.counter("reporting.load.transactions");
+    this.loadNanos = metrics.counter("reporting.load.ns");
+  }
+
+  private long startTime() {
+    return timed? System.nanoTime(): 0L;
+  }
+
+  private void recordTime(Metrics.Histogram histogram, long start) {
+    if (timed) {
+      histogram.record(System.nanoTime() - start);
+    }
   }
 
   /**
@@ -70,6 +133,9 @@ public class ReportingService {
    *
    * Then formula is {@code (current_value - initial_value) / initial_value}.
    *
+   * The arithmetic used by the computation is set by the preference
+   * {@link Preferences#ARITHMETIC}, {@link Arithmetic#BIG_DECIMAL} by default.
+   *
    * @param current      the current position of today, won't be modified by this
    *                     call
    * @param transactions all transactions on this position, they are not sorted
@@ -80,65 +146,659 @@ public class ReportingService {
   public BigDecimal calculateReturnOnInvestmentYTD(@Nonnull Position current, @Nonnull Collection<Transaction> transactions) {
     requireNonNull(current);
     requireNonNull(transactions);
-      
+    var start = startTime();
+    var now = dateService.currentDate();
+    var snapshot = snapshot(now, securities(current, transactions, now.withDayOfYear(1), now));
+    var roi = calculateReturnOnInvestmentYTD(current, transactions, snapshot, revertedHistogram);
+    recordTime(latencyHistogram, start);
+    return roi;
+  }
+
+  /**
+   * Calculate asynchronously the annualized return on investment since the beginning of the year
+   * (Year To Date). The result is the same as {@link #calculateReturnOnInvestmentYTD(Position, Collection)}.
+   *
+   * Instead of fetching the prices of all securities one after the other, only the prices
+   * of the securities held or exchanged during the year are fetched, each one by a different task
+   * of the executor, and the transactions are reverted while the prices are fetched,
+   * so if the price service is slow, the computation takes about the time of the slowest price lookup.
+   * The current date and the preferences are read when this method is called.
+   *
+   * @param current      the current position of today, won't be modified by this
+   *                     call
+   * @param transactions all transactions on this position, they are not sorted
+   *                     and might be before the beginning of the year, the collection
+   *                     must not be modified until the computation is done
+   * @param executor     the executor that runs the price lookups and the computation
+   * @return a future of the annualized return on investment since beginning of the year,
+   *         completed with an {@link IllegalArgumentException} if there is no price
+   *         for a security held
+   */
+  @Nonnull
+  public CompletableFuture<BigDecimal> calculateReturnOnInvestmentYTDAsync(@Nonnull Position current, @Nonnull Collection<Transaction> transactions,
+                                                                           @Nonnull Executor executor) {
+    requireNonNull(current);
+    requireNonNull(transactions);
+    requireNonNull(executor);
+    var start = startTime();
     var now = dateService.currentDate();
     var beginningOfYear = now.withDayOfYear(1);
+    var yearLength = preferences.get(LENGTH_OF_YEAR).orElseThrow();
+    var priceScale = priceService.priceScale();
+    var fixedPoint = arithmetic() == Arithmetic.FIXED_POINT;
+    var position = current.duplicate();
+    return CompletableFuture.supplyAsync(() -> {
+          var securities = securities(position, transactions, beginningOfYear, now).stream()
+              .mapToObj(Security::byId).collect(Collectors.toList());
+          var initialPrices = pricesAsync(beginningOfYear, securities, executor);
+          var currentPrices = pricesAsync(now, securities, executor);
+          var initial = revert(position, transactions, beginningOfYear, now, revertedHistogram);
+          return initialPrices.thenCombine(currentPrices, (initialPriceArray, currentPriceArray) ->
+              returnOnInvestment(initial, position, initialPriceArray, currentPriceArray, priceScale, fixedPoint, yearLength, now.getDayOfYear()));
+        }, executor)
+        .thenCompose(Function.identity())
+        .whenComplete((roi, exception) -> recordTime(latencyHistogram, start));
+  }
 
-    var working = current.duplicate();
+  /**
+   * Returns the ids of the securities of a position and of the transactions between the beginning of the year and today,
+   * so the securities held at the beginning of the year are part of them.
+   */
+  private static BitSet securities(Position position, Collection<Transaction> transactions, LocalDate beginningOfYear, LocalDate now) {
+    var ids = new BitSet();
+    addSecurities(ids, position, transactions, beginningOfYear, now);
+    return ids;
+  }
+
+  private static void addSecurities(BitSet ids, Position position, Collection<Transaction> transactions, LocalDate beginningOfYear, LocalDate now) {
+    addSecurities(ids, position);
+    for(var transaction: transactions) {
+      var security = transaction.security();
+      if (security != null && !transaction.date().isBefore(beginningOfYear) && !transaction.date().isAfter(now)) {
+        ids.set(security.id());
+      }
+    }
+  }
+
+  /**
+   * Returns the ids of the securities held by two positions.
+   */
+  static BitSet securities(Position initial, Position current) {
+    var ids = new BitSet();
+    addSecurities(ids, initial);
+    addSecurities(ids, current);
+    return ids;
+  }
+
+  private static void addSecurities(BitSet ids, Position position) {
+    for(var slot = 0; slot < position.slotCount(); slot++) {
+      var id = position.slotId(slot);
+      if (id != -1) {
+        ids.set(id);
+      }
+    }
+  }
+
+  /**
+   * Fetches the prices of securities at a date, one task per security.
+   * The prices are indexed by {@link Security#id()}, {@link PriceService#NO_PRICE} if there is no price.
+   */
+  @SuppressWarnings("unchecked")
+  private CompletableFuture<long[]> pricesAsync(LocalDate date, List<Security> securities, Executor executor) {
+    var lookups = (CompletableFuture<Long>[]) new CompletableFuture<?>[securities.size()];
+    for(var i = 0; i < lookups.length; i++) {
+      var security = securities.get(i);
+      lookups[i] = CompletableFuture.supplyAsync(() -> price(date, security), executor);
+    }
+    return CompletableFuture.allOf(lookups).thenApply(__ -> {
+      var length = securities.isEmpty()? 0: securities.get(securities.size() - 1).id() + 1;
+      var prices = new long[length];
+      Arrays.fill(prices, PriceService.NO_PRICE);
+      for(var i = 0; i < lookups.length; i++) {
+        prices[securities.get(i).id()] = lookups[i].join();
+      }
+      return prices;
+    });
+  }
+
+  private long price(LocalDate date, Security security) {
+    try {
+      return priceService.getScaledPrice(date, security);
+    } catch(IllegalArgumentException e) {
+      // no price, an error is reported only if the security is held
+      return PriceService.NO_PRICE;
+    }
+  }
+
+  /**
+   * Calculate the annualized return on investment since the beginning of the year
+   * (Year To Date) of a position with transactions stored as columns.
+   * The result is the same as {@link #calculateReturnOnInvestmentYTD(Position, Collection)}
+   * with the transactions of {@link TransactionColumns#asList()}, but the transactions
+   * are reverted by scanning the columns directly.
+   *
+   * @param current      the current position of today, won't be modified by this
+   *                     call
+   * @param transactions all transactions on this position, they are not sorted
+   *                     and might be before the beginning of the year
+   * @return annualized return on investment since beginning of the year
+   */
+  @Nonnull
+  public BigDecimal calculateReturnOnInvestmentYTD(@Nonnull Position current, @Nonnull TransactionColumns transactions) {
+    requireNonNull(current);
+    requireNonNull(transactions);
+    var start = startTime();
+    var now = dateService.currentDate();
+    var event = new ReportingEvents.RevertEvent();
+    event.begin();
+    var reversal = transactions.reversal(now.withDayOfYear(1), now);
+    event.report(reversal.transactions(), reversal.reverted(), now.getDayOfYear(), Arithmetic.FIXED_POINT);
+    revertedHistogram.record(reversal.reverted());
+    var initial = reversal.revert(current);
+    var roi = returnOnInvestment(initial, current, snapshot(now, securities(initial, current)));
+    recordTime(latencyHistogram, start);
+    return roi;
+  }
+
+  /**
+   * Calculate the annualized return on investment since the beginning of the year
+   * (Year To Date) of a position with transactions read from a file.
+   * The transactions are streamed from the file, only the sums of the cash and
+   * of the quantities exchanged are kept in memory.
+   *
+   * @param current the current position of today, won't be modified by this
+   *                call
+   * @param loader  the loader used to read the transactions
+   * @param path    the file containing all transactions on this position, they are
+   *                not sorted and might be before the beginning of the year
+   * @return annualized return on investment since beginning of the year
+   * @throws IOException if an I/O error occurs or if the file is malformed.
+   */
+  @Nonnull
+  public BigDecimal calculateReturnOnInvestmentYTD(@Nonnull Position current, @Nonnull TransactionLoader loader, @Nonnull Path path) throws IOException {
+    requireNonNull(current);
+    requireNonNull(loader);
+    requireNonNull(path);
+    var start = startTime();
+    var now = dateService.currentDate();
+    var event = new ReportingEvents.RevertEvent();
+    event.begin();
+    var reversal = new Reversal(now.withDayOfYear(1), now, loader.cashScale(), loader.quantityScale());
+    var statistics = loader.load(path, reversal);
+    loadedBytes.add(statistics.bytes());
+    loadedTransactions.add(statistics.transactions());
+    loadNanos.add(statistics.nanos());
+    event.report(reversal.transactions(), reversal.reverted(), now.getDayOfYear(), Arithmetic.FIXED_POINT);
+    revertedHistogram.record(reversal.reverted());
+    var initial = reversal.revert(current);
+    var roi = returnOnInvestment(initial, current, snapshot(now, securities(initial, current)));
+    recordTime(latencyHistogram, start);
+    return roi;
+  }
+
+  /**
+   * Creates an index of the positions for each day since the beginning of the year.
+   *
+   * @param current      the current position of today, won't be modified by this
+   *                     call
+   * @param transactions all transactions on this position, they are not sorted
+   *                     and might be before the beginning of the year
+   * @return a newly created index
+   * @see #calculateReturnOnInvestmentYTD(PositionIndex)
+   */
+  @Nonnull
+  public PositionIndex positionIndex(@Nonnull Position current, @Nonnull Collection<Transaction> transactions) {
+    var now = dateService.currentDate();
+    return PositionIndex.of(current, transactions, now.withDayOfYear(1), now);
+  }
+
+  /**
+   * Calculate the annualized return on investment since the beginning of the year
+   * (Year To Date) using the positions of an index.
+   * The result is the same as {@link #calculateReturnOnInvestmentYTD(Position, Collection)}
+   * with the position and the transactions used to create the index.
+   *
+   * @param index an index of the positions of the current year up to today
+   * @return annualized return on investment since beginning of the year
+   * @throws IllegalArgumentException if the index doesn't cover the current year up to today
+   */
+  @Nonnull
+  public BigDecimal calculateReturnOnInvestmentYTD(@Nonnull PositionIndex index) {
+    requireNonNull(index);
+    var start = startTime();
+    var now = dateService.currentDate();
+    var beginningOfYear = now.withDayOfYear(1);
+    if (!index.now().equals(now) || index.from().isAfter(beginningOfYear)) {
+      throw new IllegalArgumentException("the index [" + index.from() + ", " + index.now() + "] doesn't cover the year up to " + now);
+    }
+    var initial = index.positionAt(beginningOfYear);
+    var current = index.position();
+    var roi = returnOnInvestment(initial, current, snapshot(now, securities(initial, current)));
+    recordTime(latencyHistogram, start);
+    return roi;
+  }
+
+  /**
+   * Calculate the annualized return on investment of a position for several periods
+   * ending today.
+   * The return on investment of a period is calculated like
+   * {@link #calculateReturnOnInvestmentYTD(Position, Collection)}, using the position and
+   * the prices at the beginning of the first day of the period, and annualized using
+   * the number of days of the period.
+   *
+   * The transactions are reverted only once for all the periods and the prices
+   * are fetched only once per date.
+   *
+   * @param current      the current position of today, won't be modified by this
+   *                     call
+   * @param transactions all transactions on this position, they are not sorted
+   *                     and might be before the beginning of the periods
+   * @param periods      the periods
+   * @return annualized return on investment of each period, in the same order as {@code periods}
+   * @throws IllegalArgumentException if a period starts after today or if there is no price
+   *         at the beginning of a period
+   */
+  @Nonnull
+  public List<BigDecimal> calculateReturnOnInvestments(@Nonnull Position current, @Nonnull Collection<Transaction> transactions,
+                                                       @Nonnull List<ReportingPeriod> periods) {
+    requireNonNull(current);
+    requireNonNull(transactions);
+    requireNonNull(periods);
+    if (periods.isEmpty()) {
+      return List.of();
+    }
+    var now = dateService.currentDate();
+    var starts = new LocalDate[periods.size()];
+    var from = now;
+    for(var i = 0; i < starts.length; i++) {
+      var start = requireNonNull(periods.get(i).start(now));
+      if (start.isAfter(now)) {
+        throw new IllegalArgumentException("period " + periods.get(i) + " starts after " + now);
+      }
+      from = start.isBefore(from)? start: from;
+      starts[i] = start;
+    }
+
+    var index = PositionIndex.of(current, transactions, from, now);
+    var initials = new Position[starts.length];
+    var ids = new BitSet();
+    addSecurities(ids, current);
+    for(var i = 0; i < starts.length; i++) {
+      initials[i] = index.positionAt(starts[i]);
+      addSecurities(ids, initials[i]);
+    }
+    // the prices of all the dates are fetched in one call, only for the securities held
+    var dates = new ArrayList<LocalDate>();
+    dates.add(now);
+    for(var start: starts) {
+      if (!dates.contains(start)) {
+        dates.add(start);
+      }
+    }
+    var prices = prices(ids, dates);
+    var currentPrices = prices[0];
+    var priceScale = priceService.priceScale();
+    var yearLength = preferences.get(LENGTH_OF_YEAR).orElseThrow();
+    var fixedPoint = arithmetic() == Arithmetic.FIXED_POINT;
+
+    var rois = new BigDecimal[starts.length];
+    for(var i = 0; i < starts.length; i++) {
+      var start = starts[i];
+      var initialPrices = prices[dates.indexOf(start)];
+      var days = Math.toIntExact(now.toEpochDay() - start.toEpochDay() + 1);
+      rois[i] = returnOnInvestment(initials[i], current, initialPrices, currentPrices, priceScale, fixedPoint, yearLength, days);
+    }
+    return List.of(rois);
+  }
+
+  /**
+   * Calculate the annualized return on investment since the beginning of the year
+   * of several positions using the common fork/join pool.
+   *
+   * @param histories the positions with their transactions
+   * @return the annualized return on investment of each position, in the same order
+   *         as {@code histories}
+   * @see #calculateReturnOnInvestmentYTD(Collection, ForkJoinPool)
+   */
+  @Nonnull
+  public List<BigDecimal> calculateReturnOnInvestmentYTD(@Nonnull Collection<PositionHistory> histories) {
+    return calculateReturnOnInvestmentYTD(histories, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Calculate the annualized return on investment since the beginning of the year
+   * of several positions in parallel, using the threads of a fork/join pool.
+   * The current date, the length of the year and the prices of the securities
+   * at the beginning of the year and today are fetched only once and shared
+   * by all the computations.
+   *
+   * @param histories the positions with their transactions, the positions won't be
+   *                  modified by this call
+   * @param pool      the fork/join pool used to run the computations
+   * @return the annualized return on investment of each position, in the same order
+   *         as {@code histories}
+   * @see #calculateReturnOnInvestmentYTD(Position, Collection)
+   */
+  @Nonnull
+  public List<BigDecimal> calculateReturnOnInvestmentYTD(@Nonnull Collection<PositionHistory> histories, @Nonnull ForkJoinPool pool) {
+    requireNonNull(histories);
+    requireNonNull(pool);
+    var array = histories.toArray(new PositionHistory[0]);
+    if (array.length == 0) {
+      return List.of();
+    }
+    var start = startTime();
+    var now = dateService.currentDate();
+    var beginningOfYear = now.withDayOfYear(1);
+    // the prices are fetched once, for the securities of all the positions
+    var ids = new BitSet();
+    for(var history: array) {
+      addSecurities(ids, history.position(), history.transactions(), beginningOfYear, now);
+    }
+    var rois = new BigDecimal[array.length];
+    pool.invoke(new BatchTask(array, rois, snapshot(now, ids), revertedHistogram, 0, array.length));
+    recordTime(batchLatencyHistogram, start);
+    return List.of(rois);
+  }
+
+  /**
+   * Fork/join task computing the return on investment of a range of positions.
+   */
+  @SuppressWarnings("serial")
+  private static final class BatchTask extends RecursiveAction {
+    private static final int THRESHOLD = 64;
 
-    var orderedTransaction = transactions.stream()
-        .sorted(Comparator.comparing(Transaction::date).reversed()).collect(toList());
+    private final PositionHistory[] histories;
+    private final BigDecimal[] rois;
+    private final Snapshot snapshot;
+    private final Metrics.Histogram revertedHistogram;
+    private final int from;
+    private final int to;
+
+    private BatchTask(PositionHistory[] histories, BigDecimal[] rois, Snapshot snapshot, Metrics.Histogram revertedHistogram,
+                      int from, int to) {
+      this.histories = histories;
+      this.rois = rois;
+      this.snapshot = snapshot;
+      this.revertedHistogram = revertedHistogram;
+      this.from = from;
+      this.to = to;
+    }
 
-    var today = now;
-    var transactionIndex = 0;
-    while (!today.isBefore(beginningOfYear)) {
-        if (transactionIndex >= orderedTransaction.size())  {
-            break;
+    @Override
+    protected void compute() {
+      if (to - from <= THRESHOLD) {
+        for(var i = from; i < to; i++) {
+          var history = histories[i];
+          rois[i] = calculateReturnOnInvestmentYTD(history.position(), history.transactions(), snapshot, revertedHistogram);
         }
-        var transaction = orderedTransaction.get(transactionIndex);
-        while (transaction.date().equals(today)) {
-            // It's a transaction on the date, process it
-            revert(working, transaction);
-            transactionIndex++;
-            if (transactionIndex >= orderedTransaction.size())  {
-                break;
-            }
-            transaction = orderedTransaction.get(transactionIndex);
+        return;
+      }
+      var middle = (from + to) >>> 1;
+      invokeAll(new BatchTask(histories, rois, snapshot, revertedHistogram, from, middle),
+                new BatchTask(histories, rois, snapshot, revertedHistogram, middle, to));
+    }
+  }
+
+  /**
+   * Everything a computation needs that doesn't depend on the position,
+   * so it can be shared between several computations.
+   * The prices are indexed by {@link Security#id()} and scaled by {@code 10^priceScale},
+   * only the prices of the securities the snapshot was created with are fetched,
+   * the other ones are {@link PriceService#NO_PRICE}.
+   * {@code fixedPointPrices} is null if the arithmetic is not {@link Arithmetic#FIXED_POINT}
+   * or if the scale of the prices is too large.
+   */
+  record Snapshot(LocalDate now, LocalDate beginningOfYear, long[] initialPrices, long[] currentPrices, int priceScale, int yearLength,
+                          FixedPoint.Prices fixedPointPrices) { }
+
+  LocalDate currentDate() {
+    return dateService.currentDate();
+  }
+
+  /**
+   * Creates a snapshot with the prices of some securities.
+   * @param now the current date.
+   * @param ids the ids of the securities held at the beginning of the year or today.
+   */
+  Snapshot snapshot(LocalDate now, BitSet ids) {
+    var beginningOfYear = now.withDayOfYear(1);
+    var prices = prices(ids, List.of(beginningOfYear, now));
+    var initialPrices = prices[0];
+    var currentPrices = prices[1];
+    var yearLength = preferences.get(LENGTH_OF_YEAR).orElseThrow();
+    var priceScale = priceService.priceScale();
+    var fixedPointPrices = (arithmetic() == Arithmetic.FIXED_POINT && priceScale <= FixedPoint.MAX_SCALE)?
+        new FixedPoint.Prices(initialPrices, currentPrices, priceScale): null;
+    return new Snapshot(now, beginningOfYear, initialPrices, currentPrices, priceScale, yearLength, fixedPointPrices);
+  }
+
+  private Arithmetic arithmetic() {
+    return preferences.get(ARITHMETIC).orElse(Arithmetic.BIG_DECIMAL);
+  }
+
+  /**
+   * Fetches the prices of some securities at several dates in one call.
+   * The prices of each date are indexed by {@link Security#id()}, {@link PriceService#NO_PRICE}
+   * if there is no price, a missing price is an error only if the security is held.
+   */
+  private long[][] prices(BitSet ids, List<LocalDate> dates) {
+    // one event for all the dates, so nothing escapes when the recording is off
+    var event = new ReportingEvents.PricesEvent();
+    event.begin();
+    var securities = ids.stream().mapToObj(Security::byId).collect(Collectors.toList());
+    var matrix = new long[securities.size() * dates.size()];
+    priceService.getScaledPrices(securities, dates, matrix);
+    var prices = new long[dates.size()][ids.length()];
+    var missing = 0;
+    for(var j = 0; j < prices.length; j++) {
+      Arrays.fill(prices[j], PriceService.NO_PRICE);
+      for(var i = 0; i < securities.size(); i++) {
+        var price = matrix[i * dates.size() + j];
+        prices[j][securities.get(i).id()] = price;
+        if (price == PriceService.NO_PRICE) {
+          missing++;
         }
+      }
+    }
+    event.report(dates, securities.size(), missing);
+    return prices;
+  }
 
-        today = today.minusDays(1);
+  private static BigDecimal calculateReturnOnInvestmentYTD(Position current, Collection<Transaction> transactions, Snapshot snapshot,
+                                                           Metrics.Histogram revertedHistogram) {
+    if (snapshot.fixedPointPrices != null) {
+      var event = new ReportingEvents.RevertEvent();
+      event.begin();
+      var values = FixedPoint.values(current, transactions, snapshot.beginningOfYear, snapshot.now, snapshot.fixedPointPrices);
+      if (values != null) {
+        event.report(transactions.size(), values.reverted(), snapshot.now.getDayOfYear(), Arithmetic.FIXED_POINT);
+        revertedHistogram.record(values.reverted());
+        return returnOnInvestment(values.initial(), values.current(), snapshot);
+      }
+      // a value doesn't fit in a long, fall back to BigDecimal
     }
 
-    var initialCashValue = working.cash();
+    var initial = revert(current, transactions, snapshot.beginningOfYear, snapshot.now, revertedHistogram);
+    return returnOnInvestment(initial, current, snapshot);
+  }
+
+  /**
+   * Reverts the transactions to go back from the current position to the position
+   * at the beginning of the year.
+   * Only the transactions between the beginning of the year and today are reverted,
+   * but if one transaction is after today, no transaction is reverted at all
+   * (this is the behavior of the historical algorithm that was walking back
+   * day by day from today and stopping at the first transaction not on the current day).
+   *
+   * This is done in one pass, the cash exchanged by the transactions is summed
+   * and then reverted only once, the quantities are reverted in the position
+   * that only stores the securities held.
+   *
+   * @param current the current position, won't be modified.
+   * @param transactions the transactions, not sorted.
+   * @param beginningOfYear the beginning of the year.
+   * @param now the current date.
+   * @return a new position, the position at the beginning of the year.
+   */
+  static Position revert(Position current, Collection<Transaction> transactions, LocalDate beginningOfYear, LocalDate now) {
+    return revert(current, transactions, beginningOfYear, now, Metrics.disabled().histogram("reverted"));
+  }
+
+  private static Position revert(Position current, Collection<Transaction> transactions, LocalDate beginningOfYear, LocalDate now,
+                                 Metrics.Histogram revertedHistogram) {
+    var event = new ReportingEvents.RevertEvent();
+    event.begin();
+    BigDecimal cash = null;  // null means no cash exchanged
+    var working = current.duplicate();
+    var reverted = 0;
+    for(var transaction: transactions) {
+      var date = transaction.date();
+      if (date.isAfter(now)) {
+        // nothing is reverted
+        working = current.duplicate();
+        cash = null;
+        reverted = 0;
+        break;
+      }
+      if (date.isBefore(beginningOfYear)) {
+        continue;
+      }
+      reverted++;
+      switch (transaction.type()) {
+      case BUY -> {
+        cash = sum(cash, transaction.cash());
+        var security = transaction.security();
+        working.quantity(security, working.quantity(security).subtract(transaction.quantity()));
+      }
+      case SELL -> {
+        cash = sum(cash, transaction.cash().negate());
+        var security = transaction.security();
+        working.quantity(security, working.quantity(security).add(transaction.quantity()));
+      }
+      case DEPOSIT -> cash = sum(cash, transaction.cash().negate());
+      case WITHDRAWAL -> cash = sum(cash, transaction.cash());
+      }
+    }
+    if (cash != null) {
+      working.cash(working.cash().add(cash));
+    }
+    event.report(transactions.size(), reverted, now.getDayOfYear(), Arithmetic.BIG_DECIMAL);
+    revertedHistogram.record(reverted);
+    return working;
+  }
+
+  private static BigDecimal sum(BigDecimal sum, BigDecimal value) {
+    return (sum == null)? value: sum.add(value);
+  }
+
+  /**
+   * Calculate the annualized return on investment from the position at the beginning of the year
+   * and the current position.
+   */
+  static BigDecimal returnOnInvestment(Position initial, Position current, Snapshot snapshot) {
+    return returnOnInvestment(initial, current, snapshot.initialPrices, snapshot.currentPrices, snapshot.priceScale,
+        snapshot.fixedPointPrices != null, snapshot.yearLength, snapshot.now.getDayOfYear());
+  }
+
+  private static BigDecimal returnOnInvestment(Position initial, Position current, long[] initialPrices, long[] currentPrices, int priceScale,
+                                               boolean fixedPoint, int yearLength, int days) {
+    var initialCashValue = initial.cash();
     var currentCashValue = current.cash();
 
-    var initialSecPosValue = securitiesPositionValue(working, beginningOfYear);
-    var currentSecPosValue = securitiesPositionValue(current, now);
+    var initialSecPosValue = securitiesPositionValue(initial, initialPrices, priceScale, fixedPoint, "initial");
+    var currentSecPosValue = securitiesPositionValue(current, currentPrices, priceScale, fixedPoint, "current");
 
     var initialValue = initialCashValue.add(initialSecPosValue);
+    var currentValue = currentCashValue.add(currentSecPosValue);
+    return returnOnInvestment(initialValue, currentValue, yearLength, days);
+  }
 
+  private static BigDecimal returnOnInvestment(BigDecimal initialValue, BigDecimal currentValue, Snapshot snapshot) {
+    return returnOnInvestment(initialValue, currentValue, snapshot.yearLength, snapshot.now.getDayOfYear());
+  }
+
+  /**
+   * Calculate the annualized return on investment of a period of {@code days} days.
+   */
+  private static BigDecimal returnOnInvestment(BigDecimal initialValue, BigDecimal currentValue, int yearLength, int days) {
+    var event = new ReportingEvents.AnnualizationEvent();
+    event.begin();
     BigDecimal roi;
     if (initialValue.signum() == 0) {
       roi = ZERO.setScale(10, UNNECESSARY);
     } else {
-      roi = currentCashValue.add(currentSecPosValue).subtract(initialValue)
+      roi = currentValue.subtract(initialValue)
           .divide(initialValue, 10, HALF_UP).multiply(bd(100));
     }
-    var yearLength = preferences.get(LENGTH_OF_YEAR).orElseThrow();
-    roi = roi.multiply(bd(yearLength)).divide(bd(now.getDayOfYear()), 2, HALF_UP);
+    roi = roi.multiply(bd(yearLength)).divide(bd(days), 2, HALF_UP);
+    event.report(days, yearLength);
     return roi;
   }
 
-  private BigDecimal securitiesPositionValue(Position position, LocalDate date) {
-    // using a stream here is less efficient
+  private static BigDecimal securitiesPositionValue(Position position, long[] prices, int priceScale, boolean fixedPoint, String phase) {
+    var event = new ReportingEvents.ValuationEvent();
+    event.begin();
+    if (fixedPoint) {
+      var value = Valuation.value(position, prices, priceScale);
+      if (value != null) {
+        event.report(phase, position.size());
+        return value;
+      }
+      // a value doesn't fit in a long, fall back to BigDecimal
+    }
+    // only the securities held by the position are valued, using a stream here is less efficient
     var sum = ZERO;
-    for(var security: Security.securities()) {
-      sum = sum.add(position.quantity(security).multiply(priceService.getPrice(date, security)));
+    var securities = 0;
+    for(var slot = 0; slot < position.slotCount(); slot++) {
+      var id = position.slotId(slot);
+      if (id == -1) {
+        continue;
+      }
+      var price = (id < prices.length)? prices[id]: PriceService.NO_PRICE;
+      if (price == PriceService.NO_PRICE) {
+        throw new IllegalArgumentException("No price for " + Security.byId(id));
+      }
+      sum = sum.add(position.slotQuantity(slot).multiply(BigDecimal.valueOf(price, priceScale)));
+      securities++;
     }
+    event.report(phase, securities);
     return sum;
   }
   
-  private static void revert(Position current, Transaction transaction) {
+  /**
+   * Creates an accumulator that computes the return on investment of a position
+   * incrementally, as new transactions are added.
+   *
+   * @param current      the current position of today, won't be modified by this
+   *                     call nor by the accumulator
+   * @param transactions all transactions on this position, they are not sorted
+   *                     and might be before the beginning of the year
+   * @return a newly created accumulator
+   */
+  @Nonnull
+  public ReturnOnInvestmentAccumulator accumulator(@Nonnull Position current, @Nonnull Collection<Transaction> transactions) {
+    requireNonNull(current);
+    requireNonNull(transactions);
+    return new ReturnOnInvestmentAccumulator(this, current, transactions);
+  }
+
+  static void apply(Position current, Transaction transaction) {
+    switch (transaction.type()) {
+    case BUY -> {
+      current.cash(current.cash().subtract(transaction.cash()));
+      current.quantity(transaction.security(), current.quantity(transaction.security()).add(transaction.quantity()));
+    }
+    case SELL -> {
+      current.cash(current.cash().add(transaction.cash()));
+      current.quantity(transaction.security(), current.quantity(transaction.security()).subtract(transaction.quantity()));
+    }
+    case DEPOSIT -> current.cash(current.cash().add(transaction.cash()));
+    case WITHDRAWAL -> current.cash(current.cash().subtract(transaction.cash()));
+    }
+  }
+
+  static void revert(Position current, Transaction transaction) {
     switch (transaction.type()) {
     case BUY -> {
       current.cash(current.cash().add(transaction.cash()));
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import static java.util.Objects.requireNonNull;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Computes the annualized return on investment since the beginning of the year
+ * of a position whose transactions are only appended.
+ *
+ * The accumulator maintains the current position and the position at the beginning
+ * of the year. Adding a transaction dated inside the year changes the current position
+ * but not the position at the beginning of the year, adding a transaction dated before
+ * the beginning of the year changes both, so both cases are done in constant time.
+ * Computing the return on investment only requires to value the two positions,
+ * the transactions are not replayed.
+ *
+ * The transactions are replayed only when the year changes or
+ * when {@link #rebuild()} is called explicitly.
+ *
+ * @see ReportingService#accumulator(Position, Collection)
+ */
+@NotThreadSafe
+public final class ReturnOnInvestmentAccumulator {
+  private final ReportingService reportingService;
+  private final Position current;
+  private final ArrayList<Transaction> transactions;
+  private LocalDate beginningOfYear;
+  private Position initial;
+  private LocalDate lastDate;
+
+  ReturnOnInvestmentAccumulator(ReportingService reportingService, Position current, Collection<Transaction> transactions) {
+    this.reportingService = reportingService;
+    this.current = current.duplicate();
+    this.transactions = new ArrayList<>(transactions);
+    this.lastDate = LocalDate.MIN;
+    for(var transaction: transactions) {
+      lastDate = max(lastDate, transaction.date());
+    }
+  }
+
+  private static LocalDate max(LocalDate date1, LocalDate date2) {
+    return date1.isAfter(date2)? date1: date2;
+  }
+
+  /**
+   * Returns a copy of the current position.
+   * @return a copy of the current position.
+   */
+  @Nonnull
+  public Position position() {
+    return current.duplicate();
+  }
+
+  /**
+   * Adds a new transaction and applies it on the current position.
+   * @param transaction the new transaction.
+   * @return this accumulator.
+   */
+  @Nonnull
+  public ReturnOnInvestmentAccumulator add(@Nonnull Transaction transaction) {
+    requireNonNull(transaction);
+    transactions.add(transaction);
+    lastDate = max(lastDate, transaction.date());
+    ReportingService.apply(current, transaction);
+    if (initial != null && transaction.date().isBefore(beginningOfYear)) {
+      // not reverted, so it's part of the position at the beginning of the year
+      ReportingService.apply(initial, transaction);
+    }
+    return this;
+  }
+
+  /**
+   * Recomputes the position at the beginning of the year by reverting all the transactions
+   * since the beginning of the year.
+   */
+  public void rebuild() {
+    rebuild(reportingService.currentDate().withDayOfYear(1));
+  }
+
+  private void rebuild(LocalDate beginningOfYear) {
+    var initial = current.duplicate();
+    for(var transaction: transactions) {
+      if (!transaction.date().isBefore(beginningOfYear)) {
+        ReportingService.revert(initial, transaction);
+      }
+    }
+    this.beginningOfYear = beginningOfYear;
+    this.initial = initial;
+  }
+
+  /**
+   * Calculate the annualized return on investment since the beginning of the year
+   * (Year To Date) of the current position.
+   * The result is the same as {@link ReportingService#calculateReturnOnInvestmentYTD(Position, Collection)}
+   * called with the current position and all the transactions.
+   *
+   * @return annualized return on investment since beginning of the year
+   */
+  @Nonnull
+  public BigDecimal calculateReturnOnInvestmentYTD() {
+    var now = reportingService.currentDate();
+    if (!now.withDayOfYear(1).equals(beginningOfYear)) {
+      rebuild(now.withDayOfYear(1));
+    }
+    // if a transaction is in the future, ReportingService doesn't revert any transaction
+    var initial = lastDate.isAfter(now)? current: this.initial;
+    var snapshot = reportingService.snapshot(now, ReportingService.securities(initial, current));
+    return ReportingService.returnOnInvestment(initial, current, snapshot);
+  }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Sums the cash and the quantities exchanged by a stream of transactions given as scaled longs,
+ * to revert them from the current position.
+ * The transactions reverted follow the rules of
+ * {@link ReportingService#revert(Position, java.util.Collection, LocalDate, LocalDate)},
+ * only the transactions between the beginning of the year and today are reverted and
+ * none if one transaction is after today.
+ *
+ * The sums are exact, if a sum overflows, its current value is moved to a {@code BigDecimal}.
+ * The quantities are summed in an open addressing hash table indexed by {@link Security#id()}
+ * so only the securities exchanged are stored.
+ */
+@NotThreadSafe
+final class Reversal implements TransactionLoader.Handler {
+  private final long start;
+  private final long end;
+  private final int cashScale;
+  private final int quantityScale;
+  private boolean future;
+  private int transactions;
+  private int reverted;
+  private long cash;
+  private BigDecimal cashOverflow;
+  private int[] ids = new int[8];  // id + 1 of the security, 0 means empty slot
+  private long[] quantities = new long[8];
+  private BigDecimal[] quantityOverflows = new BigDecimal[8];
+  private int size;
+
+  Reversal(LocalDate beginningOfYear, LocalDate now, int cashScale, int quantityScale) {
+    this.start = beginningOfYear.toEpochDay();
+    this.end = now.toEpochDay();
+    this.cashScale = cashScale;
+    this.quantityScale = quantityScale;
+  }
+
+  @Override
+  public void transaction(TransactionType type, long epochDay, long cash, Security security, long quantity) {
+    transactions++;
+    if (future) {
+      return;
+    }
+    if (epochDay > end) {
+      future = true;
+      return;
+    }
+    if (epochDay < start) {
+      return;
+    }
+    reverted++;
+    switch (type) {
+    case BUY -> {
+      addCash(cash);
+      addQuantity(slot(security.id()), -quantity);
+    }
+    case SELL -> {
+      addCash(-cash);
+      addQuantity(slot(security.id()), quantity);
+    }
+    case DEPOSIT -> addCash(-cash);
+    case WITHDRAWAL -> addCash(cash);
+    }
+  }
+
+  private void addCash(long value) {
+    var result = cash + value;
+    if (((cash ^ result) & (value ^ result)) < 0) {  // overflow
+      cashOverflow = sum(cashOverflow, BigDecimal.valueOf(cash, cashScale));
+      result = value;
+    }
+    cash = result;
+  }
+
+  private int slot(int id) {
+    var mask = ids.length - 1;
+    var slot = (id * 0x9E3779B9) & mask;
+    for(;; slot = (slot + 1) & mask) {
+      var value = ids[slot];
+      if (value == id + 1) {
+        return slot;
+      }
+      if (value == 0) {
+        break;
+      }
+    }
+    if (size + 1 == ids.length >> 1) {
+      rehash();
+      return slot(id);
+    }
+    size++;
+    ids[slot] = id + 1;
+    return slot;
+  }
+
+  private void rehash() {
+    var oldIds = ids;
+    var oldQuantities = quantities;
+    var oldQuantityOverflows = quantityOverflows;
+    ids = new int[oldIds.length << 1];
+    quantities = new long[oldIds.length << 1];
+    quantityOverflows = new BigDecimal[oldIds.length << 1];
+    size = 0;
+    for(var i = 0; i < oldIds.length; i++) {
+      if (oldIds[i] != 0) {
+        var slot = slot(oldIds[i] - 1);
+        quantities[slot] = oldQuantities[i];
+        quantityOverflows[slot] = oldQuantityOverflows[i];
+      }
+    }
+  }
+
+  private void addQuantity(int index, long value) {
+    var quantity = quantities[index];
+    var result = quantity + value;
+    if (((quantity ^ result) & (value ^ result)) < 0) {  // overflow
+      quantityOverflows[index] = sum(quantityOverflows[index], BigDecimal.valueOf(quantity, quantityScale));
+      result = value;
+    }
+    quantities[index] = result;
+  }
+
+  private static BigDecimal sum(BigDecimal sum, BigDecimal value) {
+    return (sum == null)? value: sum.add(value);
+  }
+
+  /**
+   * Returns the number of transactions received.
+   * @return the number of transactions received.
+   */
+  int transactions() {
+    return transactions;
+  }
+
+  /**
+   * Returns the number of transactions reverted.
+   * @return the number of transactions reverted, 0 if one transaction is after today.
+   */
+  int reverted() {
+    return future? 0: reverted;
+  }
+
+  /**
+   * Returns the current position with all the transactions received reverted.
+   * @param current the current position, won't be modified.
+   * @return a new position, the position at the beginning of the year.
+   */
+  Position revert(Position current) {
+    var working = current.duplicate();
+    if (reverted() == 0) {
+      return working;
+    }
+    working.cash(working.cash().add(sum(cashOverflow, BigDecimal.valueOf(cash, cashScale))));
+    for(var slot = 0; slot < ids.length; slot++) {
+      if (ids[slot] == 0) {
+        continue;
+      }
+      var security = Security.byId(ids[slot] - 1);
+      var quantity = quantities[slot];
+      var overflow = quantityOverflows[slot];
+      if (quantity != 0 || overflow != null) {
+        working.quantity(security, working.quantity(security).add(sum(overflow, BigDecimal.valueOf(quantity, quantityScale))));
+      }
+    }
+    return working;
+  }
+}
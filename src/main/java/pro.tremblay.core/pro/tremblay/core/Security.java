@@ -15,24 +15,154 @@
  */
 package pro.tremblay.core;
 
+import static java.util.Objects.requireNonNull;
+
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
 
+import javax.annotation.Nonnull;
 import javax.annotation.concurrent.ThreadSafe;
 
 /**
- * Enumeration listing useful available security. In real-life it would be a
- * full-fledged java object but to keep things simple, it's just an enum.
+ * A security identified by its name.
+ *
+ * The securities are registered in a global registry, there is only one instance
+ * of security per name and each security has a dense integer {@link #id()} assigned
+ * in registration order, so the securities can be used as index of an array.
  */
 @ThreadSafe
-public enum Security {
-  APPL,
-  GOOGL,
-  IBM,
-  ;
-
-  private static final List<Security> SECURITIES = List.of(values());
-  
+public final class Security {
+  private record Registry(Security[] table, int size, List<Security> securities) { }
+
+  private static final class SecurityList extends AbstractList<Security> implements RandomAccess {
+    private final Security[] table;
+    private final int size;
+
+    private SecurityList(Security[] table, int size) {
+      this.table = table;
+      this.size = size;
+    }
+
+    @Override
+    public Security get(int index) {
+      Objects.checkIndex(index, size);
+      return table[index];
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+
+  private static final ConcurrentHashMap<String, Security> SECURITY_MAP = new ConcurrentHashMap<>();
+  private static volatile Registry registry = new Registry(new Security[16], 0, List.of());  // guarded by SECURITY_MAP for writes
+
+  public static final Security APPL = of("APPL");
+  public static final Security GOOGL = of("GOOGL");
+  public static final Security IBM = of("IBM");
+
+  private final String name;
+  private final int id;
+
+  private Security(String name, int id) {
+    this.name = name;
+    this.id = id;
+  }
+
+  /**
+   * Returns the security of a name, registering it if necessary.
+   * @param name the name of the security.
+   * @return the security of that name.
+   * @throws IllegalArgumentException if the name is empty.
+   */
+  @Nonnull
+  public static Security of(@Nonnull String name) {
+    requireNonNull(name);
+    var security = SECURITY_MAP.get(name);
+    if (security != null) {
+      return security;
+    }
+    if (name.isEmpty()) {
+      throw new IllegalArgumentException("empty security name");
+    }
+    synchronized(SECURITY_MAP) {
+      security = SECURITY_MAP.get(name);
+      if (security != null) {
+        return security;
+      }
+      var registry = Security.registry;
+      var size = registry.size;
+      var table = registry.table;
+      if (size == table.length) {
+        table = Arrays.copyOf(table, size << 1);
+      }
+      security = new Security(name, size);
+      table[size] = security;
+      // the table is published by the volatile write, the slots before size are never modified
+      Security.registry = new Registry(table, size + 1, new SecurityList(table, size + 1));
+      SECURITY_MAP.put(name, security);
+      return security;
+    }
+  }
+
+  /**
+   * Returns the security of a name if it is registered.
+   * @param name the name of the security.
+   * @return the security of that name or an empty optional.
+   */
+  @Nonnull
+  public static Optional<Security> lookup(@Nonnull String name) {
+    return Optional.ofNullable(SECURITY_MAP.get(requireNonNull(name)));
+  }
+
+  /**
+   * Returns the security of an id.
+   * @param id the id of a registered security.
+   * @return the security of that id.
+   * @throws IndexOutOfBoundsException if there is no security with that id.
+   */
+  @Nonnull
+  public static Security byId(int id) {
+    var registry = Security.registry;
+    Objects.checkIndex(id, registry.size);
+    return registry.table[id];
+  }
+
+  /**
+   * Returns the securities registered so far, ordered by id.
+   * @return an immutable list of the securities, the securities registered
+   *         after the call are not part of the list.
+   */
+  @Nonnull
   public static List<Security> securities() {
-    return SECURITIES;
+    return registry.securities;
+  }
+
+  /**
+   * Returns the name of the security.
+   * @return the name of the security.
+   */
+  @Nonnull
+  public String name() {
+    return name;
+  }
+
+  /**
+   * Returns the id of the security, the ids start at 0 and are assigned in registration order.
+   * @return the id of the security.
+   */
+  public int id() {
+    return id;
+  }
+
+  @Override
+  public String toString() {
+    return name;
   }
 }
@@ -0,0 +1,572 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Loads transactions from a file without creating intermediary objects.
+ *
+ * The file is mapped in memory by windows of a fixed size and the transactions are
+ * parsed directly from the bytes and sent to a {@link Handler} one by one,
+ * so a file of any size can be processed with a bounded amount of memory.
+ *
+ * Two formats are supported
+ * <ul>
+ * <li>a CSV format, one transaction per line {@code type,date,cash,security,quantity},
+ * e.g. {@code BUY,2020-03-01,1234.50,GOOGL,10} or {@code DEPOSIT,2020-03-02,100,,}.
+ * The date is an ISO date, the cash and the quantity are positive decimal numbers,
+ * the security and the quantity can be empty. Empty lines and lines starting with
+ * {@code #} are ignored.</li>
+ * <li>a binary format written by {@link #writeBinary(TransactionColumns, Path)}, a header
+ * ({@code int} magic number {@code 'TRAN'}, {@code int} version, {@code int} cash scale,
+ * {@code int} quantity scale, {@code int} security count, {@code int} offset of the records),
+ * the names of the securities ({@code short} length followed by the name in UTF-8)
+ * and fixed size records ({@code int} epoch day, {@code byte} type ordinal,
+ * {@code int} index of the security in the names or -1, {@code long} scaled cash,
+ * {@code long} scaled quantity), all values are big endian.</li>
+ * </ul>
+ * The format is detected from the first bytes of the file.
+ * The securities must be registered before loading, an unknown security is an error.
+ *
+ * @see ReportingService#calculateReturnOnInvestmentYTD(Position, TransactionLoader, Path)
+ */
+@ThreadSafe
+public final class TransactionLoader {
+  /**
+   * Receives the transactions as primitive values.
+   */
+  @FunctionalInterface
+  public interface Handler {
+    /**
+     * Called for each transaction.
+     * @param type type of the transaction.
+     * @param epochDay date of the transaction as an epoch day.
+     * @param cash cash of the transaction multiplied by {@code 10^cashScale}.
+     * @param security security of the transaction or null.
+     * @param quantity quantity of the transaction multiplied by {@code 10^quantityScale}.
+     */
+    void transaction(TransactionType type, long epochDay, long cash, Security security, long quantity);
+  }
+
+  /**
+   * Statistics of a load.
+   */
+  public record Statistics(
+      /** Number of bytes of the file */
+      long bytes,
+      /** Number of transactions loaded */
+      long transactions,
+      /** Duration of the load in nanoseconds */
+      long nanos) {
+    /**
+     * Returns the parsing throughput in megabytes (10^6 bytes) per second.
+     * @return the parsing throughput in megabytes per second.
+     */
+    public double megabytesPerSecond() {
+      return (nanos == 0)? 0: bytes * 1_000.0 / nanos;
+    }
+  }
+
+  private static final int MAGIC = 0x5452414E;  // 'TRAN'
+  private static final int VERSION = 2;
+  private static final int HEADER_SIZE = 24;
+  private static final int RECORD_SIZE = 25;
+  private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+  private static final TransactionType[] TYPES = TransactionType.values();
+  private static final byte[][] TYPE_NAMES = names(TYPES);
+
+  private final int cashScale;
+  private final int quantityScale;
+  private final int windowSize;
+
+  /**
+   * Creates a loader.
+   * @param cashScale the scale of the cash sent to the handler.
+   * @param quantityScale the scale of the quantity sent to the handler.
+   */
+  public TransactionLoader(int cashScale, int quantityScale) {
+    this(cashScale, quantityScale, WINDOW_SIZE);
+  }
+
+  TransactionLoader(int cashScale, int quantityScale, int windowSize) {
+    if (cashScale < 0 || cashScale > FixedPoint.MAX_SCALE) {
+      throw new IllegalArgumentException("invalid cash scale " + cashScale);
+    }
+    if (quantityScale < 0 || quantityScale > FixedPoint.MAX_SCALE) {
+      throw new IllegalArgumentException("invalid quantity scale " + quantityScale);
+    }
+    if (windowSize < RECORD_SIZE) {
+      throw new IllegalArgumentException("invalid window size " + windowSize);
+    }
+    this.cashScale = cashScale;
+    this.quantityScale = quantityScale;
+    this.windowSize = windowSize;
+  }
+
+  private static byte[][] names(Enum<?>[] values) {
+    var names = new byte[values.length][];
+    for(var i = 0; i < values.length; i++) {
+      names[i] = values[i].name().getBytes(US_ASCII);
+    }
+    return names;
+  }
+
+  /**
+   * Returns the scale of the cash sent to the handler.
+   * @return the scale of the cash sent to the handler.
+   */
+  public int cashScale() {
+    return cashScale;
+  }
+
+  /**
+   * Returns the scale of the quantity sent to the handler.
+   * @return the scale of the quantity sent to the handler.
+   */
+  public int quantityScale() {
+    return quantityScale;
+  }
+
+  /**
+   * Loads all the transactions of a file into columns.
+   * @param path the path of the file.
+   * @return newly created columns containing all the transactions.
+   * @throws IOException if an I/O error occurs or if the file is malformed.
+   */
+  @Nonnull
+  public TransactionColumns loadColumns(@Nonnull Path path) throws IOException {
+    var columns = new TransactionColumns(cashScale, quantityScale);
+    load(path, (type, epochDay, cash, security, quantity) -> columns.add(type, LocalDate.ofEpochDay(epochDay), cash, security, quantity));
+    return columns;
+  }
+
+  /**
+   * Loads the transactions of a file and sends them to a handler.
+   * @param path the path of the file.
+   * @param handler the handler that receives the transactions.
+   * @return the statistics of the load.
+   * @throws IOException if an I/O error occurs or if the file is malformed.
+   */
+  @Nonnull
+  public Statistics load(@Nonnull Path path, @Nonnull Handler handler) throws IOException {
+    requireNonNull(path);
+    requireNonNull(handler);
+    var start = System.nanoTime();
+    try(var channel = FileChannel.open(path, READ)) {
+      var size = channel.size();
+      var transactions = isBinary(channel)? loadBinary(channel, size, handler): loadCSV(channel, size, handler);
+      return new Statistics(size, transactions, System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Parses transactions in the CSV format from a buffer and sends them to a handler.
+   * The bytes between the position and the limit of the buffer are parsed,
+   * the position of the buffer is not modified.
+   * @param buffer the buffer containing the transactions in the CSV format.
+   * @param handler the handler that receives the transactions.
+   * @return the number of transactions parsed.
+   * @throws IOException if the transactions are malformed.
+   */
+  public long parseCSV(@Nonnull ByteBuffer buffer, @Nonnull Handler handler) throws IOException {
+    requireNonNull(buffer);
+    requireNonNull(handler);
+    var parser = new CSVParser(handler);
+    parser.parseLines(buffer.slice(), true);
+    return parser.transactions;
+  }
+
+  private static boolean isBinary(FileChannel channel) throws IOException {
+    var buffer = ByteBuffer.allocate(Integer.BYTES);
+    while(buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0) {
+      // read the magic number
+    }
+    return !buffer.hasRemaining() && buffer.getInt(0) == MAGIC;
+  }
+
+  private long loadBinary(FileChannel channel, long size, Handler handler) throws IOException {
+    if (size < HEADER_SIZE) {
+      throw new IOException("invalid binary transaction file size " + size);
+    }
+    var header = channel.map(MapMode.READ_ONLY, 0, HEADER_SIZE);
+    var version = header.getInt(4);
+    if (version != VERSION) {
+      throw new IOException("unsupported binary transaction file version " + version);
+    }
+    var fileCashScale = header.getInt(8);
+    var fileQuantityScale = header.getInt(12);
+    if (fileCashScale < 0 || fileCashScale > cashScale || fileQuantityScale < 0 || fileQuantityScale > quantityScale) {
+      throw new IOException("can not load scales " + fileCashScale + "/" + fileQuantityScale + " as " + cashScale + "/" + quantityScale);
+    }
+    var securityCount = header.getInt(16);
+    var recordsOffset = header.getInt(20);
+    if (securityCount < 0 || recordsOffset < HEADER_SIZE || recordsOffset > size || (size - recordsOffset) % RECORD_SIZE != 0) {
+      throw new IOException("invalid binary transaction file header");
+    }
+
+    var securities = new Security[securityCount];
+    var names = channel.map(MapMode.READ_ONLY, HEADER_SIZE, recordsOffset - HEADER_SIZE);
+    try {
+      for(var i = 0; i < securityCount; i++) {
+        var length = names.getShort();
+        if (length < 0) {
+          throw new IOException("invalid binary transaction file header");
+        }
+        var name = new byte[length];
+        names.get(name);
+        var securityName = new String(name, UTF_8);
+        securities[i] = Security.lookup(securityName).orElseThrow(() -> new IOException("unknown security " + securityName));
+      }
+    } catch(BufferUnderflowException e) {
+      throw new IOException("invalid binary transaction file header", e);
+    }
+
+    var transactions = 0L;
+    var window = (windowSize / RECORD_SIZE) * RECORD_SIZE;
+    for(var position = (long) recordsOffset; position < size; position += window) {
+      var length = (int) Math.min(window, size - position);
+      var buffer = channel.map(MapMode.READ_ONLY, position, length);
+      for(var offset = 0; offset < length; offset += RECORD_SIZE) {
+        var epochDay = buffer.getInt(offset);
+        var type = buffer.get(offset + 4);
+        var security = buffer.getInt(offset + 5);
+        var cash = buffer.getLong(offset + 9);
+        var quantity = buffer.getLong(offset + 17);
+        if (type < 0 || type >= TYPES.length || (security == -1 && TYPES[type].hasQuantity()) || security < -1 || security >= securityCount || cash < 0 || quantity < 0) {
+          throw new IOException("invalid transaction record " + transactions);
+        }
+        try {
+          handler.transaction(TYPES[type], epochDay, FixedPoint.rescale(cash, fileCashScale, cashScale),
+              security == -1? null: securities[security], FixedPoint.rescale(quantity, fileQuantityScale, quantityScale));
+        } catch(ArithmeticException e) {
+          throw new IOException("transaction record " + transactions + " is too large", e);
+        }
+        transactions++;
+      }
+    }
+    return transactions;
+  }
+
+  private long loadCSV(FileChannel channel, long size, Handler handler) throws IOException {
+    var parser = new CSVParser(handler);
+    var position = 0L;
+    while(position < size) {
+      var length = (int) Math.min(windowSize, size - position);
+      var buffer = channel.map(MapMode.READ_ONLY, position, length);
+      var consumed = parser.parseLines(buffer, position + length == size);
+      if (consumed == 0) {
+        throw new IOException("line " + (parser.line + 1) + " is longer than " + windowSize + " bytes");
+      }
+      position += consumed;
+    }
+    return parser.transactions;
+  }
+
+  private final class CSVParser {
+    private final Handler handler;
+    private long line;
+    private long transactions;
+    private ByteBuffer buffer;
+    private byte[][] securityNames = new byte[16][];  // open addressing table of the securities already seen
+    private Security[] securities = new Security[16];
+    private int securityCount;
+
+    private CSVParser(Handler handler) {
+      this.handler = handler;
+    }
+
+    /**
+     * Parses all the complete lines of a buffer.
+     * @return the number of bytes consumed.
+     */
+    int parseLines(ByteBuffer buffer, boolean last) throws IOException {
+      this.buffer = buffer;
+      var limit = buffer.limit();
+      var start = 0;
+      for(;;) {
+        var end = indexOf('\n', start, limit);
+        if (end == -1) {
+          if (!last || start == limit) {
+            return start;
+          }
+          end = limit;
+        }
+        line++;
+        parseLine(start, (end > start && buffer.get(end - 1) == '\r')? end - 1: end);
+        start = Math.min(end + 1, limit);
+        if (start == limit) {
+          return limit;
+        }
+      }
+    }
+
+    private int indexOf(char c, int from, int to) {
+      for(var i = from; i < to; i++) {
+        if (buffer.get(i) == c) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    private int fieldEnd(int start, int end) throws IOException {
+      var index = indexOf(',', start, end);
+      if (index == -1) {
+        throw error("missing field");
+      }
+      return index;
+    }
+
+    private void parseLine(int start, int end) throws IOException {
+      if (start == end || buffer.get(start) == '#') {
+        return;
+      }
+      var typeEnd = fieldEnd(start, end);
+      var type = parseType(start, typeEnd);
+      var dateEnd = fieldEnd(typeEnd + 1, end);
+      var epochDay = parseDate(typeEnd + 1, dateEnd);
+      var cashEnd = fieldEnd(dateEnd + 1, end);
+      var cash = parseDecimal(dateEnd + 1, cashEnd, cashScale, false);
+      var securityEnd = fieldEnd(cashEnd + 1, end);
+      var security = parseSecurity(cashEnd + 1, securityEnd);
+      var quantity = parseDecimal(securityEnd + 1, end, quantityScale, true);
+      if (type.hasQuantity() && security == null) {
+        throw error("no security");
+      }
+      handler.transaction(type, epochDay, cash, security, quantity);
+      transactions++;
+    }
+
+    private boolean matches(byte[] name, int start, int end) {
+      if (name.length != end - start) {
+        return false;
+      }
+      for(var i = 0; i < name.length; i++) {
+        if (name[i] != buffer.get(start + i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private TransactionType parseType(int start, int end) throws IOException {
+      for(var i = 0; i < TYPE_NAMES.length; i++) {
+        if (matches(TYPE_NAMES[i], start, end)) {
+          return TYPES[i];
+        }
+      }
+      throw error("invalid type");
+    }
+
+    private Security parseSecurity(int start, int end) throws IOException {
+      if (start == end) {
+        return null;
+      }
+      // the securities already seen are found by hashing the bytes of the name,
+      // so a String is only created the first time a security is seen
+      var hash = 0;
+      for(var i = start; i < end; i++) {
+        hash = hash * 31 + buffer.get(i);
+      }
+      var mask = securityNames.length - 1;
+      var slot = (hash * 0x9E3779B9) & mask;
+      for(; securityNames[slot] != null; slot = (slot + 1) & mask) {
+        if (matches(securityNames[slot], start, end)) {
+          return securities[slot];
+        }
+      }
+      var name = new byte[end - start];
+      buffer.get(start, name);
+      var security = Security.lookup(new String(name, UTF_8)).orElseThrow(() -> error("invalid security"));
+      securityNames[slot] = name;
+      securities[slot] = security;
+      if (++securityCount == securityNames.length >> 1) {
+        rehashSecurities();
+      }
+      return security;
+    }
+
+    private void rehashSecurities() {
+      var oldNames = securityNames;
+      var oldSecurities = securities;
+      securityNames = new byte[oldNames.length << 1][];
+      securities = new Security[oldNames.length << 1];
+      var mask = securityNames.length - 1;
+      for(var i = 0; i < oldNames.length; i++) {
+        var name = oldNames[i];
+        if (name == null) {
+          continue;
+        }
+        var hash = 0;
+        for(var b: name) {
+          hash = hash * 31 + b;
+        }
+        var slot = (hash * 0x9E3779B9) & mask;
+        while(securityNames[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+        securityNames[slot] = name;
+        securities[slot] = oldSecurities[i];
+      }
+    }
+
+    private int digit(int index) throws IOException {
+      var digit = buffer.get(index) - '0';
+      if (digit < 0 || digit > 9) {
+        throw error("invalid digit");
+      }
+      return digit;
+    }
+
+    private int number(int start, int end) throws IOException {
+      var value = 0;
+      for(var i = start; i < end; i++) {
+        value = value * 10 + digit(i);
+      }
+      return value;
+    }
+
+    private long parseDate(int start, int end) throws IOException {
+      if (end - start != 10 || buffer.get(start + 4) != '-' || buffer.get(start + 7) != '-') {
+        throw error("invalid date");
+      }
+      try {
+        return LocalDate.of(number(start, start + 4), number(start + 5, start + 7), number(start + 8, start + 10)).toEpochDay();
+      } catch(DateTimeException e) {
+        throw error("invalid date");
+      }
+    }
+
+    private long parseDecimal(int start, int end, int scale, boolean emptyAsZero) throws IOException {
+      if (start == end) {
+        if (emptyAsZero) {
+          return 0;
+        }
+        throw error("empty number");
+      }
+      var value = 0L;
+      var decimals = -1;
+      try {
+        for(var i = start; i < end; i++) {
+          if (buffer.get(i) == '.' && decimals == -1) {
+            decimals = 0;
+            continue;
+          }
+          if (decimals != -1 && ++decimals > scale) {
+            throw error("too many decimals");
+          }
+          value = Math.addExact(Math.multiplyExact(value, 10), digit(i));
+        }
+        if (decimals != -1 && end - start == 1) {
+          throw error("no digit");
+        }
+        return FixedPoint.rescale(value, Math.max(decimals, 0), scale);
+      } catch(ArithmeticException e) {
+        throw error("number too large");
+      }
+    }
+
+    private IOException error(String message) {
+      return new IOException(message + " at line " + line);
+    }
+  }
+
+  /**
+   * Writes transactions into a file using the binary format.
+   * @param transactions the transactions.
+   * @param path the path of the file, replaced if it already exists.
+   * @throws IOException if an I/O error occurs.
+   */
+  public static void writeBinary(@Nonnull TransactionColumns transactions, @Nonnull Path path) throws IOException {
+    requireNonNull(transactions);
+    requireNonNull(path);
+    // the ids of the securities depend on the registration order, so the file stores
+    // the names of the securities and the records the index of the names
+    var indexes = new LinkedHashMap<Security, Integer>();
+    transactions.forEach((type, epochDay, cash, security, quantity) -> {
+      if (security != null) {
+        indexes.putIfAbsent(security, indexes.size());
+      }
+    });
+    var names = indexes.keySet().stream().map(security -> security.name().getBytes(UTF_8)).toArray(byte[][]::new);
+    var recordsOffset = HEADER_SIZE + Arrays.stream(names).mapToInt(name -> Short.BYTES + name.length).sum();
+
+    try(var channel = FileChannel.open(path, CREATE, TRUNCATE_EXISTING, WRITE)) {
+      var header = ByteBuffer.allocate(recordsOffset);
+      header.putInt(MAGIC)
+          .putInt(VERSION)
+          .putInt(transactions.cashScale())
+          .putInt(transactions.quantityScale())
+          .putInt(names.length)
+          .putInt(recordsOffset);
+      for(var name: names) {
+        header.putShort((short) name.length).put(name);
+      }
+      writeFully(channel, header.flip());
+
+      var buffer = ByteBuffer.allocate(8192 / RECORD_SIZE * RECORD_SIZE);
+      try {
+        transactions.forEach((type, epochDay, cash, security, quantity) -> {
+          if (buffer.remaining() < RECORD_SIZE) {
+            try {
+              writeFully(channel, buffer.flip());
+            } catch(IOException e) {
+              throw new UncheckedIOException(e);
+            }
+            buffer.clear();
+          }
+          buffer.putInt((int) epochDay)
+              .put((byte) type.ordinal())
+              .putInt(security == null? -1: indexes.get(security))
+              .putLong(cash)
+              .putLong(quantity);
+        });
+      } catch(UncheckedIOException e) {
+        throw e.getCause();
+      }
+      writeFully(channel, buffer.flip());
+    }
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while(buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import static java.lang.Math.addExact;
+import static java.lang.Math.multiplyExact;
+
+import java.math.BigDecimal;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Values the securities held by a position as the dot product of the quantities and the prices
+ * converted to {@code long}s scaled by a power of ten.
+ *
+ * The quantities and the prices are first gathered in two dense arrays, then
+ * {@link #dotProduct(long[], long[], int)} checks once that the dot product can not overflow
+ * and, if so, uses a plain loop of multiplications and additions that the JIT can unroll
+ * and vectorize, otherwise each operation is checked.
+ * The result is exactly the same as with {@code BigDecimal}s, if a value doesn't fit in a {@code long},
+ * {@link #value(Position, long[], int)} returns {@code null} and the caller is expected
+ * to do the computation using {@code BigDecimal}s.
+ */
+@ThreadSafe
+final class Valuation {
+  private Valuation() {
+    throw new AssertionError();
+  }
+
+  /**
+   * Gathers the securities held by a position and their quantities in dense arrays,
+   * so the other methods don't have to scan the slots of the position again.
+   * @param position a position.
+   * @param ids an array of at least {@code position.size()} ids that receives the ids of the securities.
+   * @param quantities an array of at least {@code position.size()} quantities that receives the quantities.
+   * @return the number of securities held.
+   */
+  static int holdings(Position position, int[] ids, BigDecimal[] quantities) {
+    var length = 0;
+    for(var slot = 0; slot < position.slotCount(); slot++) {
+      var id = position.slotId(slot);
+      if (id == -1) {
+        continue;
+      }
+      ids[length] = id;
+      quantities[length] = position.slotQuantity(slot);
+      length++;
+    }
+    return length;
+  }
+
+  /**
+   * Returns the maximum scale of some quantities.
+   * @param quantities the quantities.
+   * @param length the number of quantities.
+   * @return the maximum scale of the quantities, 0 if there is no quantity.
+   */
+  static int quantityScale(BigDecimal[] quantities, int length) {
+    var quantityScale = 0;
+    for(var i = 0; i < length; i++) {
+      quantityScale = Math.max(quantityScale, FixedPoint.scale(quantities[i]));
+    }
+    return quantityScale;
+  }
+
+  /**
+   * Converts some quantities to longs.
+   * @param quantities the quantities.
+   * @param length the number of quantities.
+   * @param quantityScale the scale of the quantities, at least {@link #quantityScale(BigDecimal[], int)}.
+   * @return a new array with the quantities multiplied by {@code 10^quantityScale}.
+   * @throws ArithmeticException if a quantity doesn't fit in a long.
+   */
+  static long[] scaled(BigDecimal[] quantities, int length, int quantityScale) {
+    var scaled = new long[length];
+    for(var i = 0; i < length; i++) {
+      scaled[i] = FixedPoint.scaled(quantities[i], quantityScale);
+    }
+    return scaled;
+  }
+
+  /**
+   * Gathers the prices of securities.
+   * @param prices the prices indexed by {@link Security#id()}, {@link PriceService#NO_PRICE} if there is no price.
+   * @param ids the ids of the securities.
+   * @param length the number of securities.
+   * @return a new array with the price of {@code ids[i]} at index {@code i}.
+   * @throws IllegalArgumentException if there is no price for a security.
+   */
+  static long[] gather(long[] prices, int[] ids, int length) {
+    var gathered = new long[length];
+    for(var i = 0; i < length; i++) {
+      var id = ids[i];
+      var price = (id < prices.length)? prices[id]: PriceService.NO_PRICE;
+      if (price == PriceService.NO_PRICE) {
+        throw new IllegalArgumentException("No price for " + Security.byId(id));
+      }
+      gathered[i] = price;
+    }
+    return gathered;
+  }
+
+  /**
+   * Computes the sum of {@code quantities[i] * prices[i]} for {@code i} less than {@code length}.
+   * @param quantities the quantities.
+   * @param prices the prices.
+   * @param length the number of products.
+   * @return the exact dot product.
+   * @throws ArithmeticException if the dot product overflows.
+   */
+  static long dotProduct(long[] quantities, long[] prices, int length) {
+    // an upper bound of the magnitudes, a value equals to Long.MIN_VALUE sets the sign bit
+    var quantityBits = 0L;
+    var priceBits = 0L;
+    for(var i = 0; i < length; i++) {
+      quantityBits |= Math.abs(quantities[i]);
+      priceBits |= Math.abs(prices[i]);
+    }
+    var bits = (64 - Long.numberOfLeadingZeros(quantityBits)) + (64 - Long.numberOfLeadingZeros(priceBits))
+        + (32 - Integer.numberOfLeadingZeros(length));
+    if (bits <= 63) {
+      // |sum| < length * 2^quantityBits * 2^priceBits <= 2^63, no product nor sum can overflow
+      var sum = 0L;
+      for(var i = 0; i < length; i++) {
+        sum += quantities[i] * prices[i];
+      }
+      return sum;
+    }
+    var sum = 0L;
+    for(var i = 0; i < length; i++) {
+      sum = addExact(sum, multiplyExact(quantities[i], prices[i]));
+    }
+    return sum;
+  }
+
+  /**
+   * Computes the value of the securities held by a position.
+   * @param position a position.
+   * @param prices the prices indexed by {@link Security#id()} multiplied by {@code 10^priceScale},
+   *               {@link PriceService#NO_PRICE} if there is no price.
+   * @param priceScale the scale of the prices.
+   * @return the value of the securities or {@code null} if a value doesn't fit in a long.
+   * @throws IllegalArgumentException if there is no price for a security held.
+   */
+  static BigDecimal value(Position position, long[] prices, int priceScale) {
+    var ids = new int[position.size()];
+    var quantities = new BigDecimal[ids.length];
+    var length = holdings(position, ids, quantities);
+    var quantityScale = quantityScale(quantities, length);
+    var valueScale = quantityScale + priceScale;
+    if (priceScale < 0 || valueScale > FixedPoint.MAX_SCALE) {
+      return null;
+    }
+    var gatheredPrices = gather(prices, ids, length);
+    try {
+      var scaledQuantities = scaled(quantities, length, quantityScale);
+      return BigDecimal.valueOf(dotProduct(scaledQuantities, gatheredPrices, length), valueScale);
+    } catch(ArithmeticException e) {
+      return null;
+    }
+  }
+}
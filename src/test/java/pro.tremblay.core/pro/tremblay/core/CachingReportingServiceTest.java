@@ -0,0 +1,120 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import static java.math.BigDecimal.ZERO;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static pro.tremblay.core.BigDecimalUtil.bd;
+import static pro.tremblay.core.Preferences.LENGTH_OF_YEAR;
+import static pro.tremblay.core.TransactionType.DEPOSIT;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class CachingReportingServiceTest {
+  private LocalDate now = LocalDate.of(2020, 6, 10);
+  private long time;
+  private final DateService dateService = new DateService(() -> now);
+  private final PriceService priceService = PriceService.createARandomPriceService(new DateService(() -> LocalDate.of(2020, 12, 31)));
+  private final ReportingService reportingService = new ReportingService(Preferences.of(LENGTH_OF_YEAR, 360), priceService, dateService);
+  private final CachingReportingService cache = new CachingReportingService(reportingService, 2, Duration.ofSeconds(10), () -> time);
+
+  @Test
+  public void hitRateWithoutRequest() {
+    assertEquals(0.0, cache.statistics().hitRate());
+  }
+
+  @Test
+  public void hitAndMiss() {
+    var current = new Position(bd(200));
+    var transactions = List.of(new Transaction(DEPOSIT, now.minusDays(10), bd(100), null, ZERO));
+    var roi = cache.calculateReturnOnInvestmentYTD("account", 0, 0, current, transactions);
+    assertEquals(reportingService.calculateReturnOnInvestmentYTD(current, transactions), roi);
+    assertEquals(roi, cache.calculateReturnOnInvestmentYTD("account", 0, 0, current, transactions));
+    assertEquals(new CachingReportingService.Statistics(1, 1, 0), cache.statistics());
+    assertEquals(0.5, cache.statistics().hitRate());
+  }
+
+  @Test
+  public void transactionAppended() {
+    var current = new Position(bd(200));
+    var transactions = new ArrayList<>(List.of(new Transaction(DEPOSIT, now.minusDays(10), bd(100), null, ZERO)));
+    cache.calculateReturnOnInvestmentYTD("account", 0, 0, current, transactions);
+
+    transactions.add(new Transaction(DEPOSIT, now, bd(50), null, ZERO));
+    current.cash(bd(250));
+    assertEquals(reportingService.calculateReturnOnInvestmentYTD(current, transactions),
+        cache.calculateReturnOnInvestmentYTD("account", 1, 1, current, transactions));
+    assertEquals(new CachingReportingService.Statistics(0, 2, 0), cache.statistics());
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void dateChanged() {
+    var current = new Position(bd(200));
+    var transactions = List.of(new Transaction(DEPOSIT, now.minusDays(10), bd(100), null, ZERO));
+    cache.calculateReturnOnInvestmentYTD("account", 0, 0, current, transactions);
+    now = now.plusDays(1);
+    assertEquals(reportingService.calculateReturnOnInvestmentYTD(current, transactions),
+        cache.calculateReturnOnInvestmentYTD("account", 0, 0, current, transactions));
+    assertEquals(2, cache.statistics().misses());
+  }
+
+  @Test
+  public void timeToLive() {
+    var current = new Position(bd(200));
+    cache.calculateReturnOnInvestmentYTD("account", 0, 0, current, List.of());
+    time += Duration.ofSeconds(10).toNanos();
+    cache.calculateReturnOnInvestmentYTD("account", 0, 0, current, List.of());
+    assertEquals(new CachingReportingService.Statistics(0, 2, 1), cache.statistics());
+  }
+
+  @Test
+  public void maximumSize() {
+    var current = new Position(bd(200));
+    cache.calculateReturnOnInvestmentYTD("account1", 0, 0, current, List.of());
+    cache.calculateReturnOnInvestmentYTD("account2", 0, 0, current, List.of());
+    cache.calculateReturnOnInvestmentYTD("account1", 0, 0, current, List.of());
+    cache.calculateReturnOnInvestmentYTD("account3", 0, 0, current, List.of());  // evicts account2
+    assertEquals(2, cache.size());
+    cache.calculateReturnOnInvestmentYTD("account1", 0, 0, current, List.of());
+    assertEquals(new CachingReportingService.Statistics(2, 3, 1), cache.statistics());
+  }
+
+  @Test
+  public void invalidate() {
+    var current = new Position(bd(200));
+    cache.calculateReturnOnInvestmentYTD("account1", 0, 0, current, List.of());
+    cache.calculateReturnOnInvestmentYTD("account2", 0, 0, current, List.of());
+    cache.invalidate("account1");
+    assertEquals(1, cache.size());
+    cache.invalidateAll();
+    assertEquals(0, cache.size());
+    cache.calculateReturnOnInvestmentYTD("account2", 0, 0, current, List.of());
+    assertEquals(3, cache.statistics().misses());
+  }
+
+  @Test
+  public void invalidConfiguration() {
+    assertThrows(IllegalArgumentException.class, () -> new CachingReportingService(reportingService, 0, Duration.ofSeconds(1)));
+    assertThrows(IllegalArgumentException.class, () -> new CachingReportingService(reportingService, 10, Duration.ZERO));
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import static java.util.function.Function.identity;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import pro.tremblay.core.Preferences.Key;
+
+public class FilePreferencesTest {
+  private static final Key<Integer> SIZE = new Key<>("size", Integer.class, Integer::parseInt);
+  private static final Key<String> NAME = new Key<>("name", String.class, identity());
+
+  private Path directory;
+  private Path file;
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("preferences");
+    file = directory.resolve("preferences.properties");
+    Files.writeString(file, "size=42\nname=foo\n");
+  }
+
+  @AfterEach
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+    Files.delete(directory);
+  }
+
+  @Test
+  public void get() throws IOException {
+    try(var preferences = FilePreferences.of(file, SIZE)) {
+      assertEquals(42, preferences.get(SIZE).orElseThrow());
+      assertEquals("foo", preferences.get(NAME).orElseThrow());
+    }
+  }
+
+  @Test
+  public void getNoAllocation() throws IOException {
+    try(var preferences = FilePreferences.of(file, SIZE)) {
+      assertSame(preferences.get(SIZE), preferences.get(SIZE));
+    }
+  }
+
+  @Test
+  public void unknownPreference() throws IOException {
+    try(var preferences = FilePreferences.of(file, SIZE)) {
+      assertTrue(preferences.get(Preferences.LENGTH_OF_YEAR).isEmpty());
+    }
+  }
+
+  @Test
+  public void ofMissingFile() {
+    assertThrows(IOException.class, () -> FilePreferences.of(directory.resolve("missing.properties"), SIZE));
+  }
+
+  @Test
+  public void ofMalformedValue() throws IOException {
+    Files.writeString(file, "size=big\n");
+    assertThrows(NumberFormatException.class, () -> FilePreferences.of(file, SIZE));
+  }
+
+  @Test
+  public void reload() throws IOException {
+    try(var preferences = FilePreferences.of(file, SIZE)) {
+      var snapshot = preferences.snapshot();
+      Files.writeString(file, "size=43\n");
+      assertTrue(preferences.reload());
+      assertEquals(43, preferences.get(SIZE).orElseThrow());
+      assertTrue(preferences.get(NAME).isEmpty());
+      assertEquals(42, snapshot.get(SIZE).orElseThrow());
+    }
+  }
+
+  @Test
+  public void reloadMalformedValue() throws IOException {
+    try(var preferences = FilePreferences.of(file, SIZE)) {
+      var rejected = new ArrayList<Exception>();
+      preferences.addListener(new FilePreferences.Listener() {
+        @Override
+        public void changed(Preferences preferences) {
+          throw new AssertionError();
+        }
+        @Override
+        public void rejected(Exception exception) {
+          rejected.add(exception);
+        }
+      });
+      Files.writeString(file, "size=big\n");
+      assertFalse(preferences.reload());
+      assertEquals(42, preferences.get(SIZE).orElseThrow());
+      assertEquals(1, rejected.size());
+      assertTrue(rejected.get(0) instanceof NumberFormatException);
+    }
+  }
+
+  @Test
+  public void listener() throws IOException {
+    try(var preferences = FilePreferences.of(file, SIZE)) {
+      var snapshots = new ArrayList<Preferences>();
+      preferences.addListener(snapshots::add);
+      Files.writeString(file, "size=43\n");
+      preferences.reload();
+      assertEquals(1, snapshots.size());
+      assertEquals(43, snapshots.get(0).get(SIZE).orElseThrow());
+    }
+  }
+
+  @Test
+  public void watchFileChange() throws IOException, InterruptedException {
+    try(var preferences = FilePreferences.watch(file, SIZE)) {
+      var latch = new CountDownLatch(1);
+      preferences.addListener(snapshot -> {
+        if (snapshot.get(SIZE).orElse(0) == 44) {
+          latch.countDown();
+        }
+      });
+      var temporary = Files.writeString(directory.resolve("preferences.tmp"), "size=44\n");
+      Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      assertTrue(latch.await(30, TimeUnit.SECONDS));
+      assertEquals(44, preferences.get(SIZE).orElseThrow());
+    }
+  }
+
+  @Test
+  public void watchMissingFile() {
+    assertThrows(IOException.class, () -> FilePreferences.watch(directory.resolve("missing.properties"), SIZE));
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings("static-method")
+public class JsonParserTest {
+  @Test
+  public void values() throws IOException {
+    assertEquals(new BigDecimal("12.340"), JsonParser.parse("12.340"));
+    assertEquals(new BigDecimal("-1e3"), JsonParser.parse(" -1e3 "));
+    assertEquals("a\"b\\c\n\u00e9", JsonParser.parse("\"a\\\"b\\\\c\\n\\u00e9\""));
+    assertEquals(true, JsonParser.parse("true"));
+    assertEquals(false, JsonParser.parse("false"));
+    assertNull(JsonParser.parse("null"));
+  }
+
+  @Test
+  public void objectsAndArrays() throws IOException {
+    var value = JsonParser.parse("{ \"a\": [1, 2, {}], \"b\": { \"c\": [] } }");
+    assertEquals(Map.of("a", List.of(BigDecimal.ONE, BigDecimal.valueOf(2), Map.of()), "b", Map.of("c", List.of())), value);
+  }
+
+  @Test
+  public void malformed() {
+    for(var text: List.of("", "{", "[1,", "{\"a\" 1}", "{1: 2}", "tru", "1.2.3", "\"abc", "\"\\x\"", "[1] 2", "-")) {
+      assertThrows(IOException.class, () -> JsonParser.parse(text), text);
+    }
+  }
+
+  @Test
+  public void tooDeep() {
+    assertThrows(IOException.class, () -> JsonParser.parse("[".repeat(1_000) + "]".repeat(1_000)));
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings("static-method")
+public class LatencyHistogramTest {
+  @Test
+  public void index() {
+    var previous = -1;
+    for(var value = 0L; value < 1_000_000; value++) {
+      var index = LatencyHistogram.index(value);
+      assertTrue(index == previous || index == previous + 1);
+      assertTrue(value <= LatencyHistogram.highestValue(index));
+      previous = index;
+    }
+  }
+
+  @Test
+  public void smallValuesAreExact() {
+    var histogram = new LatencyHistogram();
+    for(var i = 0; i < 128; i++) {
+      histogram.record(i);
+    }
+    for(var i = 0; i < 128; i++) {
+      assertEquals(i, histogram.valueAtPercentile((i + 1) * 100.0 / 128));
+    }
+  }
+
+  @Test
+  public void relativeError() {
+    var histogram = new LatencyHistogram();
+    var random = new Random(0);
+    var values = new long[10_000];
+    for(var i = 0; i < values.length; i++) {
+      values[i] = (long) (Math.exp(random.nextDouble() * 30));
+      histogram.record(values[i]);
+    }
+    Arrays.sort(values);
+    for(var percentile: new double[] { 1, 10, 50, 90, 99, 99.9 }) {
+      var expected = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+      var actual = histogram.valueAtPercentile(percentile);
+      assertTrue(actual >= expected && actual <= expected + expected / 64, percentile + " " + expected + " " + actual);
+    }
+    assertEquals(values[values.length - 1], histogram.valueAtPercentile(100));
+    assertEquals(values[values.length - 1], histogram.max());
+    assertEquals(values.length, histogram.count());
+    assertEquals(Arrays.stream(values).sum(), histogram.sum());
+  }
+
+  @Test
+  public void largeValues() {
+    var histogram = new LatencyHistogram();
+    histogram.record(Long.MAX_VALUE);
+    assertEquals(Long.MAX_VALUE, histogram.valueAtPercentile(50));
+    assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValue(LatencyHistogram.index(Long.MAX_VALUE)));
+  }
+
+  @Test
+  public void empty() {
+    var histogram = new LatencyHistogram();
+    assertEquals(0, histogram.count());
+    assertEquals(0, histogram.max());
+    assertEquals(0, histogram.valueAtPercentile(99));
+  }
+
+  @Test
+  public void invalidValues() {
+    var histogram = new LatencyHistogram();
+    assertThrows(IllegalArgumentException.class, () -> histogram.record(-1));
+    assertThrows(IllegalArgumentException.class, () -> histogram.valueAtPercentile(-1));
+    assertThrows(IllegalArgumentException.class, () -> histogram.valueAtPercentile(101));
+    assertThrows(IllegalArgumentException.class, () -> histogram.valueAtPercentile(Double.NaN));
+  }
+
+  @Test
+  public void recordConcurrently() throws InterruptedException {
+    var histogram = new LatencyHistogram();
+    var threads = new ArrayList<Thread>();
+    for(var i = 0; i < 4; i++) {
+      var thread = new Thread(() -> {
+        for(var j = 1; j <= 10_000; j++) {
+          histogram.record(j);
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    for(var thread: threads) {
+      thread.join();
+    }
+    assertEquals(40_000, histogram.count());
+    assertEquals(10_000, histogram.max());
+    assertEquals(4L * 10_000 * 10_001 / 2, histogram.sum());
+  }
+}
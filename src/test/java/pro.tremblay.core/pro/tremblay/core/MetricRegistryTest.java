@@ -0,0 +1,117 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings("static-method")
+public class MetricRegistryTest {
+  @Test
+  public void counter() {
+    var metrics = Metrics.create();
+    var counter = metrics.counter("test.counter");
+    counter.increment();
+    counter.add(41);
+    assertEquals(42, counter.sum());
+    assertSame(counter, metrics.counter("test.counter"));
+    assertTrue(metrics.enabled());
+  }
+
+  @Test
+  public void counterConcurrently() throws InterruptedException {
+    var counter = Metrics.create().counter("test.counter");
+    var threads = new ArrayList<Thread>();
+    for(var i = 0; i < 4; i++) {
+      var thread = new Thread(() -> {
+        for(var j = 0; j < 10_000; j++) {
+          counter.increment();
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    for(var thread: threads) {
+      thread.join();
+    }
+    assertEquals(40_000, counter.sum());
+  }
+
+  @Test
+  public void histogram() {
+    var metrics = Metrics.create();
+    var histogram = metrics.histogram("test.histogram");
+    for(var i = 1; i <= 100; i++) {
+      histogram.record(i);
+    }
+    assertEquals(100, histogram.count());
+    assertEquals(100, histogram.max());
+    assertEquals(50, histogram.valueAtPercentile(50));
+    assertSame(histogram, metrics.histogram("test.histogram"));
+  }
+
+  @Test
+  public void nameUsedByAnotherKindOfMetric() {
+    var metrics = Metrics.create();
+    metrics.counter("test.metric");
+    assertThrows(IllegalArgumentException.class, () -> metrics.histogram("test.metric"));
+  }
+
+  @Test
+  public void snapshot() {
+    var metrics = Metrics.create();
+    metrics.counter("b.counter").add(3);
+    var histogram = metrics.histogram("a.histogram");
+    histogram.record(10);
+    histogram.record(20);
+    assertEquals("""
+        a.histogram.count 2
+        a.histogram.max 20
+        a.histogram.p50 10
+        a.histogram.p90 20
+        a.histogram.p99 20
+        a.histogram.p99.9 20
+        a.histogram.sum 30
+        b.counter 3
+        """, metrics.snapshot());
+  }
+
+  @Test
+  public void disabled() {
+    var metrics = Metrics.disabled();
+    var counter = metrics.counter("test.counter");
+    counter.add(3);
+    var histogram = metrics.histogram("test.histogram");
+    histogram.record(3);
+    assertFalse(metrics.enabled());
+    assertEquals(0, counter.sum());
+    assertEquals(0, histogram.count());
+    assertEquals("", metrics.snapshot());
+  }
+
+  @Test
+  public void nullName() {
+    assertThrows(NullPointerException.class, () -> Metrics.create().counter(null));
+    assertThrows(NullPointerException.class, () -> Metrics.disabled().histogram(null));
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import static java.math.BigDecimal.ZERO;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static pro.tremblay.core.BigDecimalUtil.bd;
+import static pro.tremblay.core.Preferences.LENGTH_OF_YEAR;
+import static pro.tremblay.core.Security.GOOGL;
+import static pro.tremblay.core.TransactionType.BUY;
+import static pro.tremblay.core.TransactionType.DEPOSIT;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class PositionIndexTest {
+  private final LocalDate now = LocalDate.of(2020, 6, 10);
+  private final DateService dateService = new DateService(() -> now);
+  private final PriceService priceService = PriceService.createARandomPriceService(dateService);
+  private final ReportingService reportingService = new ReportingService(Preferences.of(LENGTH_OF_YEAR, 360), priceService, dateService);
+
+  private static void assertSamePosition(Position expected, Position actual) {
+    assertEquals(0, expected.cash().compareTo(actual.cash()), "cash " + expected + " " + actual);
+    for(var security: Security.securities()) {
+      assertEquals(0, expected.quantity(security).compareTo(actual.quantity(security)), security + " " + expected + " " + actual);
+    }
+  }
+
+  private List<Transaction> randomTransactions(Random random, int count) {
+    var types = TransactionType.values();
+    var transactions = new ArrayList<Transaction>();
+    for(var i = 0; i < count; i++) {
+      var type = types[random.nextInt(types.length)];
+      var date = now.minusDays(random.nextInt(200));
+      var security = type.hasQuantity()? Security.securities().get(random.nextInt(3)): null;
+      var quantity = type.hasQuantity()? bd(random.nextInt(100)): ZERO;
+      transactions.add(new Transaction(type, date, BigDecimal.valueOf(random.nextInt(100_000), 2), security, quantity));
+    }
+    return transactions;
+  }
+
+  @Test
+  public void positionAt() {
+    var random = new Random(0);
+    var current = new Position(bd(100_000)).quantity(GOOGL, bd(50));
+    var transactions = randomTransactions(random, 300);
+    var from = now.withDayOfYear(1);
+    var index = PositionIndex.of(current, transactions, from, now);
+    for(var date = from; !date.isAfter(now); date = date.plusDays(1)) {
+      assertSamePosition(ReportingService.revert(current, transactions, date, now), index.positionAt(date));
+    }
+  }
+
+  @Test
+  public void positionAt_transactionInTheFuture() {
+    var current = new Position(bd(200));
+    var transactions = List.of(new Transaction(DEPOSIT, now.minusDays(10), bd(100), null, ZERO),
+        new Transaction(DEPOSIT, now.plusDays(1), bd(50), null, ZERO));
+    var index = PositionIndex.of(current, transactions, now.withDayOfYear(1), now);
+    assertSamePosition(current, index.positionAt(now.withDayOfYear(1)));
+  }
+
+  @Test
+  public void positionAt_outOfRange() {
+    var index = PositionIndex.of(new Position(bd(200)), List.of(), now.withDayOfMonth(1), now);
+    assertThrows(IllegalArgumentException.class, () -> index.positionAt(now.withDayOfMonth(1).minusDays(1)));
+    assertThrows(IllegalArgumentException.class, () -> index.positionAt(now.plusDays(1)));
+  }
+
+  @Test
+  public void positionAt_doesNotModifyPosition() {
+    var current = new Position(bd(200)).quantity(GOOGL, bd(3));
+    var index = PositionIndex.of(current, List.of(new Transaction(BUY, now, bd(100), GOOGL, bd(3))), now.withDayOfYear(1), now);
+    current.cash(bd(1));
+    assertEquals(bd(300), index.positionAt(now).cash());
+    assertEquals(bd(200), index.position().cash());
+  }
+
+  @Test
+  public void calculateReturnOnInvestmentYTD() {
+    var random = new Random(0);
+    for(var i = 0; i < 100; i++) {
+      var current = new Position(bd(random.nextInt(100_000))).quantity(GOOGL, bd(random.nextInt(100)));
+      var transactions = randomTransactions(random, random.nextInt(50));
+      var index = reportingService.positionIndex(current, transactions);
+      assertEquals(reportingService.calculateReturnOnInvestmentYTD(current, transactions),
+          reportingService.calculateReturnOnInvestmentYTD(index));
+    }
+  }
+
+  @Test
+  public void calculateReturnOnInvestmentYTD_indexTooShort() {
+    var index = PositionIndex.of(new Position(bd(200)), List.of(), now.withDayOfMonth(1), now);
+    assertThrows(IllegalArgumentException.class, () -> reportingService.calculateReturnOnInvestmentYTD(index));
+  }
+}
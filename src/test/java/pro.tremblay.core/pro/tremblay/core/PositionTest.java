@@ -0,0 +1,159 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import static java.math.BigDecimal.ZERO;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static pro.tremblay.core.BigDecimalUtil.bd;
+
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings("static-method")
+public class PositionTest {
+  @Test
+  public void cash() {
+    var position = new Position(bd(10));
+    assertEquals(bd(10), position.cash());
+    assertEquals(bd(20), position.cash(bd(20)).cash());
+  }
+
+  @Test
+  public void quantityNotHeld() {
+    assertEquals(ZERO, new Position(bd(10)).quantity(Security.GOOGL));
+  }
+
+  @Test
+  public void quantity() {
+    var position = new Position(bd(10))
+        .quantity(Security.APPL, bd(3))
+        .quantity(Security.IBM, bd(5));
+    assertEquals(bd(3), position.quantity(Security.APPL));
+    assertEquals(ZERO, position.quantity(Security.GOOGL));
+    assertEquals(bd(5), position.quantity(Security.IBM));
+    assertEquals(bd(7), position.quantity(Security.APPL, bd(7)).quantity(Security.APPL));
+  }
+
+  @Test
+  public void quantityManySecurities() {
+    var securities = new ArrayList<Security>();
+    for(var i = 0; i < 100; i++) {
+      securities.add(Security.of("PositionTest.quantityManySecurities" + i));
+    }
+    var position = new Position(bd(10));
+    for(var i = 0; i < securities.size(); i++) {
+      position.quantity(securities.get(i), bd(i));
+    }
+    for(var i = 0; i < securities.size(); i++) {
+      assertEquals(bd(i), position.quantity(securities.get(i)));
+    }
+    assertEquals(ZERO, position.quantity(Security.APPL));
+  }
+
+  @Test
+  public void duplicate() {
+    var position = new Position(bd(10)).quantity(Security.APPL, bd(3));
+    var duplicate = position.duplicate();
+    duplicate.cash(bd(20)).quantity(Security.APPL, bd(4)).quantity(Security.IBM, bd(1));
+    assertEquals(bd(10), position.cash());
+    assertEquals(bd(3), position.quantity(Security.APPL));
+    assertEquals(ZERO, position.quantity(Security.IBM));
+    assertEquals(bd(4), duplicate.quantity(Security.APPL));
+  }
+
+  @Test
+  public void duplicateModifyOriginal() {
+    var position = new Position(bd(10)).quantity(Security.APPL, bd(3));
+    var duplicate = position.duplicate();
+    position.quantity(Security.APPL, bd(4)).quantity(Security.GOOGL, bd(2));
+    assertEquals(bd(3), duplicate.quantity(Security.APPL));
+    assertEquals(ZERO, duplicate.quantity(Security.GOOGL));
+    assertEquals(bd(4), position.quantity(Security.APPL));
+  }
+
+  @Test
+  public void duplicateOfDuplicate() {
+    var position = new Position(bd(10)).quantity(Security.APPL, bd(1));
+    var duplicate1 = position.duplicate();
+    var duplicate2 = duplicate1.duplicate();
+    duplicate1.quantity(Security.APPL, bd(2));
+    duplicate2.quantity(Security.APPL, bd(3));
+    assertEquals(bd(1), position.quantity(Security.APPL));
+    assertEquals(bd(2), duplicate1.quantity(Security.APPL));
+    assertEquals(bd(3), duplicate2.quantity(Security.APPL));
+  }
+
+  @Test
+  public void duplicateConcurrently() throws InterruptedException {
+    var position = new Position(bd(10)).quantity(Security.APPL, bd(1));
+    var duplicates = new Position[8];
+    var threads = new Thread[duplicates.length];
+    for(var i = 0; i < threads.length; i++) {
+      var index = i;
+      threads[i] = new Thread(() -> duplicates[index] = position.duplicate().quantity(Security.APPL, bd(index)));
+      threads[i].start();
+    }
+    for(var thread: threads) {
+      thread.join();
+    }
+    position.quantity(Security.IBM, bd(2));
+    for(var i = 0; i < duplicates.length; i++) {
+      assertEquals(bd(i), duplicates[i].quantity(Security.APPL));
+      assertEquals(ZERO, duplicates[i].quantity(Security.IBM));
+    }
+    assertEquals(bd(1), position.quantity(Security.APPL));
+  }
+
+  @Test
+  public void dailySnapshots() {
+    var securities = new ArrayList<Security>();
+    for(var i = 0; i < 40; i++) {
+      securities.add(Security.of("PositionTest.dailySnapshots" + i));
+    }
+    var position = new Position(bd(0));
+    var snapshots = new ArrayList<Position>();
+    for(var day = 0; day < 365; day++) {
+      // the position grows, so the table is rehashed while shared
+      position.quantity(securities.get(day % securities.size()), bd(day));
+      snapshots.add(position.duplicate());
+    }
+    for(var day = 0; day < 365; day++) {
+      var snapshot = snapshots.get(day);
+      for(var i = 0; i < securities.size(); i++) {
+        var lastDay = day - Math.floorMod(day - i, securities.size());
+        var expected = (lastDay < 0)? ZERO: bd(lastDay);
+        assertEquals(expected, snapshot.quantity(securities.get(i)));
+      }
+    }
+  }
+
+  @Test
+  public void nullValues() {
+    var position = new Position(bd(10));
+    assertThrows(NullPointerException.class, () -> new Position(null));
+    assertThrows(NullPointerException.class, () -> position.cash(null));
+    assertThrows(NullPointerException.class, () -> position.quantity(null));
+    assertThrows(NullPointerException.class, () -> position.quantity(Security.APPL, null));
+  }
+
+  @Test
+  public void testToString() {
+    var position = new Position(bd(10)).quantity(Security.IBM, bd(5)).quantity(Security.APPL, bd(3));
+    assertEquals("Position{cash=10, quantities=[APPL: 3, IBM: 5]}", position.toString());
+  }
+}
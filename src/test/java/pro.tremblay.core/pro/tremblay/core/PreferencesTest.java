@@ -20,6 +20,9 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -85,4 +88,76 @@ public class PreferencesTest {
     var preferences = this.preferences.or(Preferences.of(key, 123));
     assertEquals(123, preferences.get(key).orElseThrow());
   }
+
+  @Test
+  public void compile() {
+    var key = new Key<>("a_property", Integer.class, Integer::parseInt);
+    var other = new Key<>("another_property", String.class, identity());
+    var preferences = this.preferences.compile(key);
+    assertEquals(123, preferences.get(key).orElseThrow());
+    assertEquals("text", preferences.get(other).orElseThrow());
+  }
+
+  @Test
+  public void compile_decodeOnce() {
+    var counter = new AtomicInteger();
+    var key = new Key<>("a_property", Integer.class, value -> {
+      counter.incrementAndGet();
+      return Integer.parseInt(value);
+    });
+    var preferences = this.preferences.compile(key);
+    for(var i = 0; i < 10; i++) {
+      assertEquals(123, preferences.get(key).orElseThrow());
+    }
+    assertEquals(1, counter.get());
+  }
+
+  @Test
+  public void compile_unknownPreference() {
+    var key = new Key<>("aaa", String.class, identity());
+    assertTrue(preferences.compile(key).get(key).isEmpty());
+  }
+
+  @Test
+  public void compile_chain() {
+    var key = new Key<>("a", Integer.class, Integer::parseInt);
+    var preferences = this.preferences.or(Preferences.of(key, 42)).compile(key, Preferences.LENGTH_OF_YEAR);
+    assertEquals(42, preferences.get(key).orElseThrow());
+    assertTrue(preferences.get(Preferences.LENGTH_OF_YEAR).isEmpty());
+  }
+
+  @Test
+  public void compile_refresh() {
+    var key = new Key<>("a_property", Integer.class, Integer::parseInt);
+    var preferences = this.preferences.compile(key);
+    System.setProperty("a_property", "456");
+    assertEquals(123, preferences.get(key).orElseThrow());
+    preferences.refresh();
+    assertEquals(456, preferences.get(key).orElseThrow());
+  }
+
+  @Test
+  public void compile_refreshInvalidValue() {
+    var key = new Key<>("a_property", Integer.class, Integer::parseInt);
+    var preferences = this.preferences.compile(key);
+    System.setProperty("a_property", "not a number");
+    assertThrows(NumberFormatException.class, preferences::refresh);
+    assertEquals(123, preferences.get(key).orElseThrow());
+  }
+
+  @Test
+  public void compile_sameKeyTwice() {
+    var key = new Key<>("a_property", Integer.class, Integer::parseInt);
+    assertEquals(123, preferences.compile(key, key).get(key).orElseThrow());
+  }
+
+  @Test
+  public void compile_keysWithTheSameComponents() {
+    Function<String, String> decoder = identity();
+    var key1 = new Key<>("a", String.class, decoder);
+    var key2 = new Key<>("a", String.class, decoder);
+    var preferences = Preferences.of(key1, "foo").compile(key1, key2);
+    assertEquals("foo", preferences.get(key1).orElseThrow());
+    assertTrue(preferences.get(key2).isEmpty());
+  }
 }
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings("static-method")
+public class PriceCacheTest {
+  private static final LocalDate FIRST_DATE = LocalDate.of(2000, 1, 1);
+
+  /**
+   * A source with a price for every day of 20 years, the price encodes the security and the date.
+   */
+  private static final class CountingSource implements PriceSource {
+    private final AtomicInteger loads = new AtomicInteger();
+
+    static long price(int id, long epochDay) {
+      return id * 1_000_000L + epochDay;
+    }
+
+    @Override
+    public int priceScale() {
+      return 0;
+    }
+
+    @Override
+    public LocalDate firstDate() {
+      return FIRST_DATE;
+    }
+
+    @Override
+    public LocalDate lastDate() {
+      return FIRST_DATE.plusYears(20);
+    }
+
+    @Override
+    public boolean hasPrices(Security security) {
+      return security != Security.GOOGL;
+    }
+
+    @Override
+    public void load(Security security, LocalDate from, long[] prices) {
+      loads.incrementAndGet();
+      for(var i = 0; i < prices.length; i++) {
+        prices[i] = price(security.id(), from.toEpochDay() + i);
+      }
+    }
+  }
+
+  private static long price(int id, int day) {
+    return CountingSource.price(id, FIRST_DATE.toEpochDay() + day);
+  }
+
+  @Test
+  public void price() {
+    var source = new CountingSource();
+    var cache = new PriceCache(source, 1_024);
+    assertEquals(price(Security.IBM.id(), 0), cache.price(Security.IBM.id(), 0));
+    assertEquals(price(Security.IBM.id(), 1_000), cache.price(Security.IBM.id(), 1_000));
+    assertEquals(price(Security.APPL.id(), 1_000), cache.price(Security.APPL.id(), 1_000));
+    assertEquals(3, source.loads.get());
+  }
+
+  @Test
+  public void pricesOfTheWindowArePrefetched() {
+    var source = new CountingSource();
+    var cache = new PriceCache(source, 1_024);
+    for(var day = 64; day < 64 + PriceCache.WINDOW_DAYS; day++) {
+      assertEquals(price(Security.IBM.id(), day), cache.price(Security.IBM.id(), day));
+    }
+    assertEquals(1, source.loads.get());
+    assertEquals(1, cache.misses());
+    assertEquals(PriceCache.WINDOW_DAYS - 1, cache.hits());
+  }
+
+  @Test
+  public void prices() {
+    var cache = new PriceCache(new CountingSource(), 1_024);
+    var prices = new long[100];
+    cache.prices(Security.APPL.id(), 20, prices, 0, 100);
+    for(var i = 0; i < prices.length; i++) {
+      assertEquals(price(Security.APPL.id(), 20 + i), prices[i]);
+    }
+  }
+
+  @Test
+  public void hasColumn() {
+    var cache = new PriceCache(new CountingSource(), 1_024);
+    assertTrue(cache.hasColumn(Security.IBM.id()));
+    assertFalse(cache.hasColumn(Security.GOOGL.id()));
+    assertFalse(cache.hasColumn(Security.securities().size()));
+  }
+
+  @Test
+  public void getScaledPricesOfAnArrayLongerThanTheRegistry() {
+    var priceService = PriceService.create(new CountingSource(), 1_024);
+    var size = Security.securities().size();
+    var prices = new long[size + 10];
+    priceService.getScaledPrices(FIRST_DATE.plusDays(10), prices);
+    assertEquals(price(Security.IBM.id(), 10), prices[Security.IBM.id()]);
+    for(var id = size; id < prices.length; id++) {
+      assertEquals(PriceService.NO_PRICE, prices[id]);
+    }
+  }
+
+  @Test
+  public void sizeIsBounded() {
+    var cache = new PriceCache(new CountingSource(), 16 * PriceCache.WINDOW_DAYS);
+    for(var day = 0; day < 7_000; day++) {
+      assertEquals(price(Security.IBM.id(), day), cache.price(Security.IBM.id(), day));
+    }
+    assertTrue(cache.size() <= 16);
+    assertNotEquals(0, cache.evictions());
+  }
+
+  @Test
+  public void frequentWindowsSurviveAScan() {
+    var source = new CountingSource();
+    var cache = new PriceCache(source, 1_024 * PriceCache.WINDOW_DAYS);
+    var id = Security.IBM.id();
+    for(var i = 0; i < 10; i++) {
+      for(var window = 0; window < 100; window++) {
+        cache.price(id, window * PriceCache.WINDOW_DAYS);
+      }
+    }
+    // a scan of the windows of another security, each one requested once
+    for(var day = 0; day < 7_000; day += PriceCache.WINDOW_DAYS) {
+      cache.price(Security.APPL.id(), day);
+    }
+    var loads = source.loads.get();
+    for(var window = 0; window < 100; window++) {
+      cache.price(id, window * PriceCache.WINDOW_DAYS);
+    }
+    assertEquals(loads, source.loads.get());
+  }
+
+  @Test
+  public void cacheStats() {
+    var priceService = PriceService.create(new CountingSource(), 1_024);
+    assertEquals(new PriceService.CacheStats(0, 0, 0), priceService.cacheStats());
+    assertEquals(0.0, priceService.cacheStats().hitRate());
+    var date = FIRST_DATE.plusDays(10);
+    priceService.getScaledPrice(date, Security.IBM);
+    priceService.withMetrics(Metrics.create()).getScaledPrice(date.plusDays(1), Security.IBM);
+    priceService.getScaledPrice(date.plusDays(2), Security.IBM);
+    priceService.getScaledPrice(date.plusDays(3), Security.IBM);
+    assertEquals(new PriceService.CacheStats(3, 1, 0), priceService.cacheStats());
+    assertEquals(0.75, priceService.cacheStats().hitRate());
+  }
+
+  @Test
+  public void sizeIsAPowerOfTwo() {
+    var cache = new PriceCache(new CountingSource(), 100 * PriceCache.WINDOW_DAYS);
+    for(var day = 0; day < 7_000; day++) {
+      cache.price(Security.IBM.id(), day);
+      cache.price(Security.APPL.id(), day);
+    }
+    assertEquals(64, cache.size());
+  }
+
+  @Test
+  public void smallerThanABucket() {
+    var cache = new PriceCache(new CountingSource(), 2 * PriceCache.WINDOW_DAYS);
+    for(var day = 0; day < 1_000; day++) {
+      assertEquals(price(Security.IBM.id(), day), cache.price(Security.IBM.id(), day));
+    }
+    assertTrue(cache.size() <= 2);
+  }
+
+  @Test
+  public void maximumSizeTooSmall() {
+    assertThrows(IllegalArgumentException.class, () -> new PriceCache(new CountingSource(), PriceCache.WINDOW_DAYS - 1));
+  }
+
+  @Test
+  public void concurrentLookups() throws InterruptedException, ExecutionException {
+    var cache = new PriceCache(new CountingSource(), 64 * PriceCache.WINDOW_DAYS);
+    var executor = Executors.newFixedThreadPool(4);
+    try {
+      var tasks = new ArrayList<Callable<Void>>();
+      for(var t = 0; t < 4; t++) {
+        var seed = t;
+        tasks.add(() -> {
+          for(var i = 0; i < 20_000; i++) {
+            var id = (i + seed) % 2 == 0? Security.IBM.id(): Security.APPL.id();
+            var day = (i * 31 + seed * 7) % 5_000;
+            assertEquals(price(id, day), cache.price(id, day));
+          }
+          return null;
+        });
+      }
+      for(var future: executor.invokeAll(tasks)) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertTrue(cache.size() <= 64);
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class PriceFileTest {
+  private final LocalDate now = LocalDate.of(2020, 3, 15);
+  private final PriceService priceService = PriceService.createARandomPriceService(new DateService(() -> now));
+  private final Path path;
+
+  public PriceFileTest() throws IOException {
+    path = Files.createTempFile("prices", ".bin");
+  }
+
+  @AfterEach
+  public void after() throws IOException {
+    Files.deleteIfExists(path);
+  }
+
+  @Test
+  public void writeAndMap() throws IOException {
+    PriceFile.write(priceService, now.withDayOfYear(1), now, path);
+    var mapped = PriceService.createAMappedPriceService(path);
+
+    assertEquals(priceService.priceScale(), mapped.priceScale());
+    for(var date = now.withDayOfYear(1); !date.isAfter(now); date = date.plusDays(1)) {
+      for(var security: Security.securities()) {
+        assertEquals(priceService.getPrice(date, security), mapped.getPrice(date, security));
+      }
+    }
+  }
+
+  @Test
+  public void map_noCache() throws IOException {
+    PriceFile.write(priceService, now.withDayOfYear(1), now, path);
+    var mapped = PriceService.createAMappedPriceService(path);
+
+    mapped.getPrice(now, Security.IBM);
+    assertEquals(new PriceService.CacheStats(0, 0, 0), mapped.cacheStats());
+  }
+
+  @Test
+  public void writeAndMap_missingPrices() throws IOException {
+    var from = now.withDayOfYear(1).minusDays(5);
+    PriceFile.write(priceService, from, now.plusDays(5), path);
+    var mapped = PriceService.createAMappedPriceService(path);
+
+    assertThrows(IllegalArgumentException.class, () -> mapped.getPrice(from, Security.APPL));
+    assertThrows(IllegalArgumentException.class, () -> mapped.getPrice(now.plusDays(1), Security.APPL));
+    assertThrows(IllegalArgumentException.class, () -> mapped.getPrice(now.plusDays(6), Security.APPL));
+    assertEquals(priceService.getPrice(now, Security.APPL), mapped.getPrice(now, Security.APPL));
+  }
+
+  @Test
+  public void map_registersUnknownSecurities() throws IOException {
+    PriceFile.write(priceService, now.withDayOfYear(1), now, path);
+    var bytes = Files.readAllBytes(path);
+    // the name of the first security, APPL -> ZPFT
+    System.arraycopy("ZPFT".getBytes(StandardCharsets.UTF_8), 0, bytes, 32 + 2, 4);
+    Files.write(path, bytes);
+    assertTrue(Security.lookup("ZPFT").isEmpty());
+
+    var mapped = PriceService.createAMappedPriceService(path);
+
+    var security = Security.lookup("ZPFT").orElseThrow();
+    assertEquals(priceService.getPrice(now, Security.APPL), mapped.getPrice(now, security));
+    assertThrows(IllegalArgumentException.class, () -> mapped.getPrice(now, Security.APPL));
+  }
+
+  @Test
+  public void write_tooLarge() {
+    // at least 3 securities * 36 million days * 8 bytes
+    assertThrows(IllegalArgumentException.class, () -> PriceFile.write(priceService, now.minusYears(100_000), now, path));
+  }
+
+  @Test
+  public void map_negativeNameLength() throws IOException {
+    PriceFile.write(priceService, now.withDayOfYear(1), now, path);
+    var bytes = Files.readAllBytes(path);
+    bytes[32] = (byte) 0xFF;  // the length of the name of the first security -> negative
+    Files.write(path, bytes);
+    assertThrows(IOException.class, () -> PriceService.createAMappedPriceService(path));
+  }
+
+  @Test
+  public void map_notAPriceFile() throws IOException {
+    Files.write(path, new byte[64]);
+    assertThrows(IOException.class, () -> PriceService.createAMappedPriceService(path));
+  }
+
+  @Test
+  public void map_truncatedFile() throws IOException {
+    PriceFile.write(priceService, now.withDayOfYear(1), now, path);
+    var bytes = Files.readAllBytes(path);
+    Files.write(path, Arrays.copyOf(bytes, bytes.length - 8));
+    assertThrows(IOException.class, () -> PriceService.createAMappedPriceService(path));
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings("static-method")
+public class PriceServiceTest {
+  private final LocalDate now = LocalDate.of(2020, 3, 15);
+  private final PriceService priceService = PriceService.createARandomPriceService(new DateService(() -> now));
+
+  // the initial implementation, prices stored in a hash map
+  private static HashMap<String, BigDecimal> referencePrices(LocalDate now) {
+    var random = new Random(0);
+    var prices = new HashMap<String, BigDecimal>();
+    for (var security : Security.securities()) {
+      var start = now.withDayOfYear(1);
+      var price = BigDecimal.valueOf(100 + random.nextInt(200));
+      while (!start.isAfter(now)) {
+        var tick = BigDecimal.valueOf(random.nextGaussian()).setScale(2, RoundingMode.HALF_UP);
+        prices.put(start + "#" + security, price.add(tick));
+        start = start.plusDays(1);
+      }
+    }
+    return prices;
+  }
+
+  @Test
+  public void getPrice() {
+    var referencePrices = referencePrices(now);
+    for(var date = now.withDayOfYear(1); !date.isAfter(now); date = date.plusDays(1)) {
+      for(var security: Security.securities()) {
+        assertEquals(referencePrices.get(date + "#" + security), priceService.getPrice(date, security));
+      }
+    }
+  }
+
+  @Test
+  public void getScaledPrice() {
+    var date = now.minusDays(3);
+    var price = priceService.getPrice(date, Security.IBM);
+    assertEquals(price, BigDecimal.valueOf(priceService.getScaledPrice(date, Security.IBM), priceService.priceScale()));
+  }
+
+  @Test
+  public void getPrice_beforeBeginningOfYear() {
+    assertThrows(IllegalArgumentException.class, () -> priceService.getPrice(now.withDayOfYear(1).minusDays(1), Security.APPL));
+  }
+
+  @Test
+  public void getPrice_inTheFuture() {
+    assertThrows(IllegalArgumentException.class, () -> priceService.getPrice(now.plusDays(1), Security.APPL));
+  }
+
+  @Test
+  public void getPrice_securityCreatedAfterTheService() {
+    var service = PriceService.createARandomPriceService(new DateService(() -> now));
+    var security = Security.of("PriceServiceTest_late");
+    assertThrows(IllegalArgumentException.class, () -> service.getPrice(now, security));
+  }
+
+  @Test
+  public void withMetrics() {
+    var metrics = Metrics.create();
+    var service = priceService.withMetrics(metrics);
+    assertEquals(priceService.getPrice(now, Security.IBM), service.getPrice(now, Security.IBM));
+    assertThrows(IllegalArgumentException.class, () -> service.getPrice(now.plusDays(1), Security.IBM));
+    assertEquals(2, metrics.counter("price.lookups").sum());
+    assertEquals(1, metrics.counter("price.misses").sum());
+  }
+
+  @Test
+  public void getScaledPrices() {
+    var date = now.minusDays(10);
+    var prices = new long[Security.securities().size()];
+    assertEquals(prices.length, priceService.getScaledPrices(date, prices));
+    for(var security: Security.securities()) {
+      assertEquals(priceService.getScaledPrice(date, security), prices[security.id()]);
+    }
+  }
+
+  @Test
+  public void getPrices() {
+    var prices = new BigDecimal[Security.securities().size()];
+    assertEquals(prices.length, priceService.getPrices(now, prices));
+    for(var security: Security.securities()) {
+      assertEquals(priceService.getPrice(now, security), prices[security.id()]);
+    }
+  }
+
+  @Test
+  public void getPrices_inTheFuture() {
+    var prices = new BigDecimal[Security.securities().size()];
+    assertEquals(0, priceService.getPrices(now.plusDays(1), prices));
+    assertArrayEquals(new BigDecimal[prices.length], prices);
+  }
+
+  @Test
+  public void getScaledPrices_range() {
+    var from = now.minusDays(5);
+    var prices = new long[10];
+    assertEquals(6, priceService.getScaledPrices(Security.IBM, from, prices));
+    for(var i = 0; i < 6; i++) {
+      assertEquals(priceService.getScaledPrice(from.plusDays(i), Security.IBM), prices[i]);
+    }
+    for(var i = 6; i < prices.length; i++) {
+      assertEquals(PriceService.NO_PRICE, prices[i]);
+    }
+  }
+
+  @Test
+  public void getScaledPrices_rangeBeforeBeginningOfYear() {
+    var beginningOfYear = now.withDayOfYear(1);
+    var prices = new long[5];
+    assertEquals(3, priceService.getScaledPrices(Security.APPL, beginningOfYear.minusDays(2), prices));
+    assertEquals(PriceService.NO_PRICE, prices[0]);
+    assertEquals(PriceService.NO_PRICE, prices[1]);
+    for(var i = 2; i < prices.length; i++) {
+      assertEquals(priceService.getScaledPrice(beginningOfYear.plusDays(i - 2), Security.APPL), prices[i]);
+    }
+  }
+
+  @Test
+  public void getPrices_range() {
+    var from = now.minusDays(1);
+    var prices = new BigDecimal[3];
+    assertEquals(2, priceService.getPrices(Security.GOOGL, from, prices));
+    assertEquals(priceService.getPrice(from, Security.GOOGL), prices[0]);
+    assertEquals(priceService.getPrice(now, Security.GOOGL), prices[1]);
+    assertNull(prices[2]);
+  }
+
+  @Test
+  public void getScaledPrices_matrix() {
+    var securities = List.of(Security.IBM, Security.APPL);
+    var dates = List.of(now, now.plusDays(1), now.withDayOfYear(1));
+    var prices = new long[securities.size() * dates.size()];
+    assertEquals(4, priceService.getScaledPrices(securities, dates, prices));
+    assertArrayEquals(new long[] {
+        priceService.getScaledPrice(now, Security.IBM), PriceService.NO_PRICE, priceService.getScaledPrice(now.withDayOfYear(1), Security.IBM),
+        priceService.getScaledPrice(now, Security.APPL), PriceService.NO_PRICE, priceService.getScaledPrice(now.withDayOfYear(1), Security.APPL)
+    }, prices);
+  }
+
+  @Test
+  public void getPrices_matrix() {
+    var securities = List.of(Security.GOOGL);
+    var dates = List.of(now.minusDays(2), now);
+    var prices = new BigDecimal[2];
+    assertEquals(2, priceService.getPrices(securities, dates, prices));
+    assertArrayEquals(new BigDecimal[] { priceService.getPrice(now.minusDays(2), Security.GOOGL), priceService.getPrice(now, Security.GOOGL) }, prices);
+  }
+
+  @Test
+  public void getScaledPrices_matrixTooSmall() {
+    assertThrows(IllegalArgumentException.class, () -> priceService.getScaledPrices(List.of(Security.IBM, Security.APPL), List.of(now), new long[1]));
+    assertThrows(IllegalArgumentException.class, () -> priceService.getPrices(List.of(Security.IBM), List.of(now, now), new BigDecimal[1]));
+  }
+
+  @Test
+  public void getScaledPrices_withMetrics() {
+    var metrics = Metrics.create();
+    var service = priceService.withMetrics(metrics);
+    var prices = new long[4];
+    Arrays.fill(prices, 42);
+    assertEquals(2, service.getScaledPrices(Security.IBM, now.minusDays(1), prices));
+    assertEquals(4, metrics.counter("price.lookups").sum());
+    assertEquals(2, metrics.counter("price.misses").sum());
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings("static-method")
+public class RandomPricesTest {
+  // the prices of the eager implementation, one column per security in id order
+  private static long[][] referencePrices(int securityCount, int dayCount) {
+    var random = new Random(0);
+    var prices = new long[securityCount][dayCount];
+    for(var id = 0; id < securityCount; id++) {
+      var price = (100 + random.nextInt(200)) * 100L;
+      for(var day = 0; day < dayCount; day++) {
+        var tick = BigDecimal.valueOf(random.nextGaussian()).setScale(2, RoundingMode.HALF_UP);
+        prices[id][day] = price + tick.unscaledValue().longValueExact();
+      }
+    }
+    return prices;
+  }
+
+  @Test
+  public void generator() {
+    var random = new Random(0);
+    var generator = new RandomPrices.Generator(0);
+    for(var i = 0; i < 10_000; i++) {
+      assertEquals(random.nextInt(200), generator.nextInt(200));
+      assertEquals(random.nextInt(64), generator.nextInt(64));
+      assertEquals(random.nextDouble(), generator.nextDouble());
+      assertEquals(random.nextGaussian(), generator.nextGaussian());
+    }
+  }
+
+  @Test
+  public void generatorSkipGaussians() {
+    for(var count = 0; count < 10; count++) {
+      var random = new Random(0);
+      var generator = new RandomPrices.Generator(0);
+      random.nextGaussian();
+      generator.nextGaussian();
+      for(var i = 0; i < count; i++) {
+        random.nextGaussian();
+      }
+      generator.skipGaussians(count);
+      assertEquals(random.nextGaussian(), generator.nextGaussian());
+      assertEquals(random.nextGaussian(), generator.nextGaussian());
+    }
+  }
+
+  @Test
+  public void load() {
+    // an odd number of days, a gaussian is shared by two columns
+    var now = LocalDate.of(2020, 3, 15);
+    var reference = referencePrices(5, now.getDayOfYear());
+    var source = new RandomPrices(now, 5);
+    var column = new long[now.getDayOfYear()];
+    for(var id = 4; id >= 0; id--) {
+      source.load(Security.byId(id), now.withDayOfYear(1), column);
+      assertArrayEquals(reference[id], column);
+    }
+  }
+
+  @Test
+  public void loadWindow() {
+    var now = LocalDate.of(2020, 12, 31);
+    var reference = referencePrices(3, 366);
+    var source = new RandomPrices(now, 3);
+    var prices = new long[10];
+    source.load(Security.byId(2), now.withDayOfYear(101), prices);
+    assertArrayEquals(Arrays.copyOfRange(reference[2], 100, 110), prices);
+    source.load(Security.byId(0), now.withDayOfYear(1).minusDays(5), prices);
+    for(var i = 0; i < 5; i++) {
+      assertEquals(PriceService.NO_PRICE, prices[i]);
+      assertEquals(reference[0][i], prices[5 + i]);
+    }
+    source.load(Security.byId(1), now.minusDays(1), prices);
+    assertEquals(reference[1][364], prices[0]);
+    assertEquals(reference[1][365], prices[1]);
+    assertEquals(PriceService.NO_PRICE, prices[2]);
+  }
+
+  @Test
+  public void dates() {
+    var source = new RandomPrices(LocalDate.of(2020, 3, 15), 3);
+    assertEquals(LocalDate.of(2020, 1, 1), source.firstDate());
+    assertEquals(LocalDate.of(2020, 3, 15), source.lastDate());
+    assertEquals(2, source.priceScale());
+  }
+
+  @Test
+  public void hasPrices() {
+    var source = new RandomPrices(LocalDate.of(2020, 3, 15), 2);
+    assertTrue(source.hasPrices(Security.byId(1)));
+    assertFalse(source.hasPrices(Security.byId(2)));
+  }
+
+  @Test
+  public void invalidSecurityCount() {
+    assertThrows(IllegalArgumentException.class, () -> new RandomPrices(LocalDate.of(2020, 3, 15), -1));
+  }
+
+  @Test
+  public void provider() {
+    var provider = PriceSource.provider("random");
+    assertEquals("random", provider.name());
+    var now = LocalDate.of(2020, 3, 15);
+    var source = provider.create(new DateService(() -> now));
+    assertEquals(now, source.lastDate());
+  }
+}
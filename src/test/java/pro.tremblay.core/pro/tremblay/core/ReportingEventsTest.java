@@ -0,0 +1,124 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import static java.math.BigDecimal.ZERO;
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static pro.tremblay.core.BigDecimalUtil.bd;
+import static pro.tremblay.core.Preferences.ARITHMETIC;
+import static pro.tremblay.core.Preferences.LENGTH_OF_YEAR;
+import static pro.tremblay.core.Security.GOOGL;
+import static pro.tremblay.core.TransactionType.BUY;
+import static pro.tremblay.core.TransactionType.DEPOSIT;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.jupiter.api.Test;
+
+public class ReportingEventsTest {
+  private final Preferences preferences = Preferences.of(LENGTH_OF_YEAR, 360);
+  private final DateService dateService = new DateService(() -> LocalDate.of(2020, 5, 20));
+  private final PriceService priceService = PriceService.createARandomPriceService(dateService);
+
+  private static List<RecordedEvent> record(Runnable runnable) throws IOException {
+    try(var recording = new Recording()) {
+      for(var name: List.of("Prices", "Revert", "Valuation", "Annualization")) {
+        recording.enable("pro.tremblay.core." + name).withThreshold(Duration.ZERO);
+      }
+      recording.start();
+      runnable.run();
+      recording.stop();
+      var path = Files.createTempFile("reporting", ".jfr");
+      try {
+        recording.dump(path);
+        return RecordingFile.readAllEvents(path).stream()
+            .filter(event -> event.getEventType().getName().startsWith("pro.tremblay.core."))
+            .collect(toList());
+      } finally {
+        Files.delete(path);
+      }
+    }
+  }
+
+  private static List<RecordedEvent> events(List<RecordedEvent> events, String name) {
+    return events.stream().filter(event -> event.getEventType().getName().equals("pro.tremblay.core." + name)).collect(toList());
+  }
+
+  @Test
+  public void phases() throws IOException {
+    var now = dateService.currentDate();
+    var current = new Position(bd(200)).quantity(GOOGL, bd(5));
+    var transactions = List.of(
+        new Transaction(DEPOSIT, now, bd(100), null, ZERO),
+        new Transaction(BUY, now, bd(10), GOOGL, bd(1)),
+        new Transaction(DEPOSIT, now.withDayOfYear(1).minusDays(1), bd(10), null, ZERO));
+    for(var arithmetic: Arithmetic.values()) {
+      var reportingService = new ReportingService(preferences.or(Preferences.of(ARITHMETIC, arithmetic)), priceService, dateService);
+
+      var events = record(() -> reportingService.calculateReturnOnInvestmentYTD(current, transactions));
+
+      var prices = events(events, "Prices");
+      assertEquals(1, prices.size());
+      assertEquals(now.withDayOfYear(1) + "," + now, prices.get(0).getString("dates"));
+      assertEquals(1, prices.get(0).getInt("securities"));
+
+      var revert = events(events, "Revert");
+      assertEquals(1, revert.size());
+      assertEquals(3, revert.get(0).getInt("transactions"));
+      assertEquals(2, revert.get(0).getInt("reverted"));
+      assertEquals(now.getDayOfYear(), revert.get(0).getInt("periodDays"));
+      assertEquals(arithmetic.name(), revert.get(0).getString("arithmetic"));
+
+      var valuation = events(events, "Valuation");
+      if (arithmetic == Arithmetic.BIG_DECIMAL) {
+        assertEquals(List.of("initial", "current"), valuation.stream().map(event -> event.getString("phase")).collect(toList()));
+        assertEquals(1, valuation.get(1).getInt("securities"));
+      } else {
+        // the fixed point arithmetic values the position while reverting the transactions
+        assertEquals(List.of(), valuation);
+      }
+
+      var annualization = events(events, "Annualization");
+      assertEquals(1, annualization.size());
+      assertEquals(360, annualization.get(0).getInt("yearLength"));
+      assertEquals(now.getDayOfYear(), annualization.get(0).getInt("days"));
+    }
+  }
+
+  @Test
+  public void transactionInTheFuture() throws IOException {
+    var reportingService = new ReportingService(preferences, priceService, dateService);
+    var now = dateService.currentDate();
+    var transactions = List.of(
+        new Transaction(DEPOSIT, now, bd(100), null, ZERO),
+        new Transaction(DEPOSIT, now.plusDays(1), bd(100), null, ZERO));
+
+    var events = record(() -> reportingService.calculateReturnOnInvestmentYTD(new Position(bd(200)), transactions));
+
+    var revert = events(events, "Revert");
+    assertEquals(1, revert.size());
+    assertEquals(0, revert.get(0).getInt("reverted"));
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import static java.math.BigDecimal.ZERO;
+import static java.math.RoundingMode.HALF_UP;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static pro.tremblay.core.BigDecimalUtil.bd;
+import static pro.tremblay.core.Preferences.LENGTH_OF_YEAR;
+import static pro.tremblay.core.ReportingPeriod.MONTH_TO_DATE;
+import static pro.tremblay.core.ReportingPeriod.QUARTER_TO_DATE;
+import static pro.tremblay.core.ReportingPeriod.YEAR_TO_DATE;
+import static pro.tremblay.core.ReportingPeriod.trailingDays;
+import static pro.tremblay.core.Security.GOOGL;
+import static pro.tremblay.core.TransactionType.BUY;
+import static pro.tremblay.core.TransactionType.DEPOSIT;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class ReportingPeriodTest {
+  private final LocalDate now = LocalDate.of(2020, 8, 20);
+  private final DateService dateService = new DateService(() -> now);
+  private final PriceService priceService = PriceService.createARandomPriceService(dateService);
+  private final ReportingService reportingService = new ReportingService(Preferences.of(LENGTH_OF_YEAR, 360), priceService, dateService);
+
+  @Test
+  public void start() {
+    assertEquals(LocalDate.of(2020, 8, 1), MONTH_TO_DATE.start(now));
+    assertEquals(LocalDate.of(2020, 7, 1), QUARTER_TO_DATE.start(now));
+    assertEquals(LocalDate.of(2020, 1, 1), YEAR_TO_DATE.start(now));
+    assertEquals(LocalDate.of(2020, 8, 11), trailingDays(10).start(now));
+    assertEquals(now, trailingDays(1).start(now));
+  }
+
+  @Test
+  public void names() {
+    assertEquals("MONTH_TO_DATE", MONTH_TO_DATE.toString());
+    assertEquals("QUARTER_TO_DATE", QUARTER_TO_DATE.toString());
+    assertEquals("YEAR_TO_DATE", YEAR_TO_DATE.toString());
+    assertEquals("TrailingDays[days=30]", trailingDays(30).toString());
+    assertEquals(trailingDays(30), trailingDays(30));
+  }
+
+  @Test
+  public void trailingDays_invalid() {
+    assertThrows(IllegalArgumentException.class, () -> trailingDays(0));
+  }
+
+  private List<Transaction> transactions() {
+    var price = priceService.getPrice(now.minusDays(40), GOOGL);
+    return List.of(new Transaction(DEPOSIT, now.minusDays(200), bd(1_000), null, ZERO),
+        new Transaction(BUY, now.minusDays(40), price.multiply(bd(5)), GOOGL, bd(5)),
+        new Transaction(DEPOSIT, now.minusDays(10), bd(100), null, ZERO),
+        new Transaction(DEPOSIT, now, bd(50), null, ZERO));
+  }
+
+  private BigDecimal expected(Position current, List<Transaction> transactions, LocalDate start) {
+    var initial = ReportingService.revert(current, transactions, start, now);
+    var initialValue = initial.cash().add(initial.quantity(GOOGL).multiply(priceService.getPrice(start, GOOGL)));
+    var currentValue = current.cash().add(current.quantity(GOOGL).multiply(priceService.getPrice(now, GOOGL)));
+    var days = now.toEpochDay() - start.toEpochDay() + 1;
+    return currentValue.subtract(initialValue).divide(initialValue, 10, HALF_UP).multiply(bd(100))
+        .multiply(bd(360)).divide(bd((int) days), 2, HALF_UP);
+  }
+
+  @Test
+  public void calculateReturnOnInvestments() {
+    var current = new Position(bd(2_000)).quantity(GOOGL, bd(5));
+    var transactions = transactions();
+
+    var rois = reportingService.calculateReturnOnInvestments(current, transactions,
+        List.of(MONTH_TO_DATE, QUARTER_TO_DATE, YEAR_TO_DATE, trailingDays(30)));
+
+    assertEquals(List.of(
+        expected(current, transactions, MONTH_TO_DATE.start(now)),
+        expected(current, transactions, QUARTER_TO_DATE.start(now)),
+        expected(current, transactions, YEAR_TO_DATE.start(now)),
+        expected(current, transactions, trailingDays(30).start(now))),
+        rois);
+  }
+
+  @Test
+  public void calculateReturnOnInvestments_sameAsYTD() {
+    var current = new Position(bd(2_000)).quantity(GOOGL, bd(5));
+    var transactions = transactions();
+    assertEquals(List.of(reportingService.calculateReturnOnInvestmentYTD(current, transactions)),
+        reportingService.calculateReturnOnInvestments(current, transactions, List.of(YEAR_TO_DATE)));
+  }
+
+  @Test
+  public void calculateReturnOnInvestments_noPeriod() {
+    assertEquals(List.of(), reportingService.calculateReturnOnInvestments(new Position(bd(10)), List.of(), List.of()));
+  }
+
+  @Test
+  public void calculateReturnOnInvestments_periodInTheFuture() {
+    assertThrows(IllegalArgumentException.class,
+        () -> reportingService.calculateReturnOnInvestments(new Position(bd(10)), List.of(), List.of(now -> now.plusDays(1))));
+  }
+
+  @Test
+  public void calculateReturnOnInvestments_noPriceBeforeTheYear() {
+    assertThrows(IllegalArgumentException.class,
+        () -> reportingService.calculateReturnOnInvestments(new Position(bd(10)).quantity(Security.APPL, bd(1)), List.of(), List.of(trailingDays(365))));
+  }
+
+  @Test
+  public void calculateReturnOnInvestments_noPriceBeforeTheYearNoSecurity() {
+    assertEquals(List.of(bd("0.00")),
+        reportingService.calculateReturnOnInvestments(new Position(bd(10)), List.of(), List.of(trailingDays(365))));
+  }
+}
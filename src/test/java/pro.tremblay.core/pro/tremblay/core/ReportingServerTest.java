@@ -0,0 +1,205 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static pro.tremblay.core.BigDecimalUtil.bd;
+import static pro.tremblay.core.Preferences.LENGTH_OF_YEAR;
+import static pro.tremblay.core.Security.GOOGL;
+import static pro.tremblay.core.TransactionType.BUY;
+import static pro.tremblay.core.TransactionType.DEPOSIT;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ReportingServerTest {
+  static {
+    // see ReportingServer, otherwise each response may wait for a delayed acknowledgment
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+  }
+
+  private final LocalDate now = LocalDate.of(2020, 5, 20);
+  private final DateService dateService = new DateService(() -> now);
+  private final PriceService priceService = PriceService.createARandomPriceService(dateService);
+  private final ReportingService reportingService = new ReportingService(Preferences.of(LENGTH_OF_YEAR, 360), priceService, dateService);
+  private ExecutorService executor;
+  private ReportingServer server;
+
+  @BeforeEach
+  public void start() throws IOException {
+    executor = Executors.newFixedThreadPool(2);
+    server = ReportingServer.start(reportingService, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), executor);
+  }
+
+  @AfterEach
+  public void stop() {
+    server.close();
+    executor.shutdown();
+  }
+
+  private record Response(int status, String body) { }
+
+  private Response post(String pathAndQuery, String method, String contentType, String body) throws IOException {
+    var address = server.address();
+    var connection = (HttpURLConnection) new URL("http", address.getHostString(), address.getPort(), pathAndQuery).openConnection();
+    connection.setRequestMethod(method);
+    if (contentType != null) {
+      connection.setRequestProperty("Content-Type", contentType);
+    }
+    if (body != null) {
+      connection.setDoOutput(true);
+      try(var output = connection.getOutputStream()) {
+        output.write(body.getBytes(UTF_8));
+      }
+    }
+    var status = connection.getResponseCode();
+    var input = (status < 400)? connection.getInputStream(): connection.getErrorStream();
+    try(input) {
+      return new Response(status, new String(input.readAllBytes(), UTF_8));
+    }
+  }
+
+  private BigDecimal expectedROI() {
+    var price = priceService.getPrice(now.minusDays(10), GOOGL);
+    var current = new Position(bd(200)).quantity(GOOGL, bd(50));
+    return reportingService.calculateReturnOnInvestmentYTD(current, List.of(
+        new Transaction(BUY, now.minusDays(10), price.multiply(bd(50)), GOOGL, bd(50)),
+        new Transaction(DEPOSIT, now.minusDays(5), bd(100), null, BigDecimal.ZERO)));
+  }
+
+  private String jsonRequest() {
+    var cash = priceService.getPrice(now.minusDays(10), GOOGL).multiply(bd(50));
+    return """
+        {
+          "cash": 200,
+          "securities": { "GOOGL": 50 },
+          "transactions": [
+            { "type": "BUY", "date": "%s", "cash": %s, "security": "GOOGL", "quantity": 50 },
+            { "type": "DEPOSIT", "date": "%s", "cash": 100 }
+          ]
+        }
+        """.formatted(now.minusDays(10), cash.toPlainString(), now.minusDays(5));
+  }
+
+  @Test
+  public void json() throws IOException {
+    var response = post("/roi", "POST", "application/json", jsonRequest());
+    assertEquals(200, response.status());
+    assertEquals("{\"roi\":" + expectedROI().toPlainString() + "}", response.body());
+  }
+
+  @Test
+  public void compact() throws IOException {
+    var cash = priceService.getPrice(now.minusDays(10), GOOGL).multiply(bd(50));
+    var body = "BUY," + now.minusDays(10) + "," + cash.toPlainString() + ",GOOGL,50\n"
+        + "DEPOSIT," + now.minusDays(5) + ",100,,\n";
+    var response = post("/roi?cash=200&security=GOOGL:50", "POST", "text/csv", body);
+    assertEquals(200, response.status());
+    assertEquals(expectedROI().toPlainString() + "\n", response.body());
+  }
+
+  @Test
+  public void compactEmpty() throws IOException {
+    var response = post("/roi?cash=200", "POST", "text/csv", "");
+    assertEquals(200, response.status());
+    assertEquals("0.00\n", response.body());
+  }
+
+  @Test
+  public void malformedJson() throws IOException {
+    var response = post("/roi", "POST", "application/json", "{\"cash\": ");
+    assertEquals(400, response.status());
+  }
+
+  @Test
+  public void unknownSecurity() throws IOException {
+    var response = post("/roi", "POST", "application/json", "{\"cash\": 1, \"securities\": { \"ReportingServerTest.unknown\": 1 } }");
+    assertEquals(400, response.status());
+    assertTrue(response.body().contains("unknown security"));
+    assertTrue(Security.lookup("ReportingServerTest.unknown").isEmpty());
+  }
+
+  @Test
+  public void malformedCompact() throws IOException {
+    var response = post("/roi?cash=200", "POST", "text/csv", "BUY,not-a-date,1,GOOGL,1\n");
+    assertEquals(400, response.status());
+  }
+
+  @Test
+  public void methodNotAllowed() throws IOException {
+    assertEquals(405, post("/roi", "GET", null, null).status());
+  }
+
+  @Test
+  public void unsupportedMediaType() throws IOException {
+    assertEquals(415, post("/roi", "POST", "text/plain", "").status());
+  }
+
+  @Test
+  public void notFound() throws IOException {
+    assertEquals(404, post("/roi/other", "POST", "application/json", "{}").status());
+  }
+
+  @Test
+  public void pipelining() throws IOException {
+    var address = server.address();
+    var body = jsonRequest().getBytes(UTF_8);
+    var request = ("POST /roi HTTP/1.1\r\nHost: localhost\r\nContent-Type: application/json\r\nContent-Length: " + body.length + "\r\n\r\n")
+        .getBytes(UTF_8);
+    try(var socket = new Socket(address.getAddress(), address.getPort())) {
+      // send the 3 requests before reading the responses
+      var output = socket.getOutputStream();
+      for(var i = 0; i < 3; i++) {
+        output.write(request);
+        output.write(body);
+      }
+      output.flush();
+      var reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+      var expected = "{\"roi\":" + expectedROI().toPlainString() + "}";
+      for(var i = 0; i < 3; i++) {
+        assertEquals("HTTP/1.1 200 OK", reader.readLine());
+        var length = -1;
+        for(String line; !(line = reader.readLine()).isEmpty();) {
+          if (line.toLowerCase().startsWith("content-length:")) {
+            length = Integer.parseInt(line.substring("content-length:".length()).trim());
+          }
+        }
+        var chars = new char[length];
+        for(var read = 0; read < length;) {
+          read += reader.read(chars, read, length - read);
+        }
+        assertEquals(expected, new String(chars));
+      }
+    }
+  }
+}
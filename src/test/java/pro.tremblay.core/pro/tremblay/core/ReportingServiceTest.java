@@ -17,16 +17,30 @@ package pro.tremblay.core;
 
 import static java.math.BigDecimal.ZERO;
 import static java.math.RoundingMode.HALF_UP;
+import static java.util.stream.Collectors.toList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static pro.tremblay.core.BigDecimalUtil.bd;
+import static pro.tremblay.core.Preferences.ARITHMETIC;
 import static pro.tremblay.core.Preferences.LENGTH_OF_YEAR;
 import static pro.tremblay.core.Security.GOOGL;
 import static pro.tremblay.core.TransactionType.BUY;
 import static pro.tremblay.core.TransactionType.DEPOSIT;
 
 import java.math.BigDecimal;
+import java.nio.LongBuffer;
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 import org.junit.jupiter.api.Test;
 
@@ -115,4 +129,398 @@ public class ReportingServiceTest {
     var actual = bd((200.0 - 50.0) / 50.0 * 100.0 * 360.0 / now.getDayOfYear());
     assertEquals(actual, roi);
   }
+
+  @Test
+  public void calculateReturnOnInvestmentYTD_securityWithoutPriceNotHeld() {
+    var current = new Position(bd(200)).quantity(Security.IBM, bd(3));
+    var expected = reportingService.calculateReturnOnInvestmentYTD(current, List.of());
+    var security = Security.of("ReportingServiceTest.securityWithoutPriceNotHeld");
+    assertEquals(expected, reportingService.calculateReturnOnInvestmentYTD(current, List.of()));
+    assertThrows(IllegalArgumentException.class,
+        () -> reportingService.calculateReturnOnInvestmentYTD(current.duplicate().quantity(security, bd(1)), List.of()));
+  }
+
+  @Test
+  public void calculateReturnOnInvestmentYTD_securityWithoutPriceFixedPoint() {
+    var fixedPointService = new ReportingService(preferences.or(Preferences.of(ARITHMETIC, Arithmetic.FIXED_POINT)), priceService, dateService);
+    var current = new Position(bd(200)).quantity(Security.IBM, bd(3));
+    var expected = fixedPointService.calculateReturnOnInvestmentYTD(current, List.of());
+    var security = Security.of("ReportingServiceTest.securityWithoutPriceFixedPoint");
+    assertEquals(expected, fixedPointService.calculateReturnOnInvestmentYTD(current, List.of()));
+    assertThrows(IllegalArgumentException.class,
+        () -> fixedPointService.calculateReturnOnInvestmentYTD(current.duplicate().quantity(security, bd(1)), List.of()));
+  }
+
+  @Test
+  public void calculateReturnOnInvestmentYTD_batch() {
+    var now = dateService.currentDate();
+    var priceAtTransaction = priceService.getPrice(now.minusDays(10), GOOGL);
+    var securities = new Position(ZERO).quantity(GOOGL, bd(50));
+    var histories = List.of(
+        new PositionHistory(new Position(ZERO), List.of()),
+        new PositionHistory(new Position(bd(200)), List.of(new Transaction(DEPOSIT, now.minusDays(10), bd(100), null, ZERO))),
+        new PositionHistory(securities, List.of(new Transaction(BUY, now.minusDays(10), priceAtTransaction.multiply(bd(50)), GOOGL, bd(50)))));
+
+    var rois = reportingService.calculateReturnOnInvestmentYTD(histories, new ForkJoinPool(2));
+
+    var expected = histories.stream()
+        .map(history -> reportingService.calculateReturnOnInvestmentYTD(history.position(), history.transactions()))
+        .collect(toList());
+    assertEquals(expected, rois);
+  }
+
+  @Test
+  public void calculateReturnOnInvestmentYTD_batchKeepOrder() {
+    var now = dateService.currentDate();
+    var histories = IntStream.range(0, 1_000)
+        .mapToObj(i -> new PositionHistory(new Position(bd(200 + i)), List.of(new Transaction(DEPOSIT, now, bd(100), null, ZERO))))
+        .collect(toList());
+
+    var rois = reportingService.calculateReturnOnInvestmentYTD(histories);
+
+    for(var i = 0; i < histories.size(); i++) {
+      var history = histories.get(i);
+      assertEquals(reportingService.calculateReturnOnInvestmentYTD(history.position(), history.transactions()), rois.get(i));
+    }
+  }
+
+  @Test
+  public void calculateReturnOnInvestmentYTD_metrics() {
+    var now = dateService.currentDate();
+    var transactions = List.of(
+        new Transaction(DEPOSIT, now, bd(100), null, ZERO),
+        new Transaction(DEPOSIT, now, bd(50), null, ZERO),
+        new Transaction(DEPOSIT, now.withDayOfYear(1).minusDays(1), bd(10), null, ZERO));
+    for(var arithmetic: Arithmetic.values()) {
+      var metrics = Metrics.create();
+      var service = new ReportingService(preferences.or(Preferences.of(ARITHMETIC, arithmetic)), priceService, dateService, metrics);
+
+      service.calculateReturnOnInvestmentYTD(new Position(bd(200)), transactions);
+
+      assertEquals(1, metrics.histogram("reporting.roi.latency.ns").count());
+      assertEquals(1, metrics.histogram("reporting.roi.reverted").count());
+      assertEquals(2, metrics.histogram("reporting.roi.reverted").max());
+    }
+  }
+
+  @Test
+  public void calculateReturnOnInvestmentYTD_metricsTransactionInTheFuture() {
+    var metrics = Metrics.create();
+    var service = new ReportingService(preferences, priceService, dateService, metrics);
+    var now = dateService.currentDate();
+    var transactions = List.of(
+        new Transaction(DEPOSIT, now, bd(100), null, ZERO),
+        new Transaction(DEPOSIT, now.plusDays(1), bd(50), null, ZERO));
+
+    service.calculateReturnOnInvestmentYTD(new Position(bd(200)), transactions);
+
+    assertEquals(1, metrics.histogram("reporting.roi.reverted").count());
+    assertEquals(0, metrics.histogram("reporting.roi.reverted").max());
+  }
+
+  @Test
+  public void calculateReturnOnInvestmentYTD_metricsColumns() {
+    var metrics = Metrics.create();
+    var service = new ReportingService(preferences, priceService, dateService, metrics);
+    var now = dateService.currentDate();
+    var columns = new TransactionColumns(2, 0)
+        .add(new Transaction(DEPOSIT, now, bd(100), null, ZERO))
+        .add(new Transaction(DEPOSIT, now, bd(50), null, ZERO));
+
+    service.calculateReturnOnInvestmentYTD(new Position(bd(200)), columns);
+
+    assertEquals(1, metrics.histogram("reporting.roi.latency.ns").count());
+    assertEquals(2, metrics.histogram("reporting.roi.reverted").max());
+  }
+
+  @Test
+  public void calculateReturnOnInvestmentYTD_metricsBatch() {
+    var metrics = Metrics.create();
+    var service = new ReportingService(preferences, priceService, dateService, metrics);
+    var now = dateService.currentDate();
+    var histories = IntStream.range(0, 100)
+        .mapToObj(i -> new PositionHistory(new Position(bd(200 + i)), List.of(new Transaction(DEPOSIT, now, bd(100), null, ZERO))))
+        .collect(toList());
+
+    service.calculateReturnOnInvestmentYTD(histories);
+
+    assertEquals(1, metrics.histogram("reporting.roi.batch.latency.ns").count());
+    assertEquals(0, metrics.histogram("reporting.roi.latency.ns").count());
+    assertEquals(100, metrics.histogram("reporting.roi.reverted").count());
+  }
+
+  @Test
+  public void calculateReturnOnInvestmentYTD_onlyHeldSecuritiesArePriced() {
+    var metrics = Metrics.create();
+    var service = new ReportingService(preferences, priceService.withMetrics(metrics), dateService);
+    var current = new Position(bd(1_000)).quantity(Security.APPL, bd(1)).quantity(GOOGL, bd(2)).quantity(Security.IBM, bd(3));
+
+    service.calculateReturnOnInvestmentYTD(current, List.of());
+
+    // 3 securities at 2 dates
+    assertEquals(6, metrics.counter("price.lookups").sum());
+  }
+
+  @Test
+  public void calculateReturnOnInvestmentYTD_onlyHeldOrExchangedSecuritiesArePricedColumns() {
+    var metrics = Metrics.create();
+    var service = new ReportingService(preferences, priceService.withMetrics(metrics), dateService);
+    var now = dateService.currentDate();
+    var current = new Position(bd(1_000)).quantity(Security.APPL, bd(1)).quantity(GOOGL, bd(2)).quantity(Security.IBM, bd(1));
+    var columns = new TransactionColumns(1, 0).add(new Transaction(BUY, now, bd(10), Security.IBM, bd(1)));
+
+    service.calculateReturnOnInvestmentYTD(current, columns);
+
+    // APPL and GOOGL held, IBM held today, not at the beginning of the year
+    assertEquals(6, metrics.counter("price.lookups").sum());
+  }
+
+  @Test
+  public void calculateReturnOnInvestmentYTD_onlyHeldSecuritiesArePricedBatch() {
+    var metrics = Metrics.create();
+    var service = new ReportingService(preferences, priceService.withMetrics(metrics), dateService);
+    var histories = List.of(
+        new PositionHistory(new Position(bd(200)).quantity(Security.APPL, bd(1)), List.of()),
+        new PositionHistory(new Position(bd(300)).quantity(GOOGL, bd(1)), List.of()));
+
+    service.calculateReturnOnInvestmentYTD(histories);
+
+    // the prices are shared by the positions
+    assertEquals(4, metrics.counter("price.lookups").sum());
+  }
+
+  /**
+   * A price service that takes some time to answer, the prices are the prices of another service.
+   */
+  private static PriceService slowPriceService(PriceService priceService, long millis, AtomicInteger lookups) {
+    return new PriceService(0, 0, priceService.priceScale(), LongBuffer.allocate(0), new int[0]) {
+      @Override
+      public long getScaledPrice(LocalDate date, Security security) {
+        lookups.incrementAndGet();
+        try {
+          Thread.sleep(millis);
+        } catch(InterruptedException e) {
+          throw new AssertionError(e);
+        }
+        return priceService.getScaledPrice(date, security);
+      }
+    };
+  }
+
+  @Test
+  public void calculateReturnOnInvestmentYTDAsync() {
+    var now = dateService.currentDate();
+    var random = new Random(0);
+    var executor = Executors.newFixedThreadPool(4);
+    try {
+      for(var i = 0; i < 100; i++) {
+        var current = new Position(BigDecimal.valueOf(random.nextInt(1_000_000), 2));
+        for(var security: List.of(Security.APPL, Security.GOOGL, Security.IBM)) {
+          current.quantity(security, BigDecimal.valueOf(random.nextInt(1_000)));
+        }
+        var transactions = randomTransactions(random, now, 20, 2).stream()
+            .filter(transaction -> transaction.security() == null || transaction.security().id() <= Security.IBM.id())
+            .collect(toList());
+        var expected = reportingService.calculateReturnOnInvestmentYTD(current, transactions);
+        assertEquals(expected, reportingService.calculateReturnOnInvestmentYTDAsync(current, transactions, executor).join());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void calculateReturnOnInvestmentYTDAsync_lookupsAreConcurrent() {
+    var lookups = new AtomicInteger();
+    var slowService = new ReportingService(preferences, slowPriceService(priceService, 200, lookups), dateService);
+    var now = dateService.currentDate();
+    var current = new Position(bd(1_000)).quantity(Security.APPL, bd(1)).quantity(GOOGL, bd(2)).quantity(Security.IBM, bd(3));
+    var transactions = List.of(new Transaction(BUY, now, bd(10), GOOGL, bd(1)));
+    var executor = Executors.newFixedThreadPool(8);
+    try {
+      var start = System.nanoTime();
+      var roi = slowService.calculateReturnOnInvestmentYTDAsync(current, transactions, executor).join();
+      var elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+      assertEquals(reportingService.calculateReturnOnInvestmentYTD(current, transactions), roi);
+      // 3 securities at 2 dates, one after the other it would take 6 * 200 ms
+      assertEquals(6, lookups.get());
+      assertTrue(elapsed < 3 * 200, "elapsed " + elapsed + " ms");
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void calculateReturnOnInvestmentYTDAsync_doesNotModifyCurrent() {
+    var now = dateService.currentDate();
+    var current = new Position(bd(200)).quantity(GOOGL, bd(3));
+    var transactions = List.of(new Transaction(BUY, now, bd(100), GOOGL, bd(3)));
+    reportingService.calculateReturnOnInvestmentYTDAsync(current, transactions, Runnable::run).join();
+    assertEquals(bd(200), current.cash());
+    assertEquals(bd(3), current.quantity(GOOGL));
+  }
+
+  @Test
+  public void calculateReturnOnInvestmentYTDAsync_noPrice() {
+    var security = Security.of("ReportingServiceTest.calculateReturnOnInvestmentYTDAsync_noPrice");
+    var current = new Position(bd(200)).quantity(security, bd(1));
+    var future = reportingService.calculateReturnOnInvestmentYTDAsync(current, List.of(), Runnable::run);
+    var exception = assertThrows(CompletionException.class, future::join);
+    assertEquals(IllegalArgumentException.class, exception.getCause().getClass());
+  }
+
+  @Test
+  public void calculateReturnOnInvestmentYTDAsync_metrics() {
+    var metrics = Metrics.create();
+    var service = new ReportingService(preferences, priceService, dateService, metrics);
+    var now = dateService.currentDate();
+    var transactions = List.of(new Transaction(DEPOSIT, now, bd(100), null, ZERO));
+
+    service.calculateReturnOnInvestmentYTDAsync(new Position(bd(200)), transactions, Runnable::run).join();
+
+    assertEquals(1, metrics.histogram("reporting.roi.latency.ns").count());
+    assertEquals(1, metrics.histogram("reporting.roi.reverted").max());
+  }
+
+  private static List<Transaction> randomTransactions(Random random, LocalDate now, int count, int maxScale) {
+    var transactionTypes = TransactionType.values();
+    var securities = Security.securities();
+    return IntStream.range(0, count).mapToObj(i -> {
+      var type = transactionTypes[random.nextInt(transactionTypes.length)];
+      var date = now.minusDays(random.nextInt(now.getDayOfYear() + 30));
+      var cash = BigDecimal.valueOf(random.nextInt(100_000), random.nextInt(maxScale + 1));
+      var security = type.hasQuantity() ? securities.get(random.nextInt(securities.size())) : null;
+      var quantity = type.hasQuantity() ? BigDecimal.valueOf(random.nextInt(1_000), random.nextInt(maxScale + 1)) : ZERO;
+      return new Transaction(type, date, cash, security, quantity);
+    }).collect(toList());
+  }
+
+  @Test
+  public void calculateReturnOnInvestmentYTD_fixedPointSameAsBigDecimal() {
+    var fixedPointService = new ReportingService(preferences.or(Preferences.of(ARITHMETIC, Arithmetic.FIXED_POINT)), priceService, dateService);
+    var now = dateService.currentDate();
+    var random = new Random(0);
+    for(var i = 0; i < 1_000; i++) {
+      var current = new Position(BigDecimal.valueOf(random.nextInt(1_000_000), random.nextInt(3)));
+      for(var security: Security.securities()) {
+        current.quantity(security, BigDecimal.valueOf(random.nextInt(1_000), random.nextInt(3)));
+      }
+      var transactions = randomTransactions(random, now, random.nextInt(20), 4);
+
+      assertEquals(reportingService.calculateReturnOnInvestmentYTD(current, transactions),
+          fixedPointService.calculateReturnOnInvestmentYTD(current, transactions));
+    }
+  }
+
+  @Test
+  public void calculateReturnOnInvestments_fixedPointSameAsBigDecimal() {
+    var fixedPointService = new ReportingService(preferences.or(Preferences.of(ARITHMETIC, Arithmetic.FIXED_POINT)), priceService, dateService);
+    var now = dateService.currentDate();
+    var periods = List.of(ReportingPeriod.YEAR_TO_DATE, ReportingPeriod.MONTH_TO_DATE, ReportingPeriod.trailingDays(30));
+    var random = new Random(0);
+    for(var i = 0; i < 200; i++) {
+      var current = new Position(BigDecimal.valueOf(random.nextInt(1_000_000), random.nextInt(3)));
+      for(var security: Security.securities()) {
+        current.quantity(security, BigDecimal.valueOf(random.nextInt(1_000), random.nextInt(3)));
+      }
+      var transactions = randomTransactions(random, now, random.nextInt(20), 4).stream()
+          .filter(transaction -> !transaction.date().isAfter(now))
+          .collect(toList());
+
+      assertEquals(reportingService.calculateReturnOnInvestments(current, transactions, periods),
+          fixedPointService.calculateReturnOnInvestments(current, transactions, periods));
+    }
+  }
+
+  @Test
+  public void calculateReturnOnInvestmentYTD_fixedPointOverflow() {
+    var fixedPointService = new ReportingService(preferences.or(Preferences.of(ARITHMETIC, Arithmetic.FIXED_POINT)), priceService, dateService);
+    var current = new Position(bd("12345678901234567890.5"));
+    current.quantity(GOOGL, bd("98765432109876543210"));
+
+    var now = dateService.currentDate();
+    var transactions = List.of(new Transaction(DEPOSIT, now, bd("0.000000000000000001"), null, ZERO));
+
+    assertEquals(reportingService.calculateReturnOnInvestmentYTD(current, transactions),
+        fixedPointService.calculateReturnOnInvestmentYTD(current, transactions));
+  }
+
+  // the initial algorithm, walk back day by day on the transactions sorted by date
+  private static Position referenceRevert(Position current, Collection<Transaction> transactions, LocalDate now) {
+    var beginningOfYear = now.withDayOfYear(1);
+    var working = current.duplicate();
+    var orderedTransaction = transactions.stream()
+        .sorted(Comparator.comparing(Transaction::date).reversed()).collect(toList());
+    var today = now;
+    var transactionIndex = 0;
+    while (!today.isBefore(beginningOfYear)) {
+      if (transactionIndex >= orderedTransaction.size())  {
+        break;
+      }
+      var transaction = orderedTransaction.get(transactionIndex);
+      while (transaction.date().equals(today)) {
+        ReportingService.revert(working, transaction);
+        transactionIndex++;
+        if (transactionIndex >= orderedTransaction.size())  {
+          break;
+        }
+        transaction = orderedTransaction.get(transactionIndex);
+      }
+      today = today.minusDays(1);
+    }
+    return working;
+  }
+
+  private static void assertSamePosition(Position expected, Position actual) {
+    assertEquals(0, expected.cash().compareTo(actual.cash()), "cash " + expected + " " + actual);
+    for(var security: Security.securities()) {
+      assertEquals(0, expected.quantity(security).compareTo(actual.quantity(security)), security + " " + expected + " " + actual);
+    }
+  }
+
+  @Test
+  public void revert_sameAsDayByDay() {
+    var now = LocalDate.of(2020, 5, 20);
+    var random = new Random(0);
+    for(var i = 0; i < 1_000; i++) {
+      var current = new Position(bd(random.nextInt(10_000))).quantity(GOOGL, bd(random.nextInt(100)));
+      // dates from before the beginning of the year to after now
+      var transactions = randomTransactions(random, now.plusDays(random.nextInt(2) * 5), random.nextInt(20), 2);
+      assertSamePosition(referenceRevert(current, transactions, now),
+          ReportingService.revert(current, transactions, now.withDayOfYear(1), now));
+    }
+  }
+
+  @Test
+  public void revert_transactionInTheFuture() {
+    var now = LocalDate.of(2020, 5, 20);
+    var current = new Position(bd(200));
+    var transactions = List.of(new Transaction(DEPOSIT, now.minusDays(10), bd(100), null, ZERO),
+        new Transaction(DEPOSIT, now.plusDays(1), bd(50), null, ZERO));
+    var initial = ReportingService.revert(current, transactions, now.withDayOfYear(1), now);
+    assertSamePosition(referenceRevert(current, transactions, now), initial);
+    assertEquals(bd(200), initial.cash());
+  }
+
+  @Test
+  public void revert_transactionBeforeBeginningOfYear() {
+    var now = LocalDate.of(2020, 5, 20);
+    var current = new Position(bd(200));
+    var transactions = List.of(new Transaction(DEPOSIT, now.withDayOfYear(1), bd(100), null, ZERO),
+        new Transaction(DEPOSIT, now.withDayOfYear(1).minusDays(1), bd(50), null, ZERO),
+        new Transaction(DEPOSIT, now, bd(25), null, ZERO));
+    var initial = ReportingService.revert(current, transactions, now.withDayOfYear(1), now);
+    assertSamePosition(referenceRevert(current, transactions, now), initial);
+    assertEquals(bd(75), initial.cash());
+  }
+
+  @Test
+  public void revert_doesNotModifyCurrent() {
+    var now = LocalDate.of(2020, 5, 20);
+    var current = new Position(bd(200)).quantity(GOOGL, bd(3));
+    ReportingService.revert(current, List.of(new Transaction(BUY, now, bd(100), GOOGL, bd(3))), now.withDayOfYear(1), now);
+    assertEquals(bd(200), current.cash());
+    assertEquals(bd(3), current.quantity(GOOGL));
+  }
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import static java.math.BigDecimal.ZERO;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static pro.tremblay.core.BigDecimalUtil.bd;
+import static pro.tremblay.core.Preferences.LENGTH_OF_YEAR;
+import static pro.tremblay.core.Security.GOOGL;
+import static pro.tremblay.core.Security.IBM;
+import static pro.tremblay.core.TransactionType.BUY;
+import static pro.tremblay.core.TransactionType.DEPOSIT;
+import static pro.tremblay.core.TransactionType.SELL;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class ReturnOnInvestmentAccumulatorTest {
+  private LocalDate now = LocalDate.of(2020, 6, 10);
+  private final Preferences preferences = Preferences.of(LENGTH_OF_YEAR, 360);
+  private final DateService dateService = new DateService(() -> now);
+  private final PriceService priceService = PriceService.createARandomPriceService(new DateService(() -> LocalDate.of(2020, 12, 31)));
+  private final ReportingService reportingService = new ReportingService(preferences, priceService, dateService);
+
+  private static Position position() {
+    return new Position(bd(10_000)).quantity(GOOGL, bd(20)).quantity(IBM, bd(5));
+  }
+
+  @Test
+  public void noTransaction() {
+    var accumulator = reportingService.accumulator(position(), List.of());
+    assertEquals(reportingService.calculateReturnOnInvestmentYTD(position(), List.of()), accumulator.calculateReturnOnInvestmentYTD());
+  }
+
+  @Test
+  public void add() {
+    var random = new Random(0);
+    var types = TransactionType.values();
+    var current = position();
+    var transactions = new ArrayList<Transaction>();
+    var accumulator = reportingService.accumulator(current, transactions);
+    for(var i = 0; i < 200; i++) {
+      var type = types[random.nextInt(types.length)];
+      // some transactions are before the beginning of the year
+      var date = now.minusDays(random.nextInt(200));
+      var security = type.hasQuantity()? Security.securities().get(random.nextInt(3)): null;
+      var quantity = type.hasQuantity()? bd(random.nextInt(10)): ZERO;
+      var transaction = new Transaction(type, date, bd(random.nextInt(1_000)), security, quantity);
+
+      ReportingService.apply(current, transaction);
+      transactions.add(transaction);
+      accumulator.add(transaction);
+
+      assertEquals(reportingService.calculateReturnOnInvestmentYTD(current, transactions), accumulator.calculateReturnOnInvestmentYTD());
+    }
+  }
+
+  @Test
+  public void addDoesNotChangeInitialPosition() {
+    var transactions = List.of(new Transaction(DEPOSIT, now.minusDays(10), bd(100), null, ZERO));
+    var accumulator = reportingService.accumulator(position(), transactions);
+    var position = accumulator.add(new Transaction(BUY, now, bd(500), GOOGL, bd(2))).position();
+
+    assertEquals(bd(10_000 - 500), position.cash());
+    assertEquals(bd(22), position.quantity(GOOGL));
+  }
+
+  @Test
+  public void transactionInTheFuture() {
+    var current = position();
+    var future = new Transaction(SELL, now.plusDays(5), bd(300), IBM, bd(1));
+    var transactions = List.of(new Transaction(DEPOSIT, now.minusDays(10), bd(100), null, ZERO), future);
+    var accumulator = reportingService.accumulator(current, transactions);
+
+    assertEquals(reportingService.calculateReturnOnInvestmentYTD(current, transactions), accumulator.calculateReturnOnInvestmentYTD());
+
+    now = now.plusDays(10);
+    assertEquals(reportingService.calculateReturnOnInvestmentYTD(current, transactions), accumulator.calculateReturnOnInvestmentYTD());
+  }
+
+  @Test
+  public void rebuild() {
+    var current = position();
+    var transactions = List.of(new Transaction(DEPOSIT, now.minusDays(10), bd(100), null, ZERO));
+    var accumulator = reportingService.accumulator(current, transactions);
+    accumulator.rebuild();
+
+    assertEquals(reportingService.calculateReturnOnInvestmentYTD(current, transactions), accumulator.calculateReturnOnInvestmentYTD());
+  }
+
+  @Test
+  public void accumulatorDoesNotModifyPosition() {
+    var current = position();
+    reportingService.accumulator(current, List.of()).add(new Transaction(DEPOSIT, now, new BigDecimal("12.5"), null, ZERO));
+    assertEquals(bd(10_000), current.cash());
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings("static-method")
+public class SecurityTest {
+  @Test
+  public void predefinedSecurities() {
+    assertEquals(List.of(Security.APPL, Security.GOOGL, Security.IBM), Security.securities().subList(0, 3));
+    assertEquals(0, Security.APPL.id());
+    assertEquals("GOOGL", Security.GOOGL.name());
+    assertEquals("IBM", Security.IBM.toString());
+  }
+
+  @Test
+  public void of() {
+    var security = Security.of("SecurityTest.of");
+    assertSame(security, Security.of("SecurityTest.of"));
+    assertSame(security, Security.byId(security.id()));
+    assertSame(security, Security.securities().get(security.id()));
+    assertSame(security, Security.lookup("SecurityTest.of").orElseThrow());
+  }
+
+  @Test
+  public void ofDenseIds() {
+    var security1 = Security.of("SecurityTest.ofDenseIds1");
+    var security2 = Security.of("SecurityTest.ofDenseIds2");
+    assertEquals(security1.id() + 1, security2.id());
+  }
+
+  @Test
+  public void ofEmptyName() {
+    assertThrows(IllegalArgumentException.class, () -> Security.of(""));
+  }
+
+  @Test
+  public void lookupUnknown() {
+    assertTrue(Security.lookup("SecurityTest.lookupUnknown").isEmpty());
+  }
+
+  @Test
+  public void byIdUnknown() {
+    assertThrows(IndexOutOfBoundsException.class, () -> Security.byId(-1));
+    assertThrows(IndexOutOfBoundsException.class, () -> Security.byId(Security.securities().size()));
+  }
+
+  @Test
+  public void securitiesIsASnapshot() {
+    var securities = Security.securities();
+    var size = securities.size();
+    Security.of("SecurityTest.securitiesIsASnapshot");
+    assertEquals(size, securities.size());
+    assertEquals(size + 1, Security.securities().size());
+    assertThrows(UnsupportedOperationException.class, () -> securities.add(Security.APPL));
+  }
+
+  @Test
+  public void ofConcurrently() throws InterruptedException {
+    var securities = ConcurrentHashMap.<Security>newKeySet();
+    var threads = new ArrayList<Thread>();
+    for(var i = 0; i < 4; i++) {
+      var thread = new Thread(() -> {
+        for(var j = 0; j < 100; j++) {
+          securities.add(Security.of("SecurityTest.ofConcurrently" + j));
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    for(var thread: threads) {
+      thread.join();
+    }
+    assertEquals(100, securities.size());
+    var ids = new HashSet<Integer>();
+    for(var security: securities) {
+      assertSame(security, Security.byId(security.id()));
+      ids.add(security.id());
+    }
+    assertEquals(100, ids.size());
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import static java.math.BigDecimal.ZERO;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static pro.tremblay.core.BigDecimalUtil.bd;
+import static pro.tremblay.core.Preferences.LENGTH_OF_YEAR;
+import static pro.tremblay.core.Security.GOOGL;
+import static pro.tremblay.core.TransactionType.BUY;
+import static pro.tremblay.core.TransactionType.DEPOSIT;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class TransactionColumnsTest {
+  private final LocalDate now = LocalDate.of(2020, 6, 10);
+  private final DateService dateService = new DateService(() -> now);
+  private final PriceService priceService = PriceService.createARandomPriceService(dateService);
+  private final ReportingService reportingService = new ReportingService(Preferences.of(LENGTH_OF_YEAR, 360), priceService, dateService);
+
+  @Test
+  public void addAndGet() {
+    var transaction = new Transaction(BUY, now, new BigDecimal("123.45"), GOOGL, bd(7));
+    var columns = new TransactionColumns(2, 0).add(transaction);
+    assertEquals(1, columns.size());
+    assertEquals(transaction, columns.get(0));
+    assertEquals(List.of(transaction), columns.asList());
+  }
+
+  @Test
+  public void addScaled() {
+    var columns = new TransactionColumns(2, 0).add(DEPOSIT, now, 10_050, null, 0);
+    assertEquals(new Transaction(DEPOSIT, now, new BigDecimal("100.50"), null, ZERO), columns.get(0));
+  }
+
+  @Test
+  public void addTooManyDecimals() {
+    var columns = new TransactionColumns(2, 0);
+    assertThrows(IllegalArgumentException.class, () -> columns.add(new Transaction(DEPOSIT, now, new BigDecimal("1.001"), null, ZERO)));
+  }
+
+  @Test
+  public void addNegativeCash() {
+    var columns = new TransactionColumns(2, 0);
+    assertThrows(IllegalArgumentException.class, () -> columns.add(DEPOSIT, now, -1, null, 0));
+  }
+
+  @Test
+  public void addNoSecurity() {
+    var columns = new TransactionColumns(2, 0);
+    assertThrows(IllegalArgumentException.class, () -> columns.add(BUY, now, 100, null, 1));
+  }
+
+  @Test
+  public void getOutOfBounds() {
+    var columns = new TransactionColumns(2, 0);
+    assertThrows(IndexOutOfBoundsException.class, () -> columns.get(0));
+  }
+
+  @Test
+  public void calculateReturnOnInvestmentYTD() {
+    var random = new Random(0);
+    var types = TransactionType.values();
+    for(var i = 0; i < 100; i++) {
+      var current = new Position(bd(random.nextInt(100_000))).quantity(GOOGL, bd(random.nextInt(100)));
+      var columns = new TransactionColumns(2, 1);
+      var transactions = new ArrayList<Transaction>();
+      var count = random.nextInt(100);
+      for(var j = 0; j < count; j++) {
+        var type = types[random.nextInt(types.length)];
+        // some transactions are before the beginning of the year or in the future
+        var date = now.plusDays(i % 10 == 0? 5: 0).minusDays(random.nextInt(200));
+        var security = type.hasQuantity()? Security.securities().get(random.nextInt(3)): null;
+        var quantity = type.hasQuantity()? BigDecimal.valueOf(random.nextInt(100), 1): ZERO;
+        var transaction = new Transaction(type, date, BigDecimal.valueOf(random.nextInt(100_000), 2), security, quantity);
+        transactions.add(transaction);
+        columns.add(transaction);
+      }
+      assertEquals(reportingService.calculateReturnOnInvestmentYTD(current, transactions),
+          reportingService.calculateReturnOnInvestmentYTD(current, columns));
+    }
+  }
+
+  @Test
+  public void calculateReturnOnInvestmentYTD_overflow() {
+    var current = new Position(bd(100));
+    var columns = new TransactionColumns(0, 0)
+        .add(DEPOSIT, now, Long.MAX_VALUE, null, 0)
+        .add(DEPOSIT, now, Long.MAX_VALUE, null, 0);
+    assertEquals(reportingService.calculateReturnOnInvestmentYTD(current, columns.asList()),
+        reportingService.calculateReturnOnInvestmentYTD(current, columns));
+  }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import static java.math.BigDecimal.ZERO;
+import static java.util.stream.Collectors.joining;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static pro.tremblay.core.BigDecimalUtil.bd;
+import static pro.tremblay.core.Preferences.LENGTH_OF_YEAR;
+import static pro.tremblay.core.Security.GOOGL;
+import static pro.tremblay.core.Security.IBM;
+import static pro.tremblay.core.TransactionType.BUY;
+import static pro.tremblay.core.TransactionType.DEPOSIT;
+import static pro.tremblay.core.TransactionType.SELL;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class TransactionLoaderTest {
+  private final LocalDate now = LocalDate.of(2020, 6, 10);
+  private final DateService dateService = new DateService(() -> now);
+  private final PriceService priceService = PriceService.createARandomPriceService(dateService);
+  private final ReportingService reportingService = new ReportingService(Preferences.of(LENGTH_OF_YEAR, 360), priceService, dateService);
+  private final Path path;
+
+  public TransactionLoaderTest() throws IOException {
+    path = Files.createTempFile("transactions", ".csv");
+  }
+
+  @AfterEach
+  public void after() throws IOException {
+    Files.deleteIfExists(path);
+  }
+
+  private static String csv(Transaction transaction) {
+    return transaction.type() + "," + transaction.date() + "," + transaction.cash().toPlainString() + ","
+        + (transaction.security() == null? "": transaction.security()) + ","
+        + (transaction.type().hasQuantity()? transaction.quantity().toPlainString(): "");
+  }
+
+  private List<Transaction> randomTransactions(int count) {
+    var random = new Random(0);
+    var types = TransactionType.values();
+    var transactions = new ArrayList<Transaction>();
+    for(var i = 0; i < count; i++) {
+      var type = types[random.nextInt(types.length)];
+      var date = now.minusDays(random.nextInt(200));
+      var security = type.hasQuantity()? Security.securities().get(random.nextInt(3)): null;
+      var quantity = type.hasQuantity()? BigDecimal.valueOf(random.nextInt(1_000), random.nextInt(2)): ZERO;
+      transactions.add(new Transaction(type, date, BigDecimal.valueOf(random.nextInt(100_000), random.nextInt(3)), security, quantity));
+    }
+    return transactions;
+  }
+
+  private static void assertSameTransactions(List<Transaction> expected, List<Transaction> actual) {
+    assertEquals(expected.size(), actual.size());
+    for(var i = 0; i < expected.size(); i++) {
+      var transaction1 = expected.get(i);
+      var transaction2 = actual.get(i);
+      assertEquals(transaction1.type(), transaction2.type());
+      assertEquals(transaction1.date(), transaction2.date());
+      assertEquals(0, transaction1.cash().compareTo(transaction2.cash()));
+      assertEquals(transaction1.security(), transaction2.security());
+      assertEquals(0, transaction1.quantity().compareTo(transaction2.quantity()));
+    }
+  }
+
+  @Test
+  public void loadCSV() throws IOException {
+    Files.writeString(path, "# a comment\nBUY,2020-03-01,1234.5,GOOGL,10\r\n\nDEPOSIT,2020-03-02,100,,\nSELL,2020-03-03,7.25,IBM,0.5");
+    var statistics = new TransactionLoader(2, 1).load(path, (type, epochDay, cash, security, quantity) -> { /* empty */ });
+    assertEquals(3, statistics.transactions());
+    assertEquals(Files.size(path), statistics.bytes());
+    assertTrue(statistics.megabytesPerSecond() >= 0);
+
+    var columns = new TransactionLoader(2, 1).loadColumns(path);
+    assertEquals(List.of(
+        new Transaction(BUY, LocalDate.of(2020, 3, 1), new BigDecimal("1234.50"), GOOGL, new BigDecimal("10.0")),
+        new Transaction(DEPOSIT, LocalDate.of(2020, 3, 2), new BigDecimal("100.00"), null, new BigDecimal("0.0")),
+        new Transaction(SELL, LocalDate.of(2020, 3, 3), new BigDecimal("7.25"), IBM, new BigDecimal("0.5"))),
+        columns.asList());
+  }
+
+  @Test
+  public void loadCSV_smallWindows() throws IOException {
+    var transactions = randomTransactions(1_000);
+    Files.writeString(path, transactions.stream().map(TransactionLoaderTest::csv).collect(joining("\n", "", "\n")));
+    var columns = new TransactionLoader(2, 1, 100).loadColumns(path);
+    assertSameTransactions(transactions, columns.asList());
+  }
+
+  @Test
+  public void loadCSV_manySecurities() throws IOException {
+    var transactions = new ArrayList<Transaction>();
+    for(var i = 0; i < 100; i++) {
+      var security = Security.of("TransactionLoaderTest.loadCSV_manySecurities" + i);
+      transactions.add(new Transaction(BUY, now, new BigDecimal("10.00"), security, new BigDecimal(i + ".0")));
+      transactions.add(new Transaction(SELL, now, new BigDecimal("20.00"), security, new BigDecimal(i + ".0")));
+    }
+    Files.writeString(path, transactions.stream().map(TransactionLoaderTest::csv).collect(joining("\n")));
+    assertSameTransactions(transactions, new TransactionLoader(2, 1).loadColumns(path).asList());
+
+    var columns = new TransactionColumns(2, 1);
+    transactions.forEach(columns::add);
+    TransactionLoader.writeBinary(columns, path);
+    assertSameTransactions(transactions, new TransactionLoader(2, 1).loadColumns(path).asList());
+  }
+
+  @Test
+  public void loadBinary_unknownSecurity() throws IOException {
+    var columns = new TransactionColumns(2, 1);
+    columns.add(new Transaction(BUY, now, new BigDecimal("10.00"), GOOGL, new BigDecimal("1.0")));
+    TransactionLoader.writeBinary(columns, path);
+    var bytes = Files.readAllBytes(path);
+    bytes[24 + 2] = 'X';  // GOOGL -> XOOGL
+    Files.write(path, bytes);
+    assertThrows(IOException.class, () -> new TransactionLoader(2, 1).loadColumns(path));
+  }
+
+  @Test
+  public void loadBinary_negativeNameLength() throws IOException {
+    var columns = new TransactionColumns(2, 1);
+    columns.add(new Transaction(BUY, now, new BigDecimal("10.00"), GOOGL, new BigDecimal("1.0")));
+    TransactionLoader.writeBinary(columns, path);
+    var bytes = Files.readAllBytes(path);
+    bytes[24] = (byte) 0xFF;  // the length of the name GOOGL -> negative
+    Files.write(path, bytes);
+    assertThrows(IOException.class, () -> new TransactionLoader(2, 1).loadColumns(path));
+  }
+
+  @Test
+  public void loadBinary_buyWithoutSecurity() throws IOException {
+    var columns = new TransactionColumns(2, 1);
+    columns.add(new Transaction(BUY, now, new BigDecimal("10.00"), GOOGL, new BigDecimal("1.0")));
+    TransactionLoader.writeBinary(columns, path);
+    var bytes = Files.readAllBytes(path);
+    // header, the name GOOGL, the security of the record -> -1
+    Arrays.fill(bytes, 24 + (2 + 5) + 5, 24 + (2 + 5) + 9, (byte) 0xFF);
+    Files.write(path, bytes);
+    assertThrows(IOException.class, () -> new TransactionLoader(2, 1).loadColumns(path));
+  }
+
+  @Test
+  public void loadCSV_lineTooLong() throws IOException {
+    Files.writeString(path, "BUY,2020-03-01,1234.5,GOOGL,10\n");
+    assertThrows(IOException.class, () -> new TransactionLoader(2, 1, 25).loadColumns(path));
+  }
+
+  @Test
+  public void loadCSV_invalidLines() throws IOException {
+    var loader = new TransactionLoader(2, 1);
+    for(var line: List.of("BUY,2020-03-01,1234.5,GOOGL",
+                          "BOUGHT,2020-03-01,1234.5,GOOGL,10",
+                          "BUY,2020-13-01,1234.5,GOOGL,10",
+                          "BUY,2020-03-01,-1234.5,GOOGL,10",
+                          "BUY,2020-03-01,1234.567,GOOGL,10",
+                          "BUY,2020-03-01,1234.5,AMZN,10",
+                          "BUY,2020-03-01,1234.5,,10",
+                          "BUY,2020-03-01,.,GOOGL,10",
+                          "BUY,2020-03-01,1234.5,GOOGL,.",
+                          "BUY,2020-03-01,99999999999999999999,GOOGL,10")) {
+      Files.writeString(path, line);
+      assertThrows(IOException.class, () -> loader.loadColumns(path), line);
+    }
+  }
+
+  @Test
+  public void writeAndLoadBinary() throws IOException {
+    var transactions = randomTransactions(1_000);
+    var columns = new TransactionColumns(2, 1);
+    transactions.forEach(columns::add);
+    TransactionLoader.writeBinary(columns, path);
+
+    // header, the names APPL, GOOGL and IBM, the records
+    assertEquals(24 + (2 + 4) + (2 + 5) + (2 + 3) + 25 * 1_000, Files.size(path));
+    assertSameTransactions(transactions, new TransactionLoader(2, 1, 100).loadColumns(path).asList());
+    assertSameTransactions(transactions, new TransactionLoader(4, 3).loadColumns(path).asList());
+    assertThrows(IOException.class, () -> new TransactionLoader(1, 1).loadColumns(path));
+  }
+
+  @Test
+  public void calculateReturnOnInvestmentYTD() throws IOException {
+    var transactions = randomTransactions(1_000);
+    Files.writeString(path, transactions.stream().map(TransactionLoaderTest::csv).collect(joining("\n")));
+    var current = new Position(bd(1_000_000)).quantity(GOOGL, bd(1_000)).quantity(IBM, bd(20));
+
+    assertEquals(reportingService.calculateReturnOnInvestmentYTD(current, transactions),
+        reportingService.calculateReturnOnInvestmentYTD(current, new TransactionLoader(2, 1), path));
+  }
+
+  @Test
+  public void calculateReturnOnInvestmentYTD_loadMetrics() throws IOException {
+    var transactions = randomTransactions(1_000);
+    Files.writeString(path, transactions.stream().map(TransactionLoaderTest::csv).collect(joining("\n")));
+    var metrics = Metrics.create();
+    var service = new ReportingService(Preferences.of(LENGTH_OF_YEAR, 360), priceService, dateService, metrics);
+
+    service.calculateReturnOnInvestmentYTD(new Position(bd(1_000_000)), new TransactionLoader(2, 1), path);
+
+    assertEquals(Files.size(path), metrics.counter("reporting.load.bytes").sum());
+    assertEquals(1_000, metrics.counter("reporting.load.transactions").sum());
+    assertTrue(metrics.counter("reporting.load.ns").sum() > 0);
+  }
+}
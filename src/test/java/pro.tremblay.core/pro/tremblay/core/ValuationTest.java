@@ -0,0 +1,111 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static pro.tremblay.core.BigDecimalUtil.bd;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+@SuppressWarnings("static-method")
+public class ValuationTest {
+  private static long referenceDotProduct(long[] quantities, long[] prices, int length) {
+    var sum = BigDecimal.ZERO;
+    for(var i = 0; i < length; i++) {
+      sum = sum.add(BigDecimal.valueOf(quantities[i]).multiply(BigDecimal.valueOf(prices[i])));
+    }
+    return sum.longValueExact();
+  }
+
+  @Test
+  public void dotProduct() {
+    var random = new Random(0);
+    for(var length = 0; length < 100; length++) {
+      var quantities = random.longs(length, -1_000_000, 1_000_000).toArray();
+      var prices = random.longs(length, 0, 100_000_000).toArray();
+      assertEquals(referenceDotProduct(quantities, prices, length), Valuation.dotProduct(quantities, prices, length));
+    }
+  }
+
+  @Test
+  public void dotProductLength() {
+    var quantities = new long[] { 1, 2, 3 };
+    var prices = new long[] { 10, 20, 30, 40 };
+    assertEquals(50, Valuation.dotProduct(quantities, prices, 2));
+  }
+
+  @Test
+  public void dotProductLargeValues() {
+    // the bound is too large for the unchecked loop, but the result fits
+    var quantities = new long[] { 1L << 40, -(1L << 40), 3 };
+    var prices = new long[] { 1L << 21, 1L << 21, Long.MAX_VALUE / 4 };
+    assertEquals(referenceDotProduct(quantities, prices, 3), Valuation.dotProduct(quantities, prices, 3));
+  }
+
+  @Test
+  public void dotProductOverflow() {
+    assertThrows(ArithmeticException.class,
+        () -> Valuation.dotProduct(new long[] { 1L << 32 }, new long[] { 1L << 31 }, 1));
+    assertThrows(ArithmeticException.class,
+        () -> Valuation.dotProduct(new long[] { 1L << 61, 1L << 61 }, new long[] { 2, 2 }, 2));
+    assertThrows(ArithmeticException.class,
+        () -> Valuation.dotProduct(new long[] { Long.MIN_VALUE }, new long[] { -1 }, 1));
+  }
+
+  @Test
+  public void value() {
+    var position = new Position(bd(100))
+        .quantity(Security.IBM, bd("1.5"))
+        .quantity(Security.APPL, bd("-2"))
+        .quantity(Security.GOOGL, bd("0.125"));
+    var prices = new long[Security.securities().size()];
+    prices[Security.IBM.id()] = 12_345;
+    prices[Security.APPL.id()] = 99;
+    prices[Security.GOOGL.id()] = 1;
+    var expected = bd("1.5").multiply(bd("123.45"))
+        .add(bd("-2").multiply(bd("0.99")))
+        .add(bd("0.125").multiply(bd("0.01")));
+    assertEquals(0, expected.compareTo(Valuation.value(position, prices, 2)));
+  }
+
+  @Test
+  public void valueNoSecurity() {
+    assertEquals(0, Valuation.value(new Position(bd(100)), new long[0], 2).signum());
+  }
+
+  @Test
+  public void valueNoPrice() {
+    var position = new Position(bd(100)).quantity(Security.IBM, bd(1));
+    var prices = new long[Security.securities().size()];
+    prices[Security.IBM.id()] = PriceService.NO_PRICE;
+    assertThrows(IllegalArgumentException.class, () -> Valuation.value(position, prices, 2));
+  }
+
+  @Test
+  public void valueTooManyDigits() {
+    var prices = new long[Security.securities().size()];
+    prices[Security.IBM.id()] = 100;
+    assertNull(Valuation.value(new Position(bd(1)).quantity(Security.IBM, bd("0.0000000000000000001")), prices, 2));
+    assertNull(Valuation.value(new Position(bd(1)).quantity(Security.IBM, bd("98765432109876543210")), prices, 2));
+    prices[Security.IBM.id()] = Long.MAX_VALUE;
+    assertNull(Valuation.value(new Position(bd(1)).quantity(Security.IBM, bd(2)), prices, 2));
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core.benchmark;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import pro.tremblay.core.DateService;
+import pro.tremblay.core.PriceService;
+import pro.tremblay.core.Security;
+
+/**
+ * Measure the lookup of a price found in the cache of the price service by several threads,
+ * {@link #main(String[])} runs with the GC profiler that reports the allocation rate
+ * per operation ({@code gc.alloc.rate.norm}) that should be zero.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class PriceServiceBenchmark {
+  private static final LocalDate AS_OF = LocalDate.of(2020, 7, 1);
+
+  private PriceService priceService;
+  private LocalDate[] dates;
+  private Security[] securities;
+
+  @Setup
+  public void setup() {
+    priceService = PriceService.createARandomPriceService(new DateService(() -> AS_OF));
+    dates = new LocalDate[64];
+    for(var i = 0; i < dates.length; i++) {
+      dates[i] = AS_OF.minusDays(i);
+    }
+    securities = Security.securities().toArray(Security[]::new);
+    // all the windows are in the cache
+    for(var date: dates) {
+      for(var security: securities) {
+        priceService.getScaledPrice(date, security);
+      }
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    private int index;
+  }
+
+  @Benchmark
+  public long getScaledPrice(Cursor cursor) {
+    var index = cursor.index++;
+    return priceService.getScaledPrice(dates[index & (dates.length - 1)], securities[index % securities.length]);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    var options = new OptionsBuilder()
+        .include(PriceServiceBenchmark.class.getName())
+        .addProfiler(GCProfiler.class)
+        .build();
+    new Runner(options).run();
+  }
+}
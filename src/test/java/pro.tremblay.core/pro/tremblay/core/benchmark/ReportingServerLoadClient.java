@@ -0,0 +1,288 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core.benchmark;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import pro.tremblay.core.DateService;
+import pro.tremblay.core.Metrics;
+import pro.tremblay.core.Preferences;
+import pro.tremblay.core.PriceService;
+import pro.tremblay.core.ReportingServer;
+import pro.tremblay.core.ReportingService;
+import pro.tremblay.core.Security;
+import pro.tremblay.core.TransactionType;
+
+/**
+ * A load test of {@link ReportingServer}, each connection is kept alive and sends
+ * its requests one after the other (or several at once with {@code --pipeline}),
+ * the latency of each request is recorded and the percentiles are printed at the end.
+ *
+ * Options
+ * <ul>
+ * <li>{@code --connections n}: number of concurrent connections, 1000 by default</li>
+ * <li>{@code --pipeline n}: number of requests sent before reading the responses, 1 by default</li>
+ * <li>{@code --warmup s}: duration of the warmup in seconds, not measured, 5 by default</li>
+ * <li>{@code --duration s}: duration of the measurement in seconds, 10 by default</li>
+ * <li>{@code --transactions n}: number of transactions of each request, 100 by default</li>
+ * <li>{@code --format json|csv}: format of the requests, json by default</li>
+ * <li>{@code --server host:port}: address of the server, by default a server is started
+ * in this process with a thread pool of one thread per processor</li>
+ * </ul>
+ *
+ * The JDK HTTP server closes the connections that are idle when there are more than
+ * {@code sun.net.httpserver.maxIdleConnections} (200 by default) idle connections,
+ * the connections closed by the server are reopened and counted as reconnections.
+ */
+public class ReportingServerLoadClient {
+  // a fixed current date, so the results don't depend on the day the load test is run
+  private static final LocalDate AS_OF = LocalDate.of(2020, 7, 1);
+
+  private final InetSocketAddress address;
+  private final byte[] request;
+  private final int pipeline;
+  private final Metrics.Histogram latency = Metrics.create().histogram("latency");
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+  private final LongAdder reconnections = new LongAdder();
+  private volatile long measureStart;
+  private volatile long measureEnd;
+
+  private ReportingServerLoadClient(InetSocketAddress address, byte[] request, int pipeline) {
+    this.address = address;
+    this.request = request;
+    this.pipeline = pipeline;
+  }
+
+  private static byte[] request(String format, int transactions) {
+    var random = new Random(0);
+    var securities = Security.securities();
+    var types = TransactionType.values();
+    var json = format.equals("json");
+    var body = new StringBuilder(json? "{\"cash\":100000,\"securities\":{},\"transactions\":[": "");
+    for(var i = 0; i < transactions; i++) {
+      var type = types[random.nextInt(types.length)];
+      var date = AS_OF.minusDays(random.nextInt(AS_OF.getDayOfYear() + 30));
+      var cash = BigDecimal.valueOf(random.nextInt(100_000), 2);
+      var security = type.hasQuantity()? securities.get(random.nextInt(securities.size())).name(): null;
+      var quantity = type.hasQuantity()? random.nextInt(100): 0;
+      if (json) {
+        body.append(i == 0? "": ",")
+            .append("{\"type\":\"").append(type).append("\",\"date\":\"").append(date)
+            .append("\",\"cash\":").append(cash.toPlainString())
+            .append(security == null? "": ",\"security\":\"" + security + "\",\"quantity\":" + quantity)
+            .append('}');
+      } else {
+        body.append(type).append(',').append(date).append(',').append(cash.toPlainString()).append(',')
+            .append(security == null? "": security).append(',').append(quantity).append('\n');
+      }
+    }
+    if (json) {
+      body.append("]}");
+    }
+    var bytes = body.toString().getBytes(UTF_8);
+    var header = "POST /roi" + (json? "": "?cash=100000") + " HTTP/1.1\r\n"
+        + "Host: localhost\r\n"
+        + "Content-Type: " + (json? "application/json": "text/csv") + "\r\n"
+        + "Content-Length: " + bytes.length + "\r\n\r\n";
+    var headerBytes = header.getBytes(US_ASCII);
+    var request = new byte[headerBytes.length + bytes.length];
+    System.arraycopy(headerBytes, 0, request, 0, headerBytes.length);
+    System.arraycopy(bytes, 0, request, headerBytes.length, bytes.length);
+    return request;
+  }
+
+  private void connection() {
+    while(System.nanoTime() < measureEnd) {
+      try(var socket = new Socket(address.getAddress(), address.getPort())) {
+        socket.setTcpNoDelay(true);
+        var output = socket.getOutputStream();
+        var input = new BufferedInputStream(socket.getInputStream());
+        while(System.nanoTime() < measureEnd) {
+          if (!send(output, input)) {
+            break;
+          }
+        }
+      } catch(IOException e) {
+        // the connection was closed by the server
+      }
+      reconnections.increment();
+    }
+  }
+
+  /**
+   * Sends the requests and reads the responses.
+   * @return false if the connection was closed by the server.
+   */
+  private boolean send(OutputStream output, InputStream input) throws IOException {
+    var start = System.nanoTime();
+    for(var i = 0; i < pipeline; i++) {
+      output.write(request);
+    }
+    output.flush();
+    for(var i = 0; i < pipeline; i++) {
+      var response = readResponse(input);
+      var status = Math.abs(response);
+      var end = System.nanoTime();
+      if (start >= measureStart && end <= measureEnd) {
+        latency.record(end - start);
+        requests.increment();
+        if (status != 200) {
+          errors.increment();
+        }
+      }
+      if (response < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Reads a response.
+   * @return the status code of the response, negated if the connection is closed after the response.
+   */
+  private static int readResponse(InputStream input) throws IOException {
+    var statusLine = readLine(input);
+    var status = Integer.parseInt(statusLine.substring(9, 12));
+    var length = 0;
+    var close = false;
+    for(String line; !(line = readLine(input)).isEmpty();) {
+      var lowerCase = line.toLowerCase();
+      if (lowerCase.startsWith("content-length:")) {
+        length = Integer.parseInt(lowerCase.substring(15).trim());
+      } else if (lowerCase.startsWith("connection:") && lowerCase.contains("close")) {
+        close = true;
+      }
+    }
+    input.skipNBytes(length);
+    return close? -status: status;
+  }
+
+  private static String readLine(InputStream input) throws IOException {
+    var builder = new StringBuilder();
+    for(;;) {
+      var c = input.read();
+      if (c == -1) {
+        throw new EOFException();
+      }
+      if (c == '\n') {
+        var length = builder.length();
+        return (length != 0 && builder.charAt(length - 1) == '\r')? builder.substring(0, length - 1): builder.toString();
+      }
+      builder.append((char) c);
+    }
+  }
+
+  private void run(int connections, int warmup, int duration) throws InterruptedException {
+    var now = System.nanoTime();
+    measureStart = now + TimeUnit.SECONDS.toNanos(warmup);
+    measureEnd = measureStart + TimeUnit.SECONDS.toNanos(duration);
+    var latch = new CountDownLatch(connections);
+    for(var i = 0; i < connections; i++) {
+      var thread = new Thread(null, () -> {
+        try {
+          connection();
+        } finally {
+          latch.countDown();
+        }
+      }, "load-client-" + i, 256 * 1024);
+      thread.setDaemon(true);
+      thread.start();
+    }
+    latch.await();
+
+    var count = requests.sum();
+    System.out.printf("%d connections, pipeline %d, %d requests in %d s, %.1f requests/s, %d errors, %d reconnections%n",
+        connections, pipeline, count, duration, count / (double) duration, errors.sum(), reconnections.sum() - connections);
+    System.out.printf("latency (us): p50 %d, p90 %d, p99 %d, p99.9 %d, max %d%n",
+        micros(latency.valueAtPercentile(50)), micros(latency.valueAtPercentile(90)), micros(latency.valueAtPercentile(99)),
+        micros(latency.valueAtPercentile(99.9)), micros(latency.max()));
+  }
+
+  private static long micros(long nanos) {
+    return TimeUnit.NANOSECONDS.toMicros(nanos);
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    var connections = 1_000;
+    var pipeline = 1;
+    var warmup = 5;
+    var duration = 10;
+    var transactions = 100;
+    var format = "json";
+    String server = null;
+    for(var i = 0; i < args.length; i++) {
+      var option = args[i];
+      if (i + 1 == args.length) {
+        throw new IllegalArgumentException("no value for option " + option);
+      }
+      var value = args[++i];
+      switch (option) {
+      case "--connections" -> connections = Integer.parseInt(value);
+      case "--pipeline" -> pipeline = Integer.parseInt(value);
+      case "--warmup" -> warmup = Integer.parseInt(value);
+      case "--duration" -> duration = Integer.parseInt(value);
+      case "--transactions" -> transactions = Integer.parseInt(value);
+      case "--format" -> format = value;
+      case "--server" -> server = value;
+      default -> throw new IllegalArgumentException("unknown option " + option);
+      }
+    }
+    if (!format.equals("json") && !format.equals("csv")) {
+      throw new IllegalArgumentException("unknown format " + format);
+    }
+
+    var request = request(format, transactions);
+    if (server != null) {
+      var colon = server.lastIndexOf(':');
+      var address = new InetSocketAddress(server.substring(0, colon), Integer.parseInt(server.substring(colon + 1)));
+      new ReportingServerLoadClient(address, request, pipeline).run(connections, warmup, duration);
+      return;
+    }
+
+    // the server runs in this JVM, see ReportingServer
+    if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+      System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+    var dateService = new DateService(() -> AS_OF);
+    var preferences = Preferences.of(Preferences.LENGTH_OF_YEAR, 365).compile(Preferences.LENGTH_OF_YEAR, Preferences.ARITHMETIC);
+    var reportingService = new ReportingService(preferences, PriceService.createARandomPriceService(dateService), dateService);
+    var executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    try(var reportingServer = ReportingServer.start(reportingService, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), executor)) {
+      new ReportingServerLoadClient(reportingServer.address(), request, pipeline).run(connections, warmup, duration);
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core.benchmark;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import pro.tremblay.core.DateService;
+import pro.tremblay.core.Position;
+import pro.tremblay.core.PositionHistory;
+import pro.tremblay.core.Preferences;
+import pro.tremblay.core.PriceService;
+import pro.tremblay.core.ReportingService;
+import pro.tremblay.core.Security;
+import pro.tremblay.core.Transaction;
+import pro.tremblay.core.TransactionType;
+
+/**
+ * Measure how the batch computation of the return on investment scales
+ * with the number of threads of the fork/join pool.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 10, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ReportingServiceBatchBenchmark {
+  private final Preferences preferences = Preferences.of(Preferences.LENGTH_OF_YEAR, 365).compile(Preferences.LENGTH_OF_YEAR, Preferences.ARITHMETIC);
+  // a fixed current date, so the results don't depend on the day the benchmark is run
+  private static final LocalDate AS_OF = LocalDate.of(2020, 7, 1);
+
+  private final DateService dateService = new DateService(() -> AS_OF);
+  private final PriceService priceService = PriceService.createARandomPriceService(dateService);
+  private final ReportingService service = new ReportingService(preferences, priceService, dateService);
+
+  @Param({"1", "2", "4", "8"})
+  private int threads;
+
+  @Param({"10000"})
+  private int accounts;
+
+  private ForkJoinPool pool;
+  private List<PositionHistory> histories;
+
+  @Setup
+  public void setup() {
+    pool = new ForkJoinPool(threads);
+
+    var securities = Security.securities();
+    var now = AS_OF;
+    var dayOfYear = now.getDayOfYear();
+    var transactionTypes = TransactionType.values();
+
+    var random = new Random(0);
+    histories = random.ints(accounts, 1_000, 1_000_000).mapToObj(cash -> {
+      var position = new Position(BigDecimal.valueOf(cash));
+      for(var security: securities) {
+        position.quantity(security, BigDecimal.valueOf(random.nextInt(1_000)));
+      }
+      var transactions = random.ints(100, 1, 100).mapToObj(value -> {
+        var type = transactionTypes[random.nextInt(transactionTypes.length)];
+        var date = now.minusDays(random.nextInt(dayOfYear));
+        var amount = BigDecimal.valueOf(random.nextInt(1_000));
+        var security = type.hasQuantity() ? securities.get(random.nextInt(securities.size())) : null;
+        var quantity = type.hasQuantity() ? BigDecimal.valueOf(value) : BigDecimal.ZERO;
+        return new Transaction(type, date, amount, security, quantity);
+      }).collect(Collectors.toList());
+      return new PositionHistory(position, transactions);
+    }).collect(Collectors.toList());
+  }
+
+  @TearDown
+  public void tearDown() {
+    pool.shutdown();
+  }
+
+  @Benchmark
+  public List<BigDecimal> calculateBatch() {
+    return service.calculateReturnOnInvestmentYTD(histories, pool);
+  }
+
+  public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+    // the command line options (e.g. -rf json) override the defaults
+    var opt = new OptionsBuilder().parent(new CommandLineOptions(args)).include(ReportingServiceBatchBenchmark.class.getName()).build();
+    new Runner(opt).run();
+  }
+}
@@ -28,14 +28,18 @@ import org.openjdk.jmh.annotations.Fork;
 import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.Warmup;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
 
+import pro.tremblay.core.Arithmetic;
 import pro.tremblay.core.DateService;
 import pro.tremblay.core.Position;
 import pro.tremblay.core.Preferences;
@@ -52,16 +56,25 @@ import pro.tremblay.core.TransactionType;
 @Fork(2)
 @State(Scope.Benchmark)
 public class ReportingServiceBenchmark {
-  private final Preferences preferences = Preferences.of(Preferences.LENGTH_OF_YEAR, 365);
-  private final DateService dateService = new DateService(LocalDate::now);
+  // a fixed current date, so the results don't depend on the day the benchmark is run
+  private static final LocalDate AS_OF = LocalDate.of(2020, 7, 1);
+
+  private final DateService dateService = new DateService(() -> AS_OF);
   private final PriceService priceService = PriceService.createARandomPriceService(dateService);
-  private final ReportingService service = new ReportingService(preferences, priceService, dateService);
-  
+
+  @Param({"BIG_DECIMAL", "FIXED_POINT"})
+  private Arithmetic arithmetic;
+
+  private ReportingService service;
   private Collection<Transaction> transactions;
   private Position position;
 
   @Setup
   public void setup() {
+    var preferences = Preferences.of(Preferences.LENGTH_OF_YEAR, 365).or(Preferences.of(Preferences.ARITHMETIC, arithmetic))
+        .compile(Preferences.LENGTH_OF_YEAR, Preferences.ARITHMETIC);
+    service = new ReportingService(preferences, priceService, dateService);
+
     var securities = Security.securities();
     var position = new Position(BigDecimal.valueOf(1_000_000));
     for(var security: securities) {
@@ -69,7 +82,7 @@ public class ReportingServiceBenchmark {
     }
     this.position = position;
     
-    var now = LocalDate.now();
+    var now = AS_OF;
     var dayOfYear = now.getDayOfYear();
 
     var transactionTypes = TransactionType.values();
@@ -90,8 +103,9 @@ public class ReportingServiceBenchmark {
     return service.calculateReturnOnInvestmentYTD(position, transactions);
   }
 
-  public static void main(String[] args) throws RunnerException {
-    var opt = new OptionsBuilder().include(ReportingServiceBenchmark.class.getName()).build();
+  public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+    // the command line options (e.g. -rf json) override the defaults
+    var opt = new OptionsBuilder().parent(new CommandLineOptions(args)).include(ReportingServiceBenchmark.class.getName()).build();
     new Runner(opt).run();
   }
 }
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core.benchmark;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import pro.tremblay.core.Arithmetic;
+import pro.tremblay.core.DateService;
+import pro.tremblay.core.Position;
+import pro.tremblay.core.Preferences;
+import pro.tremblay.core.PriceService;
+import pro.tremblay.core.ReportingService;
+import pro.tremblay.core.Security;
+import pro.tremblay.core.Transaction;
+import pro.tremblay.core.TransactionType;
+
+/**
+ * Measure the return on investment of one account for a matrix of scenarios,
+ * the number of transactions, the number of securities traded by the account,
+ * the distribution of the dates of the transactions and the arithmetic.
+ *
+ * The current date is fixed, so the results don't depend on the day the benchmark is run.
+ * Both the throughput and the distribution of the latencies are measured, and
+ * {@link #main(String[])} runs with the GC profiler that reports the allocation rate
+ * per operation ({@code gc.alloc.rate.norm}) and the GC counts.
+ *
+ * The whole matrix takes hours, a subset can be selected with {@code -p}, e.g.
+ * {@code -p transactions=1000 -p distribution=UNIFORM}.
+ * The scenarios with 10 million transactions need a large heap.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class ReportingServiceMatrixBenchmark {
+  /** The current date of all the scenarios */
+  public static final LocalDate AS_OF = LocalDate.of(2020, 7, 1);
+
+  /**
+   * Distribution of the dates of the transactions.
+   */
+  public enum Distribution {
+    /** Uniformly distributed since the beginning of the year */
+    UNIFORM,
+    /** Clustered on a few days since the beginning of the year */
+    CLUSTERED,
+    /** Nine transactions out of ten during the five previous years */
+    MOSTLY_OUT_OF_YEAR
+  }
+
+  @Param({"10", "1000", "100000", "10000000"})
+  private int transactions;
+
+  @Param({"3", "20", "1000"})
+  private int securities;
+
+  @Param({"UNIFORM", "CLUSTERED", "MOSTLY_OUT_OF_YEAR"})
+  private Distribution distribution;
+
+  @Param({"BIG_DECIMAL", "FIXED_POINT"})
+  private Arithmetic arithmetic;
+
+  private ReportingService service;
+  private Position position;
+  private Collection<Transaction> transactionList;
+
+  @Setup
+  public void setup() {
+    var securityList = new ArrayList<Security>(Security.securities().subList(0, Math.min(3, securities)));
+    for(var i = securityList.size(); i < securities; i++) {
+      securityList.add(Security.of("SECURITY" + i));
+    }
+
+    // the price service is created once all the securities are registered
+    var dateService = new DateService(() -> AS_OF);
+    var priceService = PriceService.createARandomPriceService(dateService);
+    var preferences = Preferences.of(Preferences.LENGTH_OF_YEAR, 365).or(Preferences.of(Preferences.ARITHMETIC, arithmetic))
+        .compile(Preferences.LENGTH_OF_YEAR, Preferences.ARITHMETIC);
+    service = new ReportingService(preferences, priceService, dateService);
+
+    var random = new Random(0);
+    var position = new Position(BigDecimal.valueOf(1_000_000));
+    for(var security: securityList) {
+      position.quantity(security, BigDecimal.valueOf(1_000 + random.nextInt(1_000)));
+    }
+    this.position = position;
+
+    // the amounts and the dates are shared between the transactions to keep
+    // the memory footprint of the scenarios with a lot of transactions reasonable
+    var amounts = random.ints(1_000, 1, 1_000).mapToObj(BigDecimal::valueOf).toArray(BigDecimal[]::new);
+    var beginningOfYear = AS_OF.withDayOfYear(1);
+    var daysInYear = AS_OF.getDayOfYear();
+    var dates = new ArrayList<LocalDate>();
+    for(var date = beginningOfYear.minusYears(5); !date.isAfter(AS_OF); date = date.plusDays(1)) {
+      dates.add(date);
+    }
+    var firstDayOfYear = dates.size() - daysInYear;
+    var clusters = random.ints(5, 0, daysInYear).toArray();
+
+    var transactionTypes = TransactionType.values();
+    var transactionList = new ArrayList<Transaction>(transactions);
+    for(var i = 0; i < transactions; i++) {
+      var type = transactionTypes[random.nextInt(transactionTypes.length)];
+      var date = dates.get(switch(distribution) {
+        case UNIFORM -> firstDayOfYear + random.nextInt(daysInYear);
+        case CLUSTERED -> firstDayOfYear + clusters[random.nextInt(clusters.length)];
+        case MOSTLY_OUT_OF_YEAR -> (random.nextInt(10) == 0)? firstDayOfYear + random.nextInt(daysInYear): random.nextInt(firstDayOfYear);
+      });
+      var cash = amounts[random.nextInt(amounts.length)];
+      var security = type.hasQuantity()? securityList.get(random.nextInt(securityList.size())): null;
+      var quantity = type.hasQuantity()? amounts[random.nextInt(amounts.length)]: BigDecimal.ZERO;
+      transactionList.add(new Transaction(type, date, cash, security, quantity));
+    }
+    this.transactionList = transactionList;
+  }
+
+  @Benchmark
+  public BigDecimal calculate() {
+    return service.calculateReturnOnInvestmentYTD(position, transactionList);
+  }
+
+  public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+    // the command line options (e.g. -p) override the defaults
+    var commandLineOptions = new CommandLineOptions(args);
+    var builder = new OptionsBuilder()
+        .parent(commandLineOptions)
+        .include(ReportingServiceMatrixBenchmark.class.getName());
+    if (commandLineOptions.getProfilers().isEmpty()) {
+      builder.addProfiler(GCProfiler.class);
+    }
+    new Runner(builder.build()).run();
+  }
+}
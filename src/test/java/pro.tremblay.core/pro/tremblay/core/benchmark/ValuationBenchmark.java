@@ -0,0 +1,111 @@
+/*
+ * Copyright 2019-2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pro.tremblay.core.benchmark;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import pro.tremblay.core.Arithmetic;
+import pro.tremblay.core.DateService;
+import pro.tremblay.core.Position;
+import pro.tremblay.core.Preferences;
+import pro.tremblay.core.PriceService;
+import pro.tremblay.core.ReportingPeriod;
+import pro.tremblay.core.ReportingService;
+import pro.tremblay.core.Security;
+
+/**
+ * Values positions holding a lot of securities, without any transaction, so most of the time
+ * is spent valuing the securities, with the {@code BigDecimal} loop ({@code BIG_DECIMAL})
+ * or with the dot product of scaled longs ({@code FIXED_POINT}).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ValuationBenchmark {
+  // a fixed current date, so the results don't depend on the day the benchmark is run
+  private static final LocalDate AS_OF = LocalDate.of(2020, 7, 1);
+
+  private final DateService dateService = new DateService(() -> AS_OF);
+
+  @Param({"BIG_DECIMAL", "FIXED_POINT"})
+  private Arithmetic arithmetic;
+
+  @Param({"10", "1000", "10000"})
+  private int securityCount;
+
+  private ReportingService service;
+  private Position position;
+  private final List<ReportingPeriod> periods = List.of(ReportingPeriod.YEAR_TO_DATE, ReportingPeriod.MONTH_TO_DATE);
+
+  @Setup
+  public void setup() {
+    // the securities must exist before the price service is created
+    for(var i = Security.securities().size(); i < securityCount; i++) {
+      Security.of("VALUATION_" + i);
+    }
+    var priceService = PriceService.createARandomPriceService(dateService);
+    var preferences = Preferences.of(Preferences.LENGTH_OF_YEAR, 365).or(Preferences.of(Preferences.ARITHMETIC, arithmetic))
+        .compile(Preferences.LENGTH_OF_YEAR, Preferences.ARITHMETIC);
+    service = new ReportingService(preferences, priceService, dateService);
+
+    var random = new Random(0);
+    var position = new Position(BigDecimal.valueOf(1_000_000));
+    for(var security: Security.securities().subList(0, securityCount)) {
+      position.quantity(security, BigDecimal.valueOf(random.nextInt(100_000), random.nextInt(3)));
+    }
+    this.position = position;
+  }
+
+  @Benchmark
+  public BigDecimal calculateYTD() {
+    return service.calculateReturnOnInvestmentYTD(position, List.of());
+  }
+
+  @Benchmark
+  public List<BigDecimal> calculatePeriods() {
+    return service.calculateReturnOnInvestments(position, List.of(), periods);
+  }
+
+  public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+    // the command line options (e.g. -rf json) override the defaults
+    var opt = new OptionsBuilder().parent(new CommandLineOptions(args)).include(ValuationBenchmark.class.getName()).build();
+    new Runner(opt).run();
+  }
+}